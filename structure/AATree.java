@@ -0,0 +1,273 @@
+//An AA tree, after Andersson.
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * This class implements an AA tree, Andersson's simplification of the
+ * red-black tree. Where LLRB leans red links left, an AA tree allows red
+ * links only to the right, and keeps a level in each node in place of a
+ * color: a null child has level 0, a leaf level 1, a left child is one
+ * level below its parent, a right child at most level with it, and a
+ * right grandchild below its grandparent. A right child at its parent's
+ * level is the red link of a red-black tree.
+ * <P>
+ * Two operations keep the levels: skew, a right rotation that removes a
+ * left child at its parent's level, and split, a left rotation and
+ * promotion that removes two right links in a row at one level. add
+ * applies skew then split at each node on the way back up; remove
+ * lowers the levels that a removal leaves too high, then applies three
+ * skews and two splits. As in a 2-3 tree, the height is at most 2 log n.
+ *
+ * @author, 2014 tony liu, michael shaw
+ * @see LLRB
+ * @see WAVLTree
+ */
+
+public class AATree<E extends Comparable<E>> extends AbstractStructure<E> implements OrderedStructure<E> {
+
+    private Node<E> root;
+    private int size;
+
+    /**
+     * Version number, used for the iterator
+     */
+    private int version;
+
+    /**
+     * Internal Node class; level is 1 for leaves
+     */
+    protected static class Node<E> implements TreeNode<E> {
+	private Node<E> left;
+	private Node<E> right;
+	private E value;
+	private int level;
+
+	protected Node(E value) {
+	    this.value = value;
+	    this.level = 1;
+	}
+
+	public E value() {
+	    return value;
+	}
+
+	public Node<E> left() {
+	    return left;
+	}
+
+	public Node<E> right() {
+	    return right;
+	}
+    }
+
+    //default constructor
+    public AATree() {
+	root = null;
+	size = 0;
+	version = 0;
+    }
+
+    protected int level(Node<E> x) {
+	return (x == null) ? 0 : x.level;
+    }
+
+    public boolean isEmpty() {
+	return root == null;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public void clear() {
+	root = null;
+	size = 0;
+	version++;
+    }
+
+    public boolean contains(E value) {
+	return get(value) != null;
+    }
+
+    public E get(E value) {
+	Node<E> x = root;
+	while (x != null) {
+	    int cmp = value.compareTo(x.value);
+	    if (cmp == 0) return x.value;
+	    else if (cmp < 0) x = x.left;
+	    else x = x.right;
+	}
+	return null;
+    }
+
+    /**
+     * Removes a left child at x's level by rotating right
+     * @return the root of the subtree
+     */
+    protected Node<E> skew(Node<E> x) {
+	if (x == null || level(x.left) != x.level) return x;
+	Node<E> l = x.left;
+	x.left = l.right;
+	l.right = x;
+	return l;
+    }
+
+    /**
+     * Removes two right links in a row at x's level by rotating left and
+     * promoting the middle node
+     * @return the root of the subtree
+     */
+    protected Node<E> split(Node<E> x) {
+	if (x == null || x.right == null || level(x.right.right) != x.level) return x;
+	Node<E> r = x.right;
+	x.right = r.left;
+	r.left = x;
+	r.level++;
+	return r;
+    }
+
+    /**
+     * Adds value to the tree
+     * @pre value is not null
+     * @post value is in the tree
+     */
+    public void add(E value) {
+	root = addRecursive(root, value);
+	version++;
+    }
+
+    private Node<E> addRecursive(Node<E> x, E value) {
+	if (x == null) {
+	    size++;
+	    return new Node<E>(value);
+	}
+	int compare = value.compareTo(x.value);
+	if (compare == 0) return x;
+	if (compare < 0) x.left = addRecursive(x.left, value);
+	else x.right = addRecursive(x.right, value);
+	return split(skew(x));
+    }
+
+    /**
+     * Removes value from the tree
+     * @return the removed value, or null if it was not present
+     */
+    public E remove(E value) {
+	E result = get(value);
+	if (result == null) return null;
+	root = removeRecursive(root, value);
+	size--;
+	version++;
+	return result;
+    }
+
+    private Node<E> removeRecursive(Node<E> x, E value) {
+	int compare = value.compareTo(x.value);
+	if (compare < 0) x.left = removeRecursive(x.left, value);
+	else if (compare > 0) x.right = removeRecursive(x.right, value);
+	else if (x.left == null) {
+	    //a node with no left child is a leaf, or has one red right child
+	    return x.right;
+	}
+	else if (x.right == null) return x.left;
+	else {
+	    x.value = min(x.right).value;
+	    x.right = removeRecursive(x.right, x.value);
+	}
+	return fixUp(x);
+    }
+
+    /**
+     * Rebalances x after a removal below it: lowers its level, and that
+     * of a right child at its level, to one above its lower child, then
+     * restores the level rules with three skews and two splits
+     * @return the root of the subtree
+     */
+    private Node<E> fixUp(Node<E> x) {
+	int level = Math.min(level(x.left), level(x.right)) + 1;
+	if (level < x.level) {
+	    x.level = level;
+	    if (level < level(x.right)) x.right.level = level;
+	}
+	x = skew(x);
+	x.right = skew(x.right);
+	if (x.right != null) x.right.right = skew(x.right.right);
+	x = split(x);
+	x.right = split(x.right);
+	return x;
+    }
+
+    private Node<E> min(Node<E> x) {
+	while (x.left != null) x = x.left;
+	return x;
+    }
+
+    public int height() {
+	return heightRecursive(root);
+    }
+
+    protected int heightRecursive(Node<E> h) {
+	if (h == null) return -1;
+	return 1 + Math.max(heightRecursive(h.left), heightRecursive(h.right));
+    }
+
+    /**
+     * Checks the invariants of the tree, for testing: every leaf is at
+     * level 1, a left child one level below its parent, a right child
+     * level with its parent or one below, a right grandchild below its
+     * grandparent; values are in strictly ascending order, and the size
+     * matches them.
+     * @return true if the tree is consistent
+     */
+    public boolean consistency() {
+	if (!levelConsistency(root)) return false;
+	int count = 0;
+	E previous = null;
+	for (E value : this) {
+	    if (previous != null && previous.compareTo(value) >= 0) return false;
+	    previous = value;
+	    count++;
+	}
+	return count == size;
+    }
+
+    /**
+     * Recursive helper for consistency()
+     * @return true if the levels below h keep the AA rules
+     */
+    private boolean levelConsistency(Node<E> h) {
+	if (h == null) return true;
+	if (h.left == null && h.right == null && h.level != 1) return false;
+	if (level(h.left) != h.level - 1) return false;
+	if (level(h.right) != h.level && level(h.right) != h.level - 1) return false;
+	if (h.right != null && level(h.right.right) >= h.level) return false;
+	return levelConsistency(h.left) && levelConsistency(h.right);
+    }
+
+    /**
+     * An in-order iterator; the tree must not be modified while iterating
+     */
+    private class AAIterator extends TreeNodeIterator<E> {
+	public AAIterator() {
+	    reset();
+	}
+
+	protected TreeNode<E> root() {
+	    return root;
+	}
+
+	protected int version() {
+	    return version;
+	}
+    }
+
+    public Iterator<E> iterator() {
+	return new AAIterator();
+    }
+
+    public String toString() {
+	return TreeNodeIterator.toString("AATree", this);
+    }
+}
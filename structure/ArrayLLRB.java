@@ -0,0 +1,161 @@
+//A left leaning red black tree stored in parallel arrays, based off LLRB.
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * This class implements LLRB over a node pool rather than node objects.
+ * A node is an int index into parallel arrays: left and right hold child
+ * indices, values holds the keys, and colors is a bitset with one bit per
+ * node. Index 0 is reserved to mean "no node", so a fresh array is a tree
+ * of empty links. Nodes freed by remove are threaded through the left array
+ * into a free list and reused by later adds. The arrays double as needed.
+ * The algorithms are those of PooledLLRB, shared with OffHeapLLRB.
+ *
+ * @author, 2014 tony liu, michael shaw
+ * @see PooledLLRB
+ * @see LLRB
+ */
+
+public class ArrayLLRB<E extends Comparable<E>> extends PooledLLRB<E> {
+
+    private int[] left;
+    private int[] right;
+    private Object[] values;
+
+    /**
+     * Color bits, one per node; a set bit means the node is red
+     */
+    private long[] colors;
+
+    /**
+     * The value being added, sought or removed
+     */
+    private E sought;
+
+    //default constructor
+    public ArrayLLRB() {
+	this(16);
+    }
+
+    /**
+     * Constructs an empty tree with room for capacity nodes before growing
+     * @pre capacity > 0
+     */
+    public ArrayLLRB(int capacity) {
+	super();
+	left = new int[capacity + 1];
+	right = new int[capacity + 1];
+	values = new Object[capacity + 1];
+	colors = new long[(capacity >> 6) + 1];
+    }
+
+    protected int left(int h) {
+	return left[h];
+    }
+
+    protected int right(int h) {
+	return right[h];
+    }
+
+    protected void setLeft(int h, int x) {
+	left[h] = x;
+    }
+
+    protected void setRight(int h, int x) {
+	right[h] = x;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected E value(int h) {
+	return (E)values[h];
+    }
+
+    protected boolean isRed(int h) {
+	return (colors[h >> 6] & (1L << h)) != 0;
+    }
+
+    protected void setRed(int h, boolean red) {
+	if (red) colors[h >> 6] |= (1L << h);
+	else colors[h >> 6] &= ~(1L << h);
+    }
+
+    protected int compareKey(int h) {
+	return sought.compareTo(value(h));
+    }
+
+    protected void setKey(int h) {
+	values[h] = sought;
+    }
+
+    protected void copyKey(int from, int to) {
+	values[to] = values[from];
+    }
+
+    protected void reserve(int h) {
+	if (h == left.length) grow();
+    }
+
+    protected void release(int h) {
+	values[h] = null;
+	super.release(h);
+    }
+
+    protected boolean released(int h) {
+	return values[h] == null;
+    }
+
+    private void grow() {
+	int capacity = 2 * left.length;
+	left = Arrays.copyOf(left, capacity);
+	right = Arrays.copyOf(right, capacity);
+	values = Arrays.copyOf(values, capacity);
+	colors = Arrays.copyOf(colors, (capacity >> 6) + 1);
+    }
+
+    /**
+     * Clears the entire tree, keeping the pool's capacity
+     * @post The tree is empty
+     */
+    public void clear() {
+	Arrays.fill(values, null);
+	super.clear();
+    }
+
+    public boolean contains(E value) {
+	return get(value) != null;
+    }
+
+    public E get(E value) {
+	sought = value;
+	int x = find();
+	sought = null;
+	return (x == NIL) ? null : value(x);
+    }
+
+    public void add(E value) {
+	sought = value;
+	insert();
+	sought = null;
+    }
+
+    public E remove(E value) {
+	sought = value;
+	int x = find();
+	E result = (x == NIL) ? null : value(x);
+	if (x != NIL) delete();
+	sought = null;
+	return result;
+    }
+
+    public String toString() {
+	return recursivePrint(root);
+    }
+
+    protected String recursivePrint(int h) {
+	if (h == NIL) return "";
+	if (isRed(h)) return "(" + recursivePrint(left[h]) + value(h) + recursivePrint(right[h]) + ")";
+	else return "[" + recursivePrint(left[h]) + value(h) + recursivePrint(right[h]) + "]";
+    }
+}
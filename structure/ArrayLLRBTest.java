@@ -0,0 +1,57 @@
+//A program to test ArrayLLRB
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Compares ArrayLLRB against java.util.TreeSet on random adds, removes
+ * and lookups, from a pool of one node, so that it grows many times, and
+ * with phases that remove most values, so that freed nodes are reused.
+ * The invariants of the tree and its pool are checked as it goes.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class ArrayLLRBTest {
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	ArrayLLRB<Integer> tree = new ArrayLLRB<Integer>(1);
+	TreeSet<Integer> expected = new TreeSet<Integer>();
+	for (int phase = 0; phase < 20; phase++) {
+	    //alternately grow the tree and shrink it
+	    int adds = (phase % 2 == 0) ? 3 : 1;
+	    int range = (phase < 10) ? 500 : 20000;
+	    for (int i = 0; i < 20000; i++) {
+		int key = random.nextInt(range);
+		if (random.nextInt(4) < adds) {
+		    tree.add(key);
+		    expected.add(key);
+		}
+		else {
+		    Integer removed = tree.remove(key);
+		    Assert.condition((removed != null) == expected.remove(key), "remove(" + key + ") disagrees.");
+		}
+		int probe = random.nextInt(range);
+		Assert.condition(tree.contains(probe) == expected.contains(probe), "contains(" + probe + ") disagrees.");
+		if (i % 2000 == 0) check(tree, expected, "phase " + phase);
+	    }
+	    check(tree, expected, "phase " + phase);
+	}
+	tree.clear();
+	expected.clear();
+	check(tree, expected, "clear");
+	for (int i = 0; i < 1000; i++) {
+	    tree.add(i);
+	    expected.add(i);
+	}
+	check(tree, expected, "adds after clear");
+	System.out.println("ArrayLLRB agrees with TreeSet");
+    }
+
+    private static void check(ArrayLLRB<Integer> tree, SortedSet<Integer> expected, String what) {
+	Assert.condition(tree.consistency(), what + ": tree is not a valid LLRB.");
+	StructureTest.check(tree, expected, what);
+    }
+}
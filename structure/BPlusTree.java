@@ -0,0 +1,489 @@
+//A B+ tree of configurable fanout, with linked leaves.
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * This class implements a B+ tree. Where LLRB spends a node object, and a
+ * pointer chase, on every value, a B+ tree packs up to fanout values in
+ * sorted order into one array per node and binary searches it, so a
+ * search visits about log_fanout n nodes rather than 2 log_2 n.
+ * <P>
+ * All values are held in the leaves, which are linked in order, so the
+ * iterator walks from leaf to leaf without climbing the tree. Internal
+ * nodes hold up to fanout children and fanout-1 separating keys: every
+ * value under children[i] is less than keys[i], and every value under
+ * children[i+1] is at least keys[i]. A leaf holds up to fanout values.
+ * <P>
+ * add splits a node that overflows, passing a key up; remove refills a
+ * node that falls below half full by borrowing from a sibling, or merges
+ * it with one. Every node but the root stays at least half full. Node
+ * arrays have one spare slot, taking the overflow before a split.
+ * <P>
+ * Values are references, so a comparison still reads the value object;
+ * a tree of primitive keys (as IntLLRB is to LLRB) would save that.
+ *
+ * @author, 2014 tony liu, michael shaw
+ * @see LLRB
+ */
+
+public class BPlusTree<E extends Comparable<E>> extends AbstractStructure<E> implements OrderedStructure<E> {
+
+    public static final int DEFAULT_FANOUT = 64;
+
+    /**
+     * Most children of an internal node, and most values of a leaf
+     */
+    private final int fanout;
+
+    /**
+     * Fewest values of a leaf, and fewest keys of an internal node,
+     * other than the root
+     */
+    private final int minLeaf;
+    private final int minKeys;
+
+    private Node root;
+    private int size;
+
+    /**
+     * Version number, used for the iterator
+     */
+    private int version;
+
+    /**
+     * The key passed up by the last split in add
+     */
+    private Object splitKey;
+
+    /**
+     * Internal Node class, for leaves and internal nodes alike. A leaf
+     * has no children, and links to the next leaf.
+     */
+    protected static class Node {
+	private Object[] keys;
+	private int count;
+	private Node[] children;
+	private Node next;
+
+	protected Node(int capacity, boolean leaf) {
+	    keys = new Object[capacity + 1];
+	    if (!leaf) children = new Node[capacity + 2];
+	}
+
+	protected boolean isLeaf() {
+	    return children == null;
+	}
+    }
+
+    /**
+     * Constructs an empty tree of DEFAULT_FANOUT
+     */
+    public BPlusTree() {
+	this(DEFAULT_FANOUT);
+    }
+
+    /**
+     * Constructs an empty tree of the given fanout
+     * @pre fanout >= 4
+     */
+    public BPlusTree(int fanout) {
+	Assert.pre(fanout >= 4, "Fanout must be at least 4.");
+	this.fanout = fanout;
+	minLeaf = fanout / 2;
+	minKeys = (fanout - 1) / 2;
+	root = null;
+	size = 0;
+	version = 0;
+    }
+
+    private Node leaf() {
+	return new Node(fanout, true);
+    }
+
+    private Node internal() {
+	return new Node(fanout - 1, false);
+    }
+
+    public int fanout() {
+	return fanout;
+    }
+
+    public boolean isEmpty() {
+	return root == null;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public void clear() {
+	root = null;
+	size = 0;
+	version++;
+    }
+
+    /**
+     * Binary searches the keys of x for value
+     * @return the index of value, if present; otherwise -(i+1), where i
+     * is the index at which value would be inserted
+     */
+    @SuppressWarnings("unchecked")
+    private int search(Node x, E value) {
+	int lo = 0, hi = x.count - 1;
+	while (lo <= hi) {
+	    int mid = (lo + hi) >>> 1;
+	    int cmp = ((E)x.keys[mid]).compareTo(value);
+	    if (cmp < 0) lo = mid + 1;
+	    else if (cmp > 0) hi = mid - 1;
+	    else return mid;
+	}
+	return -(lo + 1);
+    }
+
+    /**
+     * @return the index of the child of internal node x that would hold
+     * value, given the result i of search(x, value)
+     */
+    private int child(int i) {
+	return (i >= 0) ? i + 1 : -i - 1;
+    }
+
+    public boolean contains(E value) {
+	return get(value) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(E value) {
+	Node x = root;
+	if (x == null) return null;
+	while (!x.isLeaf()) x = x.children[child(search(x, value))];
+	int i = search(x, value);
+	return (i >= 0) ? (E)x.keys[i] : null;
+    }
+
+    /**
+     * Adds value to the tree; adding a value already present changes
+     * nothing, and leaves iterators valid
+     * @pre value is not null
+     * @post value is in the tree
+     */
+    public void add(E value) {
+	if (root == null) root = leaf();
+	int before = size;
+	Node sibling = addRecursive(root, value);
+	if (sibling != null) {
+	    Node top = internal();
+	    top.keys[0] = splitKey;
+	    top.children[0] = root;
+	    top.children[1] = sibling;
+	    top.count = 1;
+	    root = top;
+	}
+	splitKey = null;
+	if (size != before) version++;
+    }
+
+    /**
+     * Adds value below x, splitting x if it overflows
+     * @return the new right sibling of x, whose smallest key is left in
+     * splitKey, or null if x did not split
+     */
+    private Node addRecursive(Node x, E value) {
+	int i = search(x, value);
+	if (x.isLeaf()) {
+	    if (i >= 0) return null;
+	    i = -i - 1;
+	    System.arraycopy(x.keys, i, x.keys, i + 1, x.count - i);
+	    x.keys[i] = value;
+	    x.count++;
+	    size++;
+	    return (x.count > fanout) ? splitLeaf(x) : null;
+	}
+	int c = child(i);
+	Node sibling = addRecursive(x.children[c], value);
+	if (sibling == null) return null;
+	System.arraycopy(x.keys, c, x.keys, c + 1, x.count - c);
+	System.arraycopy(x.children, c + 1, x.children, c + 2, x.count - c);
+	x.keys[c] = splitKey;
+	x.children[c + 1] = sibling;
+	x.count++;
+	return (x.count > fanout - 1) ? splitInternal(x) : null;
+    }
+
+    /**
+     * Moves the upper half of leaf x to a new leaf, linked after it
+     * @return the new leaf; its first value is left in splitKey
+     */
+    private Node splitLeaf(Node x) {
+	Node right = leaf();
+	int keep = x.count / 2;
+	right.count = x.count - keep;
+	System.arraycopy(x.keys, keep, right.keys, 0, right.count);
+	Arrays.fill(x.keys, keep, x.count, null);
+	x.count = keep;
+	right.next = x.next;
+	x.next = right;
+	splitKey = right.keys[0];
+	return right;
+    }
+
+    /**
+     * Moves the upper half of internal node x to a new node; the middle
+     * key moves up, into splitKey
+     * @return the new node
+     */
+    private Node splitInternal(Node x) {
+	Node right = internal();
+	int keep = x.count / 2;
+	splitKey = x.keys[keep];
+	right.count = x.count - keep - 1;
+	System.arraycopy(x.keys, keep + 1, right.keys, 0, right.count);
+	System.arraycopy(x.children, keep + 1, right.children, 0, right.count + 1);
+	Arrays.fill(x.keys, keep, x.count, null);
+	Arrays.fill(x.children, keep + 1, x.count + 1, null);
+	x.count = keep;
+	return right;
+    }
+
+    /**
+     * Removes value from the tree
+     * @return the removed value, or null if it was not present
+     */
+    public E remove(E value) {
+	if (root == null) return null;
+	E result = removeRecursive(root, value);
+	if (result == null) return null;
+	if (root.count == 0) root = root.isLeaf() ? null : root.children[0];
+	size--;
+	version++;
+	return result;
+    }
+
+    /**
+     * Removes value from below x, refilling any child left under half full
+     * @return the value removed, or null
+     */
+    @SuppressWarnings("unchecked")
+    private E removeRecursive(Node x, E value) {
+	int i = search(x, value);
+	if (x.isLeaf()) {
+	    if (i < 0) return null;
+	    E result = (E)x.keys[i];
+	    System.arraycopy(x.keys, i + 1, x.keys, i, x.count - i - 1);
+	    x.keys[--x.count] = null;
+	    return result;
+	}
+	int c = child(i);
+	E result = removeRecursive(x.children[c], value);
+	if (result == null) return null;
+	Node y = x.children[c];
+	if (y.count < (y.isLeaf() ? minLeaf : minKeys)) refill(x, c);
+	return result;
+    }
+
+    /**
+     * Brings child c of x back to half full, borrowing from a sibling
+     * with values to spare, or else merging with one
+     */
+    private void refill(Node x, int c) {
+	Node y = x.children[c];
+	int min = y.isLeaf() ? minLeaf : minKeys;
+	if (c > 0 && x.children[c - 1].count > min) borrowLeft(x, c);
+	else if (c < x.count && x.children[c + 1].count > min) borrowRight(x, c);
+	else if (c > 0) merge(x, c - 1);
+	else merge(x, c);
+    }
+
+    /**
+     * Moves the last value or child of child c-1 of x to child c
+     */
+    private void borrowLeft(Node x, int c) {
+	Node left = x.children[c - 1];
+	Node y = x.children[c];
+	System.arraycopy(y.keys, 0, y.keys, 1, y.count);
+	if (y.isLeaf()) {
+	    y.keys[0] = left.keys[left.count - 1];
+	    x.keys[c - 1] = y.keys[0];
+	}
+	else {
+	    System.arraycopy(y.children, 0, y.children, 1, y.count + 1);
+	    y.keys[0] = x.keys[c - 1];
+	    y.children[0] = left.children[left.count];
+	    left.children[left.count] = null;
+	    x.keys[c - 1] = left.keys[left.count - 1];
+	}
+	left.keys[--left.count] = null;
+	y.count++;
+    }
+
+    /**
+     * Moves the first value or child of child c+1 of x to child c
+     */
+    private void borrowRight(Node x, int c) {
+	Node y = x.children[c];
+	Node right = x.children[c + 1];
+	if (y.isLeaf()) {
+	    y.keys[y.count] = right.keys[0];
+	    System.arraycopy(right.keys, 1, right.keys, 0, right.count - 1);
+	    right.keys[right.count - 1] = null;
+	    x.keys[c] = right.keys[0];
+	}
+	else {
+	    y.keys[y.count] = x.keys[c];
+	    y.children[y.count + 1] = right.children[0];
+	    x.keys[c] = right.keys[0];
+	    System.arraycopy(right.keys, 1, right.keys, 0, right.count - 1);
+	    System.arraycopy(right.children, 1, right.children, 0, right.count);
+	    right.keys[right.count - 1] = null;
+	    right.children[right.count] = null;
+	}
+	right.count--;
+	y.count++;
+    }
+
+    /**
+     * Merges child c+1 of x into child c, removing key c of x
+     */
+    private void merge(Node x, int c) {
+	Node left = x.children[c];
+	Node right = x.children[c + 1];
+	if (left.isLeaf()) {
+	    System.arraycopy(right.keys, 0, left.keys, left.count, right.count);
+	    left.count += right.count;
+	    left.next = right.next;
+	}
+	else {
+	    left.keys[left.count] = x.keys[c];
+	    System.arraycopy(right.keys, 0, left.keys, left.count + 1, right.count);
+	    System.arraycopy(right.children, 0, left.children, left.count + 1, right.count + 1);
+	    left.count += right.count + 1;
+	}
+	System.arraycopy(x.keys, c + 1, x.keys, c, x.count - c - 1);
+	System.arraycopy(x.children, c + 2, x.children, c + 1, x.count - c - 1);
+	x.count--;
+	x.keys[x.count] = null;
+	x.children[x.count + 1] = null;
+    }
+
+    /**
+     * @return the number of levels below the root: 0 for a single leaf,
+     * or -1 for an empty tree
+     */
+    public int height() {
+	int height = -1;
+	for (Node x = root; x != null; x = x.isLeaf() ? null : x.children[0]) height++;
+	return height;
+    }
+
+    /**
+     * Checks the invariants of the tree, for testing: every node but the
+     * root at least half full and none overfull, keys in strictly
+     * ascending order within the bounds set by the keys above, unused
+     * slots cleared, every leaf at the same depth, and the linked leaves
+     * holding size() values in ascending order.
+     * @return true if the tree is consistent
+     */
+    public boolean consistency() {
+	if (root == null) return size == 0;
+	long[] values = new long[1];
+	if (nodeConsistency(root, null, null, values) < 0 || values[0] != size) return false;
+	int count = 0;
+	E previous = null;
+	for (E value : this) {
+	    if (previous != null && previous.compareTo(value) >= 0) return false;
+	    previous = value;
+	    count++;
+	}
+	return count == size;
+    }
+
+    /**
+     * Recursive helper for consistency(); adds the values of the leaves
+     * below x to values[0]
+     * @param lo every key below x is at least lo, unless lo is null
+     * @param hi every key below x is less than hi, unless hi is null
+     * @return the depth of the leaves below x, or -1 if a rule is broken
+     */
+    @SuppressWarnings("unchecked")
+    private int nodeConsistency(Node x, E lo, E hi, long[] values) {
+	int least = (x == root) ? 1 : (x.isLeaf() ? minLeaf : minKeys);
+	int most = x.isLeaf() ? fanout : fanout - 1;
+	if (x.count < least || x.count > most) return -1;
+	for (int i = 0; i < x.keys.length; i++) {
+	    if ((i < x.count) != (x.keys[i] != null)) return -1;
+	}
+	for (int i = 0; i < x.count; i++) {
+	    E key = (E)x.keys[i];
+	    if (i > 0 && ((E)x.keys[i - 1]).compareTo(key) >= 0) return -1;
+	    if ((lo != null && key.compareTo(lo) < 0) || (hi != null && key.compareTo(hi) >= 0)) return -1;
+	}
+	if (x.isLeaf()) {
+	    values[0] += x.count;
+	    return 0;
+	}
+	int depth = -1;
+	for (int i = 0; i <= x.count; i++) {
+	    if (x.children[i] == null) return -1;
+	    E from = (i == 0) ? lo : (E)x.keys[i - 1];
+	    E to = (i == x.count) ? hi : (E)x.keys[i];
+	    int d = nodeConsistency(x.children[i], from, to, values);
+	    if (d < 0 || (depth >= 0 && d != depth)) return -1;
+	    depth = d;
+	}
+	return depth + 1;
+    }
+
+    /**
+     * An in-order iterator, walking the linked leaves; the tree must not
+     * be modified while iterating
+     */
+    private class LeafIterator extends AbstractIterator<E> {
+	private Node leaf;
+	private int index;
+	private int iterVersion;
+
+	public LeafIterator() {
+	    reset();
+	}
+
+	public void reset() {
+	    leaf = root;
+	    while (leaf != null && !leaf.isLeaf()) leaf = leaf.children[0];
+	    index = 0;
+	    iterVersion = version;
+	}
+
+	public boolean hasNext() {
+	    return leaf != null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public E get() {
+	    return (E)leaf.keys[index];
+	}
+
+	@SuppressWarnings("unchecked")
+	public E next() {
+	    if (iterVersion != version) throw new ConcurrentModificationException();
+	    if (leaf == null) throw new NoSuchElementException();
+	    E value = (E)leaf.keys[index++];
+	    if (index == leaf.count) {
+		leaf = leaf.next;
+		index = 0;
+	    }
+	    return value;
+	}
+    }
+
+    public Iterator<E> iterator() {
+	return new LeafIterator();
+    }
+
+    public String toString() {
+	StringBuilder sb = new StringBuilder("<BPlusTree:");
+	for (E value : this) sb.append(" " + value);
+	return sb.append(">").toString();
+    }
+}
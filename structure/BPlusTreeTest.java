@@ -0,0 +1,92 @@
+//A program to test BPlusTree
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Compares BPlusTree against java.util.TreeSet on random adds, removes
+ * and lookups, for fanouts from the smallest allowed to the default, in
+ * phases that alternately grow the tree and shrink it, so that nodes
+ * split, borrow and merge, and the tree gains and loses levels. Node
+ * occupancy, key bounds, leaf depth and the leaf links are checked as it
+ * goes, and the height must stay within log_(fanout/2) n. Adding a value
+ * already present must not disturb an iterator; adding a new one must.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class BPlusTreeTest {
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	int[] fanouts = {4, 5, 6, 7, 16, BPlusTree.DEFAULT_FANOUT};
+	for (int fanout : fanouts) {
+	    BPlusTree<Integer> tree = new BPlusTree<Integer>(fanout);
+	    TreeSet<Integer> expected = new TreeSet<Integer>();
+	    for (int phase = 0; phase < 8; phase++) {
+		int range = (phase < 4) ? 300 : 20000;
+		//alternately grow the tree and shrink it to nothing
+		int adds = (phase % 2 == 0) ? 3 : 1;
+		for (int i = 0; i < 15000; i++) {
+		    int key = random.nextInt(range);
+		    if (random.nextInt(4) < adds) {
+			tree.add(key);
+			expected.add(key);
+		    }
+		    else {
+			Integer removed = tree.remove(key);
+			Assert.condition((removed != null) == expected.remove(key), "remove(" + key + ") disagrees.");
+		    }
+		    int probe = random.nextInt(range);
+		    Assert.condition(tree.contains(probe) == expected.contains(probe), "contains(" + probe + ") disagrees.");
+		    if (i % 1500 == 0) check(tree, expected, "fanout " + fanout + ", phase " + phase);
+		}
+		check(tree, expected, "fanout " + fanout + ", phase " + phase);
+	    }
+
+	    //sorted runs, emptied from either end
+	    tree.clear();
+	    expected.clear();
+	    for (int i = 0; i < 20000; i++) {
+		tree.add(i);
+		expected.add(i);
+	    }
+	    check(tree, expected, "fanout " + fanout + ", ascending adds");
+	    for (int i = 0; i < 10000; i++) {
+		tree.remove(i);
+		expected.remove(i);
+		tree.remove(19999 - i);
+		expected.remove(19999 - i);
+	    }
+	    check(tree, expected, "fanout " + fanout + ", removes from both ends");
+	    Assert.condition(tree.isEmpty(), "the tree should be empty.");
+
+	    //adding a value already present changes nothing, as for LLRB
+	    for (int i = 0; i < 100; i++) tree.add(i);
+	    Iterator<Integer> values = tree.iterator();
+	    for (int i = 0; i < 50; i++) values.next();
+	    tree.add(10);
+	    tree.add(99);
+	    Assert.condition(values.hasNext() && values.next() == 50, "adding a present value broke an iterator.");
+	    boolean failed = false;
+	    tree.add(100);
+	    try {
+		values.next();
+	    } catch (ConcurrentModificationException e) {
+		failed = true;
+	    }
+	    Assert.condition(failed, "adding a new value must fail an iterator.");
+	}
+	System.out.println("BPlusTree agrees with TreeSet");
+    }
+
+    private static void check(BPlusTree<Integer> tree, SortedSet<Integer> expected, String what) {
+	Assert.condition(tree.consistency(), what + ": tree is not a valid B+ tree.");
+	StructureTest.check(tree, expected, what);
+	if (expected.size() > 1) {
+	    double bound = 1 + Math.log(expected.size()) / Math.log(tree.fanout() / 2);
+	    Assert.condition(tree.height() <= bound, what + ": height " + tree.height() + " exceeds " + bound);
+	}
+    }
+}
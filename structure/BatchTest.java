@@ -0,0 +1,53 @@
+//A program to test the batched addAll and removeAll of LLRB
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Compares addAll and removeAll against java.util.TreeSet on random
+ * batches, for each engine, with and without counting, checking the
+ * invariants of the tree after each batch. Small batches are merged in
+ * with the set operations, which fork once the tree is large; large
+ * batches rebuild the tree.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class BatchTest {
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	int[] engines = {LLRB.RECURSIVE, LLRB.ITERATIVE, LLRB.TOP_DOWN};
+	for (int engine : engines) {
+	    for (int counting = 0; counting < 2; counting++) {
+		LLRB<Integer> tree = new LLRB<Integer>(engine, counting == 1);
+		TreeSet<Integer> expected = new TreeSet<Integer>();
+		for (int round = 0; round < 50; round++) {
+		    int range = (round < 40) ? 1000 : 100000;
+		    int m = random.nextInt((round % 4 == 0) ? range : range / 20 + 1);
+		    Integer[] batch = new Integer[m];
+		    for (int i = 0; i < m; i++) batch[i] = random.nextInt(range);
+		    if (random.nextInt(3) > 0) {
+			tree.addAll(batch);
+			expected.addAll(Arrays.asList(batch));
+		    }
+		    else {
+			tree.removeAll(batch);
+			for (Integer value : batch) expected.remove(value);
+		    }
+		    check(tree, expected, "engine " + engine + ", round " + round);
+		}
+	    }
+	}
+	System.out.println("addAll and removeAll agree with TreeSet");
+    }
+
+    /**
+     * Checks that tree holds exactly the values of expected, in order
+     */
+    private static void check(LLRB<Integer> tree, SortedSet<Integer> expected, String where) {
+	Assert.condition(tree.consistency(), where + ": tree is not a valid LLRB.");
+	StructureTest.check(tree, expected, where);
+    }
+}
@@ -0,0 +1,659 @@
+/*
+Benchmark harness for the ordered structures.
+Runs the same add/contains/remove/height workload as Test.runTests, but
+1. each structure is measured in its own, freshly forked JVM,
+2. every timed phase is preceded by untimed warmup rounds,
+3. times are taken with System.nanoTime(), not an int-cast currentTimeMillis(),
+4. results of contains/remove are folded into a sink so the JIT cannot
+   discard the work,
+5. results are written as CSV in the layout of stats/LLRB_data_v2.csv,
+   followed by the memory footprint of the populated structure (see Footprint).
+
+Usage (from this directory, after compiling):
+  java Benchmark [-sizes 500000,1000000] [-dists shuffled,ascending,zipfian,clustered]
+                 [-reads 100,90,50] [-warmup 2] [-iterations 4] [-threads 1,4]
+                 [-structs "RB Tree,LLRB"] [-out ../stats/LLRB_bench.csv]
+                 [-metrics ../stats/LLRB_metrics.csv]
+With -metrics, the same keys are also run once through a counting LLRB, with
+the recursive and with the top-down 2-3-4 engine, and their per-operation
+means and histograms (see LLRBMetrics) are written there.
+(c) 2014 Tony Liu
+*/
+import java.io.*;
+import java.util.*;
+import structure5.*;
+
+public class Benchmark {
+
+    /**
+     * Names of the structures measured, in the order they appear in the output
+     */
+    public static final String[] STRUCTS = {
+	"RB Tree", "LLRB", "LLRB iterative", "LLRB 2-3-4", "LLRB comparator", "RAVL Tree", "WAVL Tree", "AA Tree", "B+ Tree", "Frozen LLRB", "IntLLRB", "ArrayLLRB", "OrderStatisticLLRB", "ConcurrentLLRB", "PartitionedLLRB", "Binary Search Tree", "Splay Tree", "Skip List"
+    };
+
+    /**
+     * Key distributions understood by keys()
+     */
+    public static final String[] DISTS = {
+	"shuffled", "ascending", "zipfian", "clustered"
+    };
+
+    /**
+     * Fixed seed, so every forked JVM sees the same key sequences
+     */
+    private static final long SEED = 2014L;
+
+    /**
+     * The natural order of Integers as an explicit Comparator, for
+     * "LLRB comparator", which then cannot take LLRB's compareTo path
+     */
+    private static final Comparator<Integer> INTEGER_ORDER = new Comparator<Integer>() {
+	public int compare(Integer a, Integer b) {
+	    return a.compareTo(b);
+	}
+    };
+
+    /**
+     * Footprint columns, in bytes per element
+     */
+    public static final String FOOTPRINT = "Bytes/Element,Overhead/Element,Wasted/Element";
+
+    /**
+     * Accumulates results of timed operations; printed so the work stays live
+     */
+    private static long sink;
+
+    public static void main(String args[]) throws Exception {
+	if (args.length > 0 && args[0].equals("-child")) {
+	    child(args);
+	    return;
+	}
+
+	String sizes = "500000,1000000,2000000";
+	String dists = "shuffled";
+	String reads = "100";
+	String threads = "1";
+	String structs = join(STRUCTS);
+	String out = null;
+	String metrics = null;
+	int warmup = 2;
+	int iterations = 4;
+
+	for (int i = 0; i + 1 < args.length; i += 2) {
+	    if (args[i].equals("-sizes")) sizes = args[i+1];
+	    else if (args[i].equals("-dists")) dists = args[i+1];
+	    else if (args[i].equals("-reads")) reads = args[i+1];
+	    else if (args[i].equals("-threads")) threads = args[i+1];
+	    else if (args[i].equals("-structs")) structs = args[i+1];
+	    else if (args[i].equals("-out")) out = args[i+1];
+	    else if (args[i].equals("-metrics")) metrics = args[i+1];
+	    else if (args[i].equals("-warmup")) warmup = Integer.parseInt(args[i+1]);
+	    else if (args[i].equals("-iterations")) iterations = Integer.parseInt(args[i+1]);
+	    else throw new IllegalArgumentException("Unknown option " + args[i]);
+	}
+
+	PrintStream csv = (out == null) ? System.out : new PrintStream(new FileOutputStream(out));
+	for (String size : sizes.split(",")) {
+	    for (String dist : dists.split(",")) {
+		for (String read : reads.split(",")) {
+		    for (String thread : threads.split(",")) {
+			String title = size + " " + dist + " " + read + "% reads";
+			if (!thread.equals("1")) title += " " + thread + " threads";
+			csv.println(title + ",Add,Contains,Remove,Height,Mixed," + FOOTPRINT);
+			for (String name : structs.split(",")) {
+			    csv.println(name + "," + fork(name, size, dist, read, thread, warmup, iterations));
+			}
+			csv.println(",,,,,,,,");
+		    }
+		}
+	    }
+	}
+	if (csv != System.out) csv.close();
+
+	if (metrics != null) {
+	    PrintStream report = new PrintStream(new FileOutputStream(metrics));
+	    for (String size : sizes.split(",")) {
+		for (String dist : dists.split(",")) {
+		    metrics(report, Integer.parseInt(size), dist);
+		}
+	    }
+	    report.close();
+	}
+    }
+
+    /**
+     * Adds, looks up and removes the keys of size and dist in a counting
+     * LLRB, with the recursive and then the top-down 2-3-4 engine, and
+     * writes the mean of each counter per operation, then the histogram
+     * of each counter, up to its last non-empty bucket.
+     */
+    protected static void metrics(PrintStream report, int size, String dist) {
+	metrics(report, size, dist, LLRB.RECURSIVE, "LLRB");
+	metrics(report, size, dist, LLRB.TOP_DOWN, "LLRB 2-3-4");
+    }
+
+    protected static void metrics(PrintStream report, int size, String dist, int engine, String title) {
+	int[] order = keys(size, dist);
+	int[] lookups = lookups(order, dist);
+	LLRB<Integer> tree = new LLRB<Integer>(engine, true);
+	for (int i = 0; i < size; i++) tree.add(order[i]);
+	for (int i = 0; i < size; i++) {
+	    if (tree.contains(lookups[i])) sink++;
+	}
+	for (int i = 0; i < size; i++) tree.remove(order[i]);
+	LLRBMetrics m = tree.metrics();
+
+	report.println(size + " " + dist + " " + title + " metrics,Operations," + join(LLRBMetrics.COUNTER_NAMES));
+	for (int op = 0; op < LLRBMetrics.OPERATIONS; op++) {
+	    StringBuilder row = new StringBuilder(LLRBMetrics.OPERATION_NAMES[op] + "," + m.operations(op));
+	    for (int c = 0; c < LLRBMetrics.COUNTERS; c++) row.append(String.format(",%.3f", m.mean(op, c)));
+	    report.println(row);
+	}
+	for (int op = 0; op < LLRBMetrics.OPERATIONS; op++) {
+	    for (int c = 0; c < LLRBMetrics.COUNTERS; c++) {
+		long[] histogram = m.histogram(op, c);
+		int last = histogram.length - 1;
+		while (last > 0 && histogram[last] == 0) last--;
+		StringBuilder row = new StringBuilder(LLRBMetrics.OPERATION_NAMES[op] + " "
+						      + LLRBMetrics.COUNTER_NAMES[c] + " histogram");
+		for (int i = 0; i <= last; i++) row.append("," + histogram[i]);
+		report.println(row);
+	    }
+	}
+	report.println();
+    }
+
+    /**
+     * Runs one structure in a fresh JVM, isolating its JIT profile and heap
+     * from the other structures.
+     * @return the CSV cells produced by the child, or "overflow" cells if it failed
+     */
+    protected static String fork(String name, String size, String dist, String read, String threads,
+				 int warmup, int iterations) throws Exception {
+	String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+	ArrayList<String> command = new ArrayList<String>(Arrays.asList(java, "-Xss512m"));
+	//let Footprint see inside the JDK collections and locks some structures use
+	if (!System.getProperty("java.specification.version").startsWith("1.")) {
+	    for (String open : new String[] {"java.util", "java.util.concurrent", "java.util.concurrent.atomic",
+					     "java.util.concurrent.locks"}) {
+		command.add("--add-opens");
+		command.add("java.base/" + open + "=ALL-UNNAMED");
+	    }
+	}
+	command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"),
+				     "Benchmark", "-child", name, size, dist, read,
+				     "" + warmup, "" + iterations, threads));
+	ProcessBuilder pb = new ProcessBuilder(command);
+	pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+	Process p = pb.start();
+	BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream()));
+	String line, result = null;
+	while ((line = in.readLine()) != null) result = line;
+	if (p.waitFor() != 0 || result == null) return "overflow,overflow,overflow,overflow,overflow,overflow,overflow,overflow";
+	return result;
+    }
+
+    /**
+     * Body of a forked JVM: measures a single structure and prints one CSV row.
+     */
+    protected static void child(String args[]) throws InterruptedException {
+	String name = args[1];
+	int size = Integer.parseInt(args[2]);
+	String dist = args[3];
+	int read = Integer.parseInt(args[4]);
+	int warmup = Integer.parseInt(args[5]);
+	int iterations = Integer.parseInt(args[6]);
+	int threads = Integer.parseInt(args[7]);
+
+	int[] order = keys(size, dist);
+	int[] lookups = lookups(order, dist);
+	if (name.equals("IntLLRB")) {
+	    if (threads > 1) System.out.println("n/a,n/a,n/a,n/a,n/a,n/a,n/a,n/a");
+	    else childInt(order, lookups, read, warmup, iterations);
+	    return;
+	}
+	Integer[] data = new Integer[size];
+	for (int i = 0; i < size; i++) data[i] = order[i];
+	Integer[] probe = new Integer[size];
+	for (int i = 0; i < size; i++) probe[i] = lookups[i];
+	if (name.equals("Frozen LLRB")) {
+	    if (threads > 1) System.out.println("n/a,n/a,n/a,n/a,n/a,n/a,n/a,n/a");
+	    else childFrozen(data, probe, warmup, iterations);
+	    return;
+	}
+
+	OrderedStructure<Integer> struct = create(name);
+	if (threads > 1) {
+	    childParallel(struct, data, probe, read, threads, warmup, iterations);
+	    return;
+	}
+
+	double add = populate(struct, data, warmup, iterations);
+	int height = height(struct);
+	String footprint = footprint(Footprint.of(struct));
+	double contains = find(struct, probe, warmup, iterations);
+	double mixed = mixed(struct, probe, read, warmup, iterations);
+	if (struct instanceof RAVLTree) {
+	    RAVLTree<Integer> ravl = (RAVLTree<Integer>)struct;
+	    System.err.println(name + " height " + height + ", after deletions " + ravl.height()
+			       + ", bound " + ravl.heightBound() + ", rebuilds " + ravl.rebuilds());
+	}
+	double remove = delete(struct, data, warmup, iterations);
+
+	System.err.println(name + " sink " + sink);
+	System.out.println(add + "," + contains + "," + remove + "," + height + "," + mixed + "," + footprint);
+    }
+
+    /**
+     * @return the CSV cells of the FOOTPRINT columns
+     */
+    protected static String footprint(Footprint f) {
+	return String.format("%.1f,%.1f,%.1f", f.bytesPerElement(), f.overheadPerElement(), f.wastedPerElement());
+    }
+
+    /**
+     * Body of a forked JVM measuring throughput of a thread-safe structure:
+     * each phase is split across threads working on disjoint slices of the
+     * keys, and timed by wall clock.
+     */
+    protected static void childParallel(OrderedStructure<Integer> struct, Integer[] data, Integer[] probe,
+					int read, int threads, int warmup, int iterations)
+	throws InterruptedException {
+	if (!threadSafe(struct)) {
+	    System.out.println("n/a,n/a,n/a,n/a,n/a,n/a,n/a,n/a");
+	    return;
+	}
+	Random r = new Random(SEED);
+	boolean[] isRead = new boolean[probe.length];
+	for (int i = 0; i < probe.length; i++) isRead[i] = r.nextInt(100) < read;
+	long add = 0, contains = 0, mixed = 0, remove = 0;
+
+	for (int x = 0; x < warmup + iterations; x++) {
+	    long duration = parallel(struct, data, null, ADD, threads);
+	    if (x >= warmup) add += duration;
+	    parallel(struct, data, null, REMOVE, threads);
+	}
+	parallel(struct, data, null, ADD, threads);
+	int height = height(struct);
+	String footprint = footprint(Footprint.of(struct));
+	for (int x = 0; x < warmup + iterations; x++) {
+	    long duration = parallel(struct, probe, null, CONTAINS, threads);
+	    if (x >= warmup) contains += duration;
+	}
+	for (int x = 0; x < warmup + iterations; x++) {
+	    long duration = parallel(struct, probe, isRead, MIXED, threads);
+	    if (x >= warmup) mixed += duration;
+	}
+	for (int x = 0; x < warmup + iterations; x++) {
+	    long duration = parallel(struct, data, null, REMOVE, threads);
+	    if (x >= warmup) remove += duration;
+	    if (!struct.isEmpty()) System.err.println("Failed to remove all values");
+	    parallel(struct, data, null, ADD, threads);
+	}
+
+	System.err.println("sink " + sink);
+	System.out.println(millis(add, iterations) + "," + millis(contains, iterations) + ","
+			   + millis(remove, iterations) + "," + height + "," + millis(mixed, iterations)
+			   + "," + footprint);
+    }
+
+    /**
+     * Operations run by parallel()
+     */
+    private static final int ADD = 0, CONTAINS = 1, REMOVE = 2, MIXED = 3;
+
+    /**
+     * Applies op to every key, with thread t handling the t-th slice
+     * @return the elapsed wall-clock time, in nanoseconds
+     */
+    protected static long parallel(final OrderedStructure<Integer> struct, final Integer[] keys,
+				   final boolean[] isRead, final int op, final int threads)
+	throws InterruptedException {
+	final long[] found = new long[threads];
+	Thread[] workers = new Thread[threads];
+	for (int t = 0; t < threads; t++) {
+	    final int from = (int)((long)keys.length * t / threads);
+	    final int to = (int)((long)keys.length * (t + 1) / threads);
+	    final int id = t;
+	    workers[t] = new Thread() {
+		public void run() {
+		    long count = 0;
+		    for (int i = from; i < to; i++) {
+			if (op == ADD) struct.add(keys[i]);
+			else if (op == REMOVE) {
+			    if (struct.remove(keys[i]) != null) count++;
+			}
+			else if (op == CONTAINS || isRead[i]) {
+			    if (struct.contains(keys[i])) count++;
+			}
+			else {
+			    if (struct.remove(keys[i]) != null) count++;
+			    struct.add(keys[i]);
+			}
+		    }
+		    found[id] = count;
+		}
+	    };
+	}
+	long start = System.nanoTime();
+	for (Thread w : workers) w.start();
+	for (Thread w : workers) w.join();
+	long duration = System.nanoTime() - start;
+	for (long f : found) sink += f;
+	return duration;
+    }
+
+    /**
+     * @return true if struct may be used by several threads at once
+     */
+    public static boolean threadSafe(OrderedStructure<Integer> struct) {
+	return struct instanceof ConcurrentLLRB || struct instanceof PartitionedLLRB;
+    }
+
+    /**
+     * Body of a forked JVM for IntLLRB, which is not an OrderedStructure:
+     * the same phases as child(), on unboxed keys.
+     */
+    protected static void childInt(int[] data, int[] probe, int read, int warmup, int iterations) {
+	IntLLRB<Object> tree = new IntLLRB<Object>();
+	Random r = new Random(SEED);
+	boolean[] isRead = new boolean[probe.length];
+	for (int i = 0; i < probe.length; i++) isRead[i] = r.nextInt(100) < read;
+	long add = 0, contains = 0, mixed = 0, remove = 0;
+
+	for (int x = 0; x < warmup + iterations; x++) {
+	    long start = System.nanoTime();
+	    for (int i = 0; i < data.length; i++) tree.add(data[i]);
+	    if (x >= warmup) add += System.nanoTime() - start;
+	    for (int i = 0; i < data.length; i++) tree.remove(data[i]);
+	}
+	for (int i = 0; i < data.length; i++) tree.add(data[i]);
+	int height = tree.height();
+	String footprint = footprint(Footprint.of(tree, data.length));
+
+	for (int x = 0; x < warmup + iterations; x++) {
+	    int found = 0;
+	    long start = System.nanoTime();
+	    for (int i = 0; i < probe.length; i++) {
+		if (tree.contains(probe[i])) found++;
+	    }
+	    if (x >= warmup) contains += System.nanoTime() - start;
+	    sink += found;
+	}
+
+	for (int x = 0; x < warmup + iterations; x++) {
+	    int found = 0;
+	    long start = System.nanoTime();
+	    for (int i = 0; i < probe.length; i++) {
+		if (isRead[i]) {
+		    if (tree.contains(probe[i])) found++;
+		} else {
+		    if (tree.remove(probe[i])) found++;
+		    tree.add(probe[i]);
+		}
+	    }
+	    if (x >= warmup) mixed += System.nanoTime() - start;
+	    sink += found;
+	}
+
+	for (int x = 0; x < warmup + iterations; x++) {
+	    int removed = 0;
+	    long start = System.nanoTime();
+	    for (int i = 0; i < data.length; i++) {
+		if (tree.remove(data[i])) removed++;
+	    }
+	    if (x >= warmup) remove += System.nanoTime() - start;
+	    if (!tree.isEmpty()) System.err.println("Failed to remove all values");
+	    sink += removed;
+	    for (int i = 0; i < data.length; i++) tree.add(data[i]);
+	}
+
+	System.err.println("IntLLRB sink " + sink);
+	System.out.println(millis(add, iterations) + "," + millis(contains, iterations) + ","
+			   + millis(remove, iterations) + "," + height + "," + millis(mixed, iterations)
+			   + "," + footprint);
+    }
+
+    /**
+     * Body of a forked JVM for a FrozenTree, which is read-only: the Add
+     * column times LLRB.freeze() of the populated tree, and there are no
+     * Remove or Mixed phases.
+     */
+    protected static void childFrozen(Integer[] data, Integer[] probe, int warmup, int iterations) {
+	LLRB<Integer> tree = new LLRB<Integer>();
+	for (int i = 0; i < data.length; i++) tree.add(data[i]);
+	FrozenTree<Integer> frozen = null;
+	long freeze = 0;
+	for (int x = 0; x < warmup + iterations; x++) {
+	    long start = System.nanoTime();
+	    frozen = tree.freeze();
+	    if (x >= warmup) freeze += System.nanoTime() - start;
+	}
+	tree = null;
+	int height = frozen.height();
+	String footprint = footprint(Footprint.of(frozen));
+	double contains = find(frozen, probe, warmup, iterations);
+
+	System.err.println("Frozen LLRB sink " + sink);
+	System.out.println(millis(freeze, iterations) + "," + contains + ",n/a," + height + ",n/a," + footprint);
+    }
+
+    /**
+     * Constructs an empty structure by its name in STRUCTS; "B+ Tree n"
+     * is a B+ tree of fanout n
+     */
+    public static OrderedStructure<Integer> create(String name) {
+	if (name.equals("RB Tree")) return new RedBlackSearchTree<Integer>();
+	if (name.equals("LLRB")) return new LLRB<Integer>();
+	if (name.equals("LLRB iterative")) return new LLRB<Integer>(true);
+	if (name.equals("LLRB 2-3-4")) return new LLRB<Integer>(LLRB.TOP_DOWN, false);
+	if (name.equals("LLRB comparator")) return new LLRB<Integer>(INTEGER_ORDER);
+	if (name.equals("RAVL Tree")) return new RAVLTree<Integer>();
+	if (name.equals("WAVL Tree")) return new WAVLTree<Integer>();
+	if (name.equals("AA Tree")) return new AATree<Integer>();
+	if (name.equals("B+ Tree")) return new BPlusTree<Integer>();
+	if (name.startsWith("B+ Tree ")) return new BPlusTree<Integer>(Integer.parseInt(name.substring(8)));
+	if (name.equals("ArrayLLRB")) return new ArrayLLRB<Integer>();
+	if (name.equals("OrderStatisticLLRB")) return new OrderStatisticLLRB<Integer>();
+	if (name.equals("ConcurrentLLRB")) return new ConcurrentLLRB<Integer>();
+	if (name.equals("PartitionedLLRB")) return new PartitionedLLRB<Integer>();
+	if (name.equals("Binary Search Tree")) return new BinarySearchTree<Integer>();
+	if (name.equals("Splay Tree")) return new SplayTree<Integer>();
+	if (name.equals("Skip List")) return new SkipList<Integer>();
+	throw new IllegalArgumentException("Unknown structure " + name);
+    }
+
+    /**
+     * OrderedStructure has no height(), so dispatch on the known classes.
+     * @return the height of struct, or -1 if it has no notion of height
+     */
+    public static int height(OrderedStructure<Integer> struct) {
+	if (struct instanceof RedBlackSearchTree) return ((RedBlackSearchTree<Integer>)struct).height();
+	if (struct instanceof LLRB) return ((LLRB<Integer>)struct).height();
+	if (struct instanceof ArrayLLRB) return ((ArrayLLRB<Integer>)struct).height();
+	if (struct instanceof OrderStatisticLLRB) return ((OrderStatisticLLRB<Integer>)struct).height();
+	if (struct instanceof RAVLTree) return ((RAVLTree<Integer>)struct).height();
+	if (struct instanceof WAVLTree) return ((WAVLTree<Integer>)struct).height();
+	if (struct instanceof AATree) return ((AATree<Integer>)struct).height();
+	if (struct instanceof BPlusTree) return ((BPlusTree<Integer>)struct).height();
+	if (struct instanceof ConcurrentLLRB) return ((ConcurrentLLRB<Integer>)struct).height();
+	if (struct instanceof PartitionedLLRB) return ((PartitionedLLRB<Integer>)struct).height();
+	if (struct instanceof BinarySearchTree) return ((BinarySearchTree<Integer>)struct).height();
+	if (struct instanceof SkipList) return ((SkipList<Integer>)struct).height();
+	return -1;
+    }
+
+    /**
+     * Average time, in milliseconds, to add all of data to an empty struct.
+     * @post struct holds every value of data
+     */
+    protected static double populate(OrderedStructure<Integer> struct, Integer[] data,
+				     int warmup, int iterations) {
+	long total = 0;
+	for (int x = 0; x < warmup + iterations; x++) {
+	    long start = System.nanoTime();
+	    for (int i = 0; i < data.length; i++) struct.add(data[i]);
+	    long duration = System.nanoTime() - start;
+	    if (x >= warmup) total += duration;
+	    for (int i = 0; i < data.length; i++) struct.remove(data[i]);
+	}
+	for (int i = 0; i < data.length; i++) struct.add(data[i]);
+	return millis(total, iterations);
+    }
+
+    /**
+     * Average time, in milliseconds, to look up every value of probe.
+     */
+    protected static double find(Structure<Integer> struct, Integer[] probe,
+				 int warmup, int iterations) {
+	long total = 0;
+	for (int x = 0; x < warmup + iterations; x++) {
+	    int found = 0;
+	    long start = System.nanoTime();
+	    for (int i = 0; i < probe.length; i++) {
+		if (struct.contains(probe[i])) found++;
+	    }
+	    long duration = System.nanoTime() - start;
+	    if (x >= warmup) total += duration;
+	    sink += found;
+	}
+	return millis(total, iterations);
+    }
+
+    /**
+     * Average time, in milliseconds, of probe.length operations where read
+     * percent are lookups and the rest remove and re-add the probed value,
+     * so the size of struct is unchanged.
+     */
+    protected static double mixed(OrderedStructure<Integer> struct, Integer[] probe, int read,
+				  int warmup, int iterations) {
+	Random r = new Random(SEED);
+	boolean[] isRead = new boolean[probe.length];
+	for (int i = 0; i < probe.length; i++) isRead[i] = r.nextInt(100) < read;
+
+	long total = 0;
+	for (int x = 0; x < warmup + iterations; x++) {
+	    long found = 0;
+	    long start = System.nanoTime();
+	    for (int i = 0; i < probe.length; i++) {
+		if (isRead[i]) {
+		    if (struct.contains(probe[i])) found++;
+		} else {
+		    if (struct.remove(probe[i]) != null) found++;
+		    struct.add(probe[i]);
+		}
+	    }
+	    long duration = System.nanoTime() - start;
+	    if (x >= warmup) total += duration;
+	    sink += found;
+	}
+	return millis(total, iterations);
+    }
+
+    /**
+     * Average time, in milliseconds, to remove all of data from struct.
+     * @post struct holds every value of data
+     */
+    protected static double delete(OrderedStructure<Integer> struct, Integer[] data,
+				   int warmup, int iterations) {
+	long total = 0;
+	for (int x = 0; x < warmup + iterations; x++) {
+	    int removed = 0;
+	    long start = System.nanoTime();
+	    for (int i = 0; i < data.length; i++) {
+		if (struct.remove(data[i]) != null) removed++;
+	    }
+	    long duration = System.nanoTime() - start;
+	    if (x >= warmup) total += duration;
+	    if (!struct.isEmpty()) System.err.println("Failed to remove all values");
+	    sink += removed;
+	    for (int i = 0; i < data.length; i++) struct.add(data[i]);
+	}
+	return millis(total, iterations);
+    }
+
+    /**
+     * Returns the n distinct keys 0..n-1 in the insertion order of dist:
+     * shuffled - a uniform random permutation
+     * ascending - sorted order, the worst case for unbalanced trees
+     * zipfian - a random permutation; the skew is in lookups()
+     * clustered - ascending runs of 1000 keys, the runs in random order
+     */
+    public static int[] keys(int n, String dist) {
+	Random r = new Random(SEED);
+	int[] keys = new int[n];
+	for (int i = 0; i < n; i++) keys[i] = i;
+
+	if (dist.equals("shuffled") || dist.equals("zipfian")) {
+	    shuffle(keys, r);
+	}
+	else if (dist.equals("clustered")) {
+	    int run = 1000;
+	    int runs = (n + run - 1) / run;
+	    int[] perm = new int[runs];
+	    for (int i = 0; i < runs; i++) perm[i] = i;
+	    shuffle(perm, r);
+	    int k = 0;
+	    for (int i = 0; i < runs; i++) {
+		for (int j = perm[i] * run; j < Math.min(n, (perm[i] + 1) * run); j++) keys[k++] = j;
+	    }
+	}
+	else if (!dist.equals("ascending")) {
+	    throw new IllegalArgumentException("Unknown distribution " + dist);
+	}
+	return keys;
+    }
+
+    /**
+     * Returns the lookup sequence for keys. For zipfian, lookups are drawn
+     * with Zipf(0.99) skew over the keys (key rank i is keys[i]); otherwise
+     * every key is looked up once, in a fresh random order.
+     */
+    public static int[] lookups(int[] keys, String dist) {
+	Random r = new Random(SEED + 1);
+	int n = keys.length;
+	int[] result = new int[n];
+
+	if (dist.equals("zipfian")) {
+	    double[] cdf = new double[n];
+	    double sum = 0;
+	    for (int i = 0; i < n; i++) {
+		sum += 1.0 / Math.pow(i + 1, 0.99);
+		cdf[i] = sum;
+	    }
+	    for (int i = 0; i < n; i++) {
+		int rank = Arrays.binarySearch(cdf, r.nextDouble() * sum);
+		if (rank < 0) rank = -rank - 1;
+		result[i] = keys[Math.min(rank, n - 1)];
+	    }
+	}
+	else {
+	    System.arraycopy(keys, 0, result, 0, n);
+	    shuffle(result, r);
+	}
+	return result;
+    }
+
+    protected static void shuffle(int[] a, Random r) {
+	for (int i = a.length - 1; i > 0; i--) {
+	    int j = r.nextInt(i + 1);
+	    int t = a[i];
+	    a[i] = a[j];
+	    a[j] = t;
+	}
+    }
+
+    protected static double millis(long nanos, int iterations) {
+	return nanos / 1e6 / iterations;
+    }
+
+    protected static String join(String[] names) {
+	StringBuilder sb = new StringBuilder();
+	for (int i = 0; i < names.length; i++) {
+	    if (i > 0) sb.append(",");
+	    sb.append(names[i]);
+	}
+	return sb.toString();
+    }
+}
@@ -0,0 +1,82 @@
+//A program to test the bulk builds of LLRB
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Builds LLRBs with fromSorted, from an array, an Iterator and a Vector,
+ * and with fromUnsorted, from random values with duplicates, at every
+ * size up to a few hundred and at a few large ones, and compares each
+ * with a java.util.TreeSet of the same values. Each tree must be a valid
+ * LLRB, leave its input untouched, and go on agreeing with the TreeSet
+ * through random adds and removes after the build.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class BulkLoadTest {
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	int[] sizes = new int[300 + 3];
+	for (int n = 0; n < 300; n++) sizes[n] = n;
+	sizes[300] = 1023;
+	sizes[301] = 1024;
+	sizes[302] = 200000;
+	for (int n : sizes) {
+	    //distinct ascending values with gaps, so later adds fall between them
+	    Integer[] sorted = new Integer[n];
+	    TreeSet<Integer> expected = new TreeSet<Integer>();
+	    for (int i = 0; i < n; i++) {
+		sorted[i] = 3 * i + random.nextInt(3);
+		expected.add(sorted[i]);
+	    }
+	    Integer[] copy = sorted.clone();
+	    check(LLRB.fromSorted(sorted), expected, random, "fromSorted(array) of " + n);
+	    Assert.condition(Arrays.equals(sorted, copy), "fromSorted changed its array.");
+	    check(LLRB.fromSorted(Arrays.asList(sorted).iterator()), expected, random, "fromSorted(Iterator) of " + n);
+	    structure5.Vector<Integer> vector = new structure5.Vector<Integer>();
+	    for (Integer value : sorted) vector.add(value);
+	    check(LLRB.fromSorted(vector), expected, random, "fromSorted(Vector) of " + n);
+
+	    //the same values, shuffled, each repeated up to three times
+	    ArrayList<Integer> unsorted = new ArrayList<Integer>();
+	    for (Integer value : sorted) {
+		for (int copies = 1 + random.nextInt(3); copies > 0; copies--) unsorted.add(value);
+	    }
+	    Collections.shuffle(unsorted, random);
+	    Integer[] data = unsorted.toArray(new Integer[unsorted.size()]);
+	    copy = data.clone();
+	    check(LLRB.fromUnsorted(data), expected, random, "fromUnsorted of " + n);
+	    Assert.condition(Arrays.equals(data, copy), "fromUnsorted changed its array.");
+	}
+	System.out.println("bulk builds agree with TreeSet");
+    }
+
+    /**
+     * Checks that a freshly built tree is valid and holds exactly the
+     * values of expected, then that it stays so under random adds and
+     * removes. expected is not changed.
+     */
+    private static void check(LLRB<Integer> tree, TreeSet<Integer> expected, Random random, String what) {
+	Assert.condition(tree.consistency(), what + ": tree is not a valid LLRB.");
+	StructureTest.check(tree, expected, what);
+	TreeSet<Integer> values = new TreeSet<Integer>(expected);
+	int range = 3 * expected.size() + 3;
+	int operations = Math.min(2 * expected.size() + 10, 2000);
+	for (int i = 0; i < operations; i++) {
+	    int key = random.nextInt(range);
+	    if (random.nextBoolean()) {
+		tree.add(key);
+		values.add(key);
+	    }
+	    else {
+		Integer removed = tree.remove(key);
+		Assert.condition((removed != null) == values.remove(key), what + ": remove(" + key + ") disagrees.");
+	    }
+	}
+	Assert.condition(tree.consistency(), what + ": tree is not a valid LLRB after changes.");
+	StructureTest.check(tree, values, what + " and changes");
+    }
+}
@@ -0,0 +1,129 @@
+//A program to test LLRB ordered by a Comparator
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Compares LLRBs of points, which are not Comparable, ordered by a
+ * Comparator, against a java.util.TreeSet with the same Comparator, for
+ * each engine, on random adds and removes. The values, navigation, set
+ * operations, split and join, batches and a frozen copy are compared,
+ * and the invariants of each tree checked.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class ComparatorTest {
+
+    /**
+     * A point in the plane; deliberately not Comparable
+     */
+    static class Point {
+	final int x, y;
+
+	Point(int x, int y) {
+	    this.x = x;
+	    this.y = y;
+	}
+
+	public boolean equals(Object other) {
+	    return other instanceof Point && ((Point)other).x == x && ((Point)other).y == y;
+	}
+
+	public int hashCode() {
+	    return 31 * x + y;
+	}
+
+	public String toString() {
+	    return "(" + x + "," + y + ")";
+	}
+    }
+
+    /**
+     * Orders points by x, then by decreasing y
+     */
+    static final Comparator<Point> ORDER = new Comparator<Point>() {
+	    public int compare(Point a, Point b) {
+		if (a.x != b.x) return (a.x < b.x) ? -1 : 1;
+		return (a.y > b.y) ? -1 : (a.y < b.y) ? 1 : 0;
+	    }
+	};
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	int[] engines = {LLRB.RECURSIVE, LLRB.ITERATIVE, LLRB.TOP_DOWN};
+	for (int engine : engines) {
+	    for (int round = 0; round < 30; round++) {
+		int range = (round < 25) ? 20 : 300;
+		LLRB<Point> tree = new LLRB<Point>(engine, false, ORDER);
+		TreeSet<Point> expected = new TreeSet<Point>(ORDER);
+		for (int i = 0; i < 2000; i++) {
+		    Point p = point(random, range);
+		    if (random.nextInt(3) > 0) {
+			tree.add(p);
+			expected.add(p);
+		    }
+		    else {
+			Point removed = tree.remove(p);
+			Assert.condition((removed != null) == expected.remove(p), "remove disagrees.");
+		    }
+		    Point q = point(random, range);
+		    Assert.condition(tree.contains(q) == expected.contains(q), "contains disagrees.");
+		    Assert.condition(same(tree.floor(q), expected.floor(q)), "floor disagrees.");
+		    Assert.condition(same(tree.higher(q), expected.higher(q)), "higher disagrees.");
+		}
+		check(tree, expected, "adds and removes");
+		Assert.condition(tree.comparator() == ORDER, "comparator() must return the ordering.");
+
+		FrozenTree<Point> frozen = tree.freeze();
+		Point q = point(random, range);
+		Assert.condition(same(frozen.floor(q), expected.floor(q)), "frozen floor disagrees.");
+		check(frozen.thaw(), expected, "freeze and thaw");
+
+		Point key = point(random, range);
+		LLRB<Point> upper = tree.split(key);
+		check(tree, expected.headSet(key, false), "split lower");
+		check(upper, expected.tailSet(key, false), "split upper");
+		TreeSet<Point> all = new TreeSet<Point>(expected);
+		all.add(key);
+		LLRB<Point> joined = LLRB.join(tree, key, upper);
+		check(joined, all, "join");
+
+		LLRB<Point> other = new LLRB<Point>(engine, false, ORDER);
+		Point[] batch = new Point[random.nextInt(400)];
+		for (int i = 0; i < batch.length; i++) batch[i] = point(random, range);
+		other.addAll(batch);
+		TreeSet<Point> union = new TreeSet<Point>(all);
+		union.addAll(Arrays.asList(batch));
+		check(LLRB.union(joined, other), union, "addAll and union");
+	    }
+	}
+
+	LLRB<Point> natural = new LLRB<Point>();
+	natural.add(new Point(0, 0));
+	try {
+	    natural.add(new Point(1, 1));
+	    Assert.fail("Points have no natural order.");
+	} catch (ClassCastException e) {
+	    //as for TreeSet
+	}
+	System.out.println("LLRB with a Comparator agrees with TreeSet");
+    }
+
+    private static Point point(Random random, int range) {
+	return new Point(random.nextInt(range), random.nextInt(range));
+    }
+
+    private static boolean same(Point a, Point b) {
+	return (a == null) ? b == null : a.equals(b);
+    }
+
+    /**
+     * Checks that tree holds exactly the values of expected, in order
+     */
+    private static void check(LLRB<Point> tree, SortedSet<Point> expected, String operation) {
+	Assert.condition(tree.consistency(), operation + ": tree is not a valid LLRB.");
+	StructureTest.check(tree, expected, operation);
+    }
+}
@@ -0,0 +1,441 @@
+//A left leaning red black tree safe for concurrent readers, based off LLRB.
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import structure5.*;
+
+/**
+ * This class implements LLRB for a single writer at a time and any number
+ * of concurrent readers. Writers never modify a node a reader can see:
+ * add and remove copy each node on the path they touch (path copying), and
+ * rotations and color flips work on those copies. The new tree is then
+ * published, with its size and version, as one immutable Snapshot by a
+ * single volatile write. Readers (contains, get, size, iterator) read it
+ * once and traverse an unchanging tree, so they never block, retry or
+ * see a half-finished update, nor a size that does not match the tree.
+ * Writers are serialized by the tree's monitor.
+ * <P>
+ * A node belongs to the write that created it, recorded in its epoch;
+ * only nodes of the current epoch are modified in place, so a node is
+ * copied at most once per write, and each write allocates O(log n) nodes.
+ * <P>
+ * Since published nodes never change, the tree is persistent: snapshot()
+ * returns the current Snapshot in O(1), read-only, which stays
+ * valid and unchanged however the live tree is modified afterwards. A
+ * snapshot can also seed a new live tree, again in O(1), with the two
+ * trees sharing all unmodified structure.
+ *
+ * @author, 2014 tony liu, michael shaw
+ * @see LLRB
+ */
+
+public class ConcurrentLLRB<E extends Comparable<E>> extends AbstractStructure<E> implements OrderedStructure<E> {
+
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+
+    /**
+     * The published tree, with its size and version (the number of writes
+     * that changed it); readers see a complete tree or its predecessor
+     */
+    private volatile Snapshot<E> published;
+
+    /**
+     * The epoch of the write in progress; guarded by this
+     */
+    private long epoch;
+
+    /**
+     * Source of epochs. Epochs are unique across all trees, since trees
+     * seeded from a snapshot share nodes with the original.
+     */
+    private static final AtomicLong EPOCHS = new AtomicLong();
+
+    /**
+     * Internal Node class; nodes are immutable once published
+     */
+    protected static class Node<E> implements TreeNode<E> {
+	private boolean color;
+	private Node<E> left;
+	private Node<E> right;
+	private E value;
+
+	/**
+	 * The write that created this node
+	 */
+	private long epoch;
+
+	protected Node(E value, long epoch) {
+	    this.color = RED;
+	    this.value = value;
+	    this.epoch = epoch;
+	}
+
+	protected Node(Node<E> other, long epoch) {
+	    this.color = other.color;
+	    this.left = other.left;
+	    this.right = other.right;
+	    this.value = other.value;
+	    this.epoch = epoch;
+	}
+
+	public E value() {
+	    return value;
+	}
+
+	public Node<E> left() {
+	    return left;
+	}
+
+	public Node<E> right() {
+	    return right;
+	}
+    }
+
+    //default constructor
+    public ConcurrentLLRB() {
+	published = new Snapshot<E>(null, 0, 0);
+	epoch = 0;
+    }
+
+    /**
+     * Constructs a live tree holding the contents of a snapshot, in O(1).
+     * The new tree copies nodes as it is modified; the snapshot, and the
+     * tree it came from, are unaffected.
+     * @post the tree holds the values of snapshot
+     */
+    public ConcurrentLLRB(Snapshot<E> snapshot) {
+	published = snapshot;
+	epoch = 0;
+    }
+
+    /**
+     * Returns a node of the current write that may be modified: h itself
+     * if this write created it, otherwise a copy
+     */
+    protected Node<E> own(Node<E> h) {
+	if (h == null || h.epoch == epoch) return h;
+	return new Node<E>(h, epoch);
+    }
+
+    protected boolean isRed(Node<E> x) {
+	return x != null && x.color == RED;
+    }
+
+    public boolean isEmpty() {
+	return published.root == null;
+    }
+
+    public int size() {
+	return published.size;
+    }
+
+    public synchronized void clear() {
+	published = new Snapshot<E>(null, 0, published.version + 1);
+    }
+
+    /**
+     * Returns the version of the tree, incremented by every modification
+     * @return the version of the currently published tree
+     */
+    public long version() {
+	return published.version;
+    }
+
+    /**
+     * Captures the current contents of the tree in O(1)
+     * @return a read-only snapshot of the tree as now published
+     */
+    public Snapshot<E> snapshot() {
+	return published;
+    }
+
+    public boolean contains(E value) {
+	return get(value) != null;
+    }
+
+    /**
+     * Lock-free lookup over the currently published tree
+     * @pre value is not null
+     * @return the value in the tree equal to value, or null
+     */
+    public E get(E value) {
+	Node<E> x = published.root;
+	while (x != null) {
+	    int cmp = value.compareTo(x.value);
+	    if (cmp == 0) return x.value;
+	    else if (cmp < 0) x = x.left;
+	    else x = x.right;
+	}
+	return null;
+    }
+
+    /**
+     * Adds value to the tree, publishing the new tree atomically. Adding
+     * a value already present copies and publishes nothing.
+     * @pre value is not null
+     * @post value is in the tree
+     */
+    public synchronized void add(E value) {
+	if (get(value) != null) return;
+	Snapshot<E> current = published;
+	epoch = EPOCHS.incrementAndGet();
+	Node<E> h = addRecursive(current.root, value);
+	//a red root is always a copy of this write
+	if (isRed(h)) h.color = BLACK;
+	published = new Snapshot<E>(h, current.size + 1, current.version + 1);
+    }
+
+    /**
+     * Adds value, known to be absent, below h
+     */
+    private Node<E> addRecursive(Node<E> h, E value) {
+	if (h == null) return new Node<E>(value, epoch);
+	int compare = value.compareTo(h.value);
+	h = own(h);
+	if (compare < 0) h.left = addRecursive(h.left, value);
+	else h.right = addRecursive(h.right, value);
+	return fixUp(h);
+    }
+
+    /**
+     * Removes value from the tree, publishing the new tree atomically
+     * @return the removed value, or null if it was not present
+     */
+    public synchronized E remove(E value) {
+	E result = get(value);
+	if (result == null) return null;
+	Snapshot<E> current = published;
+	epoch = EPOCHS.incrementAndGet();
+	Node<E> h = removeRecursive(current.root, value);
+	if (isRed(h)) h.color = BLACK;
+	published = new Snapshot<E>(h, current.size - 1, current.version + 1);
+	return result;
+    }
+
+    private Node<E> removeRecursive(Node<E> h, E value) {
+	h = own(h);
+	if (value.compareTo(h.value) < 0) {
+	    if (!isRed(h.left) && !isRed(h.left.left)) h = moveRedLeft(h);
+	    h.left = removeRecursive(h.left, value);
+	}
+	else {
+	    if (isRed(h.left)) h = rotateRight(h);
+	    if (value.compareTo(h.value) == 0 && h.right == null) return null;
+	    if (!isRed(h.right) && !isRed(h.right.left)) h = moveRedRight(h);
+	    if (value.compareTo(h.value) == 0) {
+		h.value = min(h.right).value;
+		h.right = removeMinRecursive(h.right);
+	    }
+	    else h.right = removeRecursive(h.right, value);
+	}
+	return fixUp(h);
+    }
+
+    private Node<E> removeMinRecursive(Node<E> h) {
+	if (h.left == null) return null;
+	h = own(h);
+	if (!isRed(h.left) && !isRed(h.left.left)) h = moveRedLeft(h);
+	h.left = removeMinRecursive(h.left);
+	return fixUp(h);
+    }
+
+    /**
+     * Flips the colors of h (owned) and of copies of its children
+     */
+    protected void colorFlip(Node<E> h) {
+	h.left = own(h.left);
+	h.right = own(h.right);
+	h.color = !h.color;
+	h.left.color = !h.left.color;
+	h.right.color = !h.right.color;
+    }
+
+    protected Node<E> rotateLeft(Node<E> h) {
+	Node<E> x = own(h.right);
+	h.right = x.left;
+	x.left = h;
+	x.color = h.color;
+	h.color = RED;
+	return x;
+    }
+
+    protected Node<E> rotateRight(Node<E> h) {
+	Node<E> x = own(h.left);
+	h.left = x.right;
+	x.right = h;
+	x.color = h.color;
+	h.color = RED;
+	return x;
+    }
+
+    protected Node<E> moveRedLeft(Node<E> h) {
+	colorFlip(h);
+	if (isRed(h.right.left)) {
+	    h.right = rotateRight(h.right);
+	    h = rotateLeft(h);
+	    colorFlip(h);
+	}
+	return h;
+    }
+
+    protected Node<E> moveRedRight(Node<E> h) {
+	colorFlip(h);
+	if (isRed(h.left.left)) {
+	    h = rotateRight(h);
+	    colorFlip(h);
+	}
+	return h;
+    }
+
+    private Node<E> fixUp(Node<E> h) {
+	if (isRed(h.right) && !isRed(h.left)) h = rotateLeft(h);
+	if (isRed(h.left) && isRed(h.left.left)) h = rotateRight(h);
+	if (isRed(h.left) && isRed(h.right)) colorFlip(h);
+	return h;
+    }
+
+    private Node<E> min(Node<E> h) {
+	while (h.left != null) h = h.left;
+	return h;
+    }
+
+    public int height() {
+	return heightRecursive(published.root);
+    }
+
+    protected int heightRecursive(Node<E> h) {
+	if (h == null) return -1;
+	return 1 + Math.max(heightRecursive(h.left), heightRecursive(h.right));
+    }
+
+    /**
+     * Checks the invariants of the tree as now published, for testing
+     * @return true if the published tree is consistent
+     * @see Snapshot#consistency
+     */
+    public boolean consistency() {
+	return published.consistency();
+    }
+
+    /**
+     * Recursive helper for consistency()
+     * @return the number of black nodes on every path below h, or -1 if
+     * the paths differ or a red link is misplaced
+     */
+    protected static <E> int blackConsistency(Node<E> h) {
+	if (h == null) return 0;
+	if (h.right != null && h.right.color == RED) return -1;
+	if (h.color == RED && h.left != null && h.left.color == RED) return -1;
+	int black = blackConsistency(h.left);
+	if (black < 0 || black != blackConsistency(h.right)) return -1;
+	return (h.color == RED) ? black : black + 1;
+    }
+
+    /**
+     * An in-order iterator over the tree as published when it was created;
+     * later writes are not seen, and never disturb it.
+     */
+    protected static class TreeIterator<E> extends TreeNodeIterator<E> {
+	private Node<E> start;
+
+	protected TreeIterator(Node<E> start) {
+	    this.start = start;
+	    reset();
+	}
+
+	protected TreeNode<E> root() {
+	    return start;
+	}
+
+	/**
+	 * Published nodes never change, so neither does the version
+	 */
+	protected int version() {
+	    return 0;
+	}
+    }
+
+    public Iterator<E> iterator() {
+	return new TreeIterator<E>(published.root);
+    }
+
+    public String toString() {
+	return TreeNodeIterator.toString("ConcurrentLLRB", this);
+    }
+
+    /**
+     * A read-only, point-in-time view of a ConcurrentLLRB. It holds the
+     * root of the tree as it was when taken, and so is unaffected by later
+     * writes. Nodes it shares with the live tree are never modified.
+     */
+    public static class Snapshot<E extends Comparable<E>> extends AbstractStructure<E> implements OrderedStructure<E> {
+	private final Node<E> root;
+	private final int size;
+	private final long version;
+
+	protected Snapshot(Node<E> root, int size, long version) {
+	    this.root = root;
+	    this.size = size;
+	    this.version = version;
+	}
+
+	/**
+	 * @return the version of the tree this snapshot was taken from
+	 */
+	public long version() {
+	    return version;
+	}
+
+	public int size() {
+	    return size;
+	}
+
+	public boolean contains(E value) {
+	    Node<E> x = root;
+	    while (x != null) {
+		int cmp = value.compareTo(x.value);
+		if (cmp == 0) return true;
+		else if (cmp < 0) x = x.left;
+		else x = x.right;
+	    }
+	    return false;
+	}
+
+	public Iterator<E> iterator() {
+	    return new TreeIterator<E>(root);
+	}
+
+	/**
+	 * Checks the invariants of the snapshot, for testing: those of LLRB,
+	 * values in strictly ascending order, and a size that matches them.
+	 * @return true if the snapshot is consistent
+	 */
+	public boolean consistency() {
+	    if (root != null && root.color == RED) return false;
+	    if (blackConsistency(root) < 0) return false;
+	    int count = 0;
+	    E previous = null;
+	    for (E value : this) {
+		if (previous != null && previous.compareTo(value) >= 0) return false;
+		previous = value;
+		count++;
+	    }
+	    return count == size;
+	}
+
+	public void add(E value) {
+	    Assert.fail("Snapshots are read-only.");
+	}
+
+	public E remove(E value) {
+	    Assert.fail("Snapshots are read-only.");
+	    return null;
+	}
+
+	public void clear() {
+	    Assert.fail("Snapshots are read-only.");
+	}
+    }
+}
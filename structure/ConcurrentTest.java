@@ -0,0 +1,99 @@
+//A program to test ConcurrentLLRB
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import structure5.*;
+
+/**
+ * Compares ConcurrentLLRB against java.util.TreeSet on random adds and
+ * removes, first from one thread, then from a writer while reader threads
+ * run. The writer only touches odd values, after the even ones are added
+ * and left alone, so every reader must always find each even value and
+ * no negative one, and every tree it reads, taken as a snapshot, must be
+ * a valid LLRB whose size matches its values. At the end the tree must
+ * agree with the writer's TreeSet.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class ConcurrentTest {
+
+    static final int RANGE = 20000;
+    static final int READERS = 4;
+
+    /**
+     * Set when the writer has finished
+     */
+    static volatile boolean done = false;
+
+    public static void main(String args[]) throws InterruptedException {
+	Random random = new Random(2014);
+	ConcurrentLLRB<Integer> tree = new ConcurrentLLRB<Integer>();
+	TreeSet<Integer> expected = new TreeSet<Integer>();
+	for (int i = 0; i < 100000; i++) {
+	    int key = random.nextInt(RANGE);
+	    if (random.nextInt(3) > 0) {
+		tree.add(key);
+		expected.add(key);
+	    }
+	    else {
+		Integer removed = tree.remove(key);
+		Assert.condition((removed != null) == expected.remove(key), "remove(" + key + ") disagrees.");
+	    }
+	    int probe = random.nextInt(RANGE);
+	    Assert.condition(tree.contains(probe) == expected.contains(probe), "contains(" + probe + ") disagrees.");
+	    if (i % 10000 == 0) check(tree, expected, "after " + i + " operations");
+	}
+	check(tree, expected, "one thread");
+
+	final ConcurrentLLRB<Integer> shared = new ConcurrentLLRB<Integer>();
+	final TreeSet<Integer> model = new TreeSet<Integer>();
+	for (int key = 0; key < RANGE; key += 2) {
+	    shared.add(key);
+	    model.add(key);
+	}
+	final AtomicReference<String> failure = new AtomicReference<String>();
+	Thread[] readers = new Thread[READERS];
+	for (int r = 0; r < READERS; r++) {
+	    final Random reads = new Random(r);
+	    readers[r] = new Thread(new Runnable() {
+		    public void run() {
+			int rounds = 0;
+			while (failure.get() == null && !done) {
+			    int even = 2 * reads.nextInt(RANGE / 2);
+			    if (!shared.contains(even)) failure.compareAndSet(null, "a reader lost " + even);
+			    if (shared.contains(-1 - reads.nextInt(RANGE))) failure.compareAndSet(null, "a reader found a negative value");
+			    if (++rounds % 2000 == 0) {
+				ConcurrentLLRB.Snapshot<Integer> snapshot = shared.snapshot();
+				if (!snapshot.consistency()) failure.compareAndSet(null, "a reader saw an invalid tree");
+				if (!snapshot.contains(even)) failure.compareAndSet(null, "a snapshot lost " + even);
+			    }
+			}
+		    }
+		});
+	    readers[r].start();
+	}
+	for (int i = 0; i < 200000 && failure.get() == null; i++) {
+	    int odd = 2 * random.nextInt(RANGE / 2) + 1;
+	    if (random.nextBoolean()) {
+		shared.add(odd);
+		model.add(odd);
+	    }
+	    else {
+		shared.remove(odd);
+		model.remove(odd);
+	    }
+	}
+	done = true;
+	for (Thread reader : readers) reader.join();
+	Assert.condition(failure.get() == null, "" + failure.get());
+	check(shared, model, "one writer and " + READERS + " readers");
+	System.out.println("ConcurrentLLRB agrees with TreeSet");
+    }
+
+    private static void check(ConcurrentLLRB<Integer> tree, SortedSet<Integer> expected, String what) {
+	Assert.condition(tree.consistency(), what + ": tree is not a valid LLRB.");
+	StructureTest.check(tree, expected, what);
+    }
+}
@@ -0,0 +1,87 @@
+//A program to test the iterative engine of LLRB
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Compares the ITERATIVE engine of LLRB against java.util.TreeSet on
+ * random adds and removes, including values already present or absent,
+ * and against the RECURSIVE engine: the two run the same algorithm, so
+ * after the same operations they must build the same tree, colors and
+ * all. Ascending and descending runs make the descent path as long as it
+ * gets. The invariants of each tree are checked as it goes.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class EngineTest {
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	for (int round = 0; round < 20; round++) {
+	    int range = (round < 10) ? 100 : 10000;
+	    LLRB<Integer> iterative = new LLRB<Integer>(LLRB.ITERATIVE, false);
+	    LLRB<Integer> recursive = new LLRB<Integer>(LLRB.RECURSIVE, false);
+	    TreeSet<Integer> expected = new TreeSet<Integer>();
+	    for (int i = 0; i < 10000; i++) {
+		int key = random.nextInt(range);
+		if (random.nextInt(3) > 0) {
+		    iterative.add(key);
+		    recursive.add(key);
+		    expected.add(key);
+		}
+		else {
+		    Integer removed = iterative.remove(key);
+		    Assert.condition((removed != null) == expected.remove(key), "remove(" + key + ") disagrees.");
+		    recursive.remove(key);
+		}
+		int probe = random.nextInt(range);
+		Assert.condition(iterative.contains(probe) == expected.contains(probe), "contains(" + probe + ") disagrees.");
+		if (i % 1000 == 0) check(iterative, recursive, expected, "round " + round);
+	    }
+	    check(iterative, recursive, expected, "round " + round);
+	}
+
+	//sorted runs, emptied from the other end
+	LLRB<Integer> iterative = new LLRB<Integer>(LLRB.ITERATIVE, false);
+	LLRB<Integer> recursive = new LLRB<Integer>(LLRB.RECURSIVE, false);
+	TreeSet<Integer> expected = new TreeSet<Integer>();
+	for (int i = 0; i < 100000; i++) {
+	    iterative.add(i);
+	    recursive.add(i);
+	    expected.add(i);
+	}
+	check(iterative, recursive, expected, "ascending adds");
+	for (int i = 99999; i >= 50000; i--) {
+	    iterative.remove(i);
+	    recursive.remove(i);
+	    expected.remove(i);
+	}
+	check(iterative, recursive, expected, "descending removes");
+	for (int i = -1; i > -50000; i--) {
+	    iterative.add(i);
+	    recursive.add(i);
+	    expected.add(i);
+	}
+	check(iterative, recursive, expected, "descending adds");
+	for (int i = -49999; i < 50000; i++) {
+	    iterative.remove(i);
+	    recursive.remove(i);
+	    expected.remove(i);
+	}
+	check(iterative, recursive, expected, "ascending removes");
+	Assert.condition(iterative.isEmpty(), "the tree should be empty.");
+	System.out.println("the iterative engine agrees with TreeSet and the recursive engine");
+    }
+
+    /**
+     * Checks that both trees are valid, hold exactly the values of
+     * expected, and have the same shape
+     */
+    private static void check(LLRB<Integer> iterative, LLRB<Integer> recursive, SortedSet<Integer> expected, String what) {
+	Assert.condition(iterative.consistency(), what + ": tree is not a valid LLRB.");
+	StructureTest.check(iterative, expected, what);
+	Assert.condition(iterative.toString().equals(recursive.toString()), what + ": the engines built different trees.");
+    }
+}
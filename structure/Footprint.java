@@ -0,0 +1,207 @@
+//Memory footprint accounting for the structures.
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.*;
+import java.util.*;
+import structure5.*;
+
+/**
+ * This class measures the heap retained by a structure: every object
+ * reachable from it, walked by reflection, sized by the HotSpot object
+ * layout. The values held by the structure are counted apart, so the
+ * structure's own cost per element can be compared across structures
+ * holding the same values. It reports:
+ * <pre>
+ *   bytes          retained by the structure itself, values excluded
+ *   elementBytes   retained by the values (shared objects once)
+ *   overheadBytes  of bytes, spent on object headers and alignment
+ *                  padding rather than fields
+ *   wastedBytes    of bytes, spent on empty (null) reference slots of
+ *                  arrays, such as unused Vector capacity
+ *   objects        the number of objects of the structure
+ * </pre>
+ * Sizes follow HotSpot on a 64 bit JVM: 12 byte headers and 4 byte
+ * references with compressed oops, 16 and 8 without, 16 byte array
+ * headers and 8 byte alignment. Fields are assumed packed without gaps,
+ * so sizes are estimates, usually exact for small node classes.
+ * <P>
+ * Static fields are not followed. Objects of JDK classes can be walked
+ * only if their packages are open to this code (--add-opens on Java 9
+ * and later); otherwise only their shallow size is counted.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class Footprint {
+
+    private static final int ALIGN = 8;
+    private static final boolean COMPRESSED = compressedOops();
+    private static final int HEADER = COMPRESSED ? 12 : 16;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = COMPRESSED ? 4 : 8;
+
+    public final long bytes;
+    public final long elementBytes;
+    public final long overheadBytes;
+    public final long wastedBytes;
+    public final long objects;
+    public final int elements;
+
+    protected Footprint(long bytes, long elementBytes, long overheadBytes, long wastedBytes,
+			long objects, int elements) {
+	this.bytes = bytes;
+	this.elementBytes = elementBytes;
+	this.overheadBytes = overheadBytes;
+	this.wastedBytes = wastedBytes;
+	this.objects = objects;
+	this.elements = elements;
+    }
+
+    /**
+     * Measures a structure, counting its values as elements
+     * @pre structure is not being modified
+     * @return the footprint of structure
+     */
+    public static Footprint of(Structure<?> structure) {
+	ArrayList<Object> values = new ArrayList<Object>();
+	for (Object value : structure) values.add(value);
+	return measure(structure, values, structure.size());
+    }
+
+    /**
+     * Measures a map, counting its keys and values as elements
+     * @pre map is not being modified
+     * @return the footprint of map; elements is the number of entries
+     */
+    public static Footprint of(structure5.Map<?,?> map) {
+	ArrayList<Object> values = new ArrayList<Object>();
+	for (Object key : map.keySet()) values.add(key);
+	for (Object value : map.values()) values.add(value);
+	return measure(map, values, map.size());
+    }
+
+    /**
+     * Measures everything reachable from root, such as a structure of
+     * primitive keys, with no objects counted as elements
+     * @return the footprint of root, for the given number of elements
+     */
+    public static Footprint of(Object root, int elements) {
+	return measure(root, new ArrayList<Object>(), elements);
+    }
+
+    private static Footprint measure(Object root, java.util.List<Object> values, int elements) {
+	IdentityHashMap<Object,Boolean> seen = new IdentityHashMap<Object,Boolean>();
+	long[] element = new long[4];
+	//walk the values first, so the structure walk stops at them
+	for (Object value : values) walk(value, seen, element);
+	long[] total = new long[4];
+	walk(root, seen, total);
+	return new Footprint(total[0], element[0], total[1], total[2], total[3], elements);
+    }
+
+    /**
+     * Adds the objects reachable from start and not yet seen to sums:
+     * sums[0] bytes, sums[1] overhead, sums[2] wasted, sums[3] objects
+     */
+    private static void walk(Object start, IdentityHashMap<Object,Boolean> seen, long[] sums) {
+	ArrayDeque<Object> todo = new ArrayDeque<Object>();
+	if (start != null && seen.put(start, Boolean.TRUE) == null) todo.push(start);
+	while (!todo.isEmpty()) {
+	    Object o = todo.pop();
+	    Class<?> c = o.getClass();
+	    sums[3]++;
+	    if (c.isArray()) {
+		int n = Array.getLength(o);
+		long data = (long)n * slot(c.getComponentType());
+		long size = align(ARRAY_HEADER + data);
+		sums[0] += size;
+		sums[1] += size - data;
+		if (!c.getComponentType().isPrimitive()) {
+		    for (Object x : (Object[])o) {
+			if (x == null) sums[2] += REFERENCE;
+			else if (seen.put(x, Boolean.TRUE) == null) todo.push(x);
+		    }
+		}
+		continue;
+	    }
+	    long data = 0;
+	    for (Class<?> k = c; k != null; k = k.getSuperclass()) {
+		for (Field f : k.getDeclaredFields()) {
+		    if (Modifier.isStatic(f.getModifiers())) continue;
+		    data += slot(f.getType());
+		    if (f.getType().isPrimitive()) continue;
+		    Object x = read(f, o);
+		    if (x != null && !(x instanceof Class) && seen.put(x, Boolean.TRUE) == null) todo.push(x);
+		}
+	    }
+	    long size = align(HEADER + data);
+	    sums[0] += size;
+	    sums[1] += size - data;
+	}
+    }
+
+    /**
+     * @return the value of field f of o, or null if it cannot be read
+     */
+    private static Object read(Field f, Object o) {
+	try {
+	    f.setAccessible(true);
+	    return f.get(o);
+	} catch (RuntimeException e) {
+	    //a closed JDK package: count the object, not what it holds
+	    return null;
+	} catch (IllegalAccessException e) {
+	    return null;
+	}
+    }
+
+    private static int slot(Class<?> type) {
+	if (type == long.class || type == double.class) return 8;
+	if (type == int.class || type == float.class) return 4;
+	if (type == short.class || type == char.class) return 2;
+	if (type == byte.class || type == boolean.class) return 1;
+	return REFERENCE;
+    }
+
+    private static long align(long size) {
+	return (size + ALIGN - 1) / ALIGN * ALIGN;
+    }
+
+    private static boolean compressedOops() {
+	try {
+	    com.sun.management.HotSpotDiagnosticMXBean vm =
+		ManagementFactory.getPlatformMXBean(com.sun.management.HotSpotDiagnosticMXBean.class);
+	    return Boolean.parseBoolean(vm.getVMOption("UseCompressedOops").getValue());
+	} catch (Throwable e) {
+	    //not HotSpot: assume the default for heaps under 32GB
+	    return true;
+	}
+    }
+
+    /**
+     * @return bytes of the structure per element, values excluded
+     */
+    public double bytesPerElement() {
+	return (elements == 0) ? 0 : (double)bytes / elements;
+    }
+
+    /**
+     * @return header and padding bytes per element
+     */
+    public double overheadPerElement() {
+	return (elements == 0) ? 0 : (double)overheadBytes / elements;
+    }
+
+    /**
+     * @return empty array slot bytes per element
+     */
+    public double wastedPerElement() {
+	return (elements == 0) ? 0 : (double)wastedBytes / elements;
+    }
+
+    public String toString() {
+	return "<Footprint: " + elements + " elements, " + bytes + " bytes in " + objects + " objects ("
+	    + overheadBytes + " overhead, " + wastedBytes + " wasted), values " + elementBytes + " bytes>";
+    }
+}
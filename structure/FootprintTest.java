@@ -0,0 +1,106 @@
+//A program to test Footprint
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Checks Footprint on arrays and objects of known layout, then measures
+ * every benchmark structure after random adds and removes. Each must
+ * still agree with a java.util.TreeSet after being measured, and its
+ * values must be counted exactly once, as elements. Adding one value to
+ * an LLRB must add exactly one node.
+ * <P>
+ * Some structures keep their nodes in JDK collections, which Footprint
+ * can only walk if java.util is open to it, as the benchmark arranges
+ * with --add-opens. Without that, their own size is not checked.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class FootprintTest {
+
+    /**
+     * An object of known layout: a header, an int and a reference
+     */
+    static class Cell {
+	int value;
+	Cell next;
+    }
+
+    public static void main(String args[]) {
+	Footprint ints = Footprint.of(new int[10], 0);
+	Assert.condition(ints.bytes == 56 && ints.overheadBytes == 16 && ints.objects == 1, "int[10] is " + ints);
+
+	Object[] slots = new Object[5];
+	slots[0] = new Cell();
+	slots[3] = slots[0];
+	Footprint sparse = Footprint.of(slots, 0);
+	int reference = (int)(sparse.wastedBytes / 3);
+	Assert.condition(reference == 4 || reference == 8, "a reference is " + reference + " bytes.");
+	Assert.condition(sparse.wastedBytes == 3 * reference && sparse.objects == 2, "Object[5] with one cell twice is " + sparse);
+
+	Cell chain = null;
+	for (int i = 0; i < 100; i++) {
+	    Cell cell = new Cell();
+	    cell.next = chain;
+	    chain = cell;
+	}
+	Footprint cells = Footprint.of(chain, 100);
+	Assert.condition(cells.objects == 100 && cells.bytes == 100 * align(header(reference) + 4 + reference), "100 cells are " + cells);
+
+	boolean open = true;
+	try {
+	    ArrayList.class.getDeclaredField("elementData").setAccessible(true);
+	} catch (Exception e) {
+	    //java.util is closed: JDK collections are measured shallowly
+	    open = false;
+	}
+
+	Random random = new Random(2014);
+	Integer[] pool = new Integer[4000];
+	for (int i = 0; i < pool.length; i++) pool[i] = Integer.valueOf(1000 + i);
+	for (String name : Benchmark.STRUCTS) {
+	    OrderedStructure<Integer> struct;
+	    try {
+		struct = Benchmark.create(name);
+	    } catch (IllegalArgumentException e) {
+		//measured in their own way by the benchmark
+		continue;
+	    }
+	    TreeSet<Integer> expected = new TreeSet<Integer>();
+	    for (int i = 0; i < 10000; i++) {
+		Integer value = pool[random.nextInt(pool.length)];
+		if (random.nextInt(3) > 0) {
+		    if (!expected.contains(value)) struct.add(value);
+		    expected.add(value);
+		}
+		else if (expected.remove(value)) struct.remove(value);
+	    }
+	    Footprint footprint = Footprint.of(struct);
+	    StructureTest.check(struct, expected, name + " after measuring");
+	    long integer = align(header(reference) + 4);
+	    Assert.condition(footprint.elementBytes == expected.size() * integer, name + ": values counted wrongly, " + footprint);
+	    Assert.condition(footprint.elements == expected.size(), name + ": " + footprint);
+	    Assert.condition(!open || footprint.bytesPerElement() > reference, name + ": too small, " + footprint);
+	    Assert.condition(footprint.overheadBytes <= footprint.bytes && footprint.wastedBytes <= footprint.bytes, name + ": " + footprint);
+	}
+
+	LLRB<Integer> tree = new LLRB<Integer>();
+	for (int i = 0; i < 1000; i++) tree.add(pool[i]);
+	Footprint before = Footprint.of(tree);
+	tree.add(pool[1000]);
+	Footprint after = Footprint.of(tree);
+	Assert.condition(after.objects == before.objects + 1, "one add must add one node.");
+	Assert.condition(after.elementBytes == before.elementBytes + align(header(reference) + 4), "one add must add one value.");
+	System.out.println("Footprint measures every structure");
+    }
+
+    private static int header(int reference) {
+	return (reference == 4) ? 12 : 16;
+    }
+
+    private static long align(long size) {
+	return (size + 7) / 8 * 8;
+    }
+}
@@ -0,0 +1,239 @@
+//A read-only search tree laid out in an array, in Eytzinger order.
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * This class implements an immutable set of values, frozen from an
+ * OrderedStructure, such as an LLRB, that will no longer change. The
+ * values are laid out in one array in Eytzinger (breadth first) order:
+ * the root at index 1 and the children of index k at 2k and 2k+1, as in
+ * a binary heap. A search needs no node objects and no child pointers,
+ * the first levels of the tree share a few cache lines, and the
+ * children of a node are adjacent.
+ * <P>
+ * contains, floor and rank share one descent, which remembers its last
+ * right turn as the floor. It branches on each comparison: a branch-free
+ * descent (child 2k + (cmp <= 0), to the bottom) was timed at twice the
+ * cost, since each step must wait for the value object to load, while a
+ * predicted branch lets the processor start on the next one. Java has
+ * no prefetch instruction to make up for that.
+ * <P>
+ * Values are not copied, so each comparison still reads a value object
+ * outside the array. add, remove and clear fail; thaw() returns a
+ * mutable LLRB of the same values and ordering.
+ *
+ * @author, 2014 tony liu, michael shaw
+ * @see LLRB#freeze()
+ */
+
+public class FrozenTree<E> extends AbstractStructure<E> {
+
+    /**
+     * The values in Eytzinger order, from index 1; index 0 is unused
+     */
+    private Object[] values;
+
+    /**
+     * ranks[k] is the number of values less than values[k]
+     */
+    private int[] ranks;
+
+    private int size;
+
+    /**
+     * The ordering of values, or null for their natural order, in which
+     * case values must be Comparable
+     */
+    private Comparator<? super E> ordering;
+
+    /**
+     * Freezes the values of source, in the order its iterator returns them
+     * @pre source iterates in strictly ascending order
+     * @post the tree holds the values of source
+     */
+    public FrozenTree(OrderedStructure<E> source) {
+	this(source, null);
+    }
+
+    /**
+     * Freezes the values of source, ordered by ordering
+     * @pre source iterates in strictly ascending order by ordering, or by
+     * natural order if it is null
+     * @post the tree holds the values of source
+     */
+    @SuppressWarnings("unchecked")
+    public FrozenTree(OrderedStructure<E> source, Comparator<? super E> ordering) {
+	this.ordering = (ordering instanceof NaturalComparator) ? null : ordering;
+	Object[] sorted = new Object[source.size()];
+	int n = 0;
+	for (E value : source) sorted[n++] = value;
+	for (int i = 1; i < n; i++) {
+	    Assert.pre(compare((E)sorted[i - 1], (E)sorted[i]) < 0, "Values must be strictly ascending.");
+	}
+	size = n;
+	values = new Object[n + 1];
+	ranks = new int[n + 1];
+	layout(sorted, 0, 1);
+    }
+
+    /**
+     * Places sorted[i..] in order in the subtree rooted at index k
+     * @return the index in sorted of the first value not placed
+     */
+    private int layout(Object[] sorted, int i, int k) {
+	if (k > size) return i;
+	i = layout(sorted, i, 2 * k);
+	values[k] = sorted[i];
+	ranks[k] = i;
+	return layout(sorted, i + 1, 2 * k + 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+	if (ordering == null) return ((Comparable<? super E>)a).compareTo(b);
+	return ordering.compare(a, b);
+    }
+
+    /**
+     * Descends from the root, stopping at a value equal to value
+     * @return the index of the largest value at most value, or 0 if none
+     */
+    @SuppressWarnings("unchecked")
+    private int search(E value) {
+	Object[] a = values;
+	int n = size;
+	int k = 1;
+	int floor = 0;
+	while (k <= n) {
+	    int cmp = compare((E)a[k], value);
+	    if (cmp == 0) return k;
+	    if (cmp < 0) {
+		floor = k;
+		k = 2 * k + 1;
+	    }
+	    else k = 2 * k;
+	}
+	return floor;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public boolean isEmpty() {
+	return size == 0;
+    }
+
+    public boolean contains(E value) {
+	return get(value) != null;
+    }
+
+    /**
+     * @return the value equal to value, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public E get(E value) {
+	int k = search(value);
+	if (k == 0 || compare((E)values[k], value) != 0) return null;
+	return (E)values[k];
+    }
+
+    /**
+     * @return the largest value at most value, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public E floor(E value) {
+	return (E)values[search(value)];
+    }
+
+    /**
+     * @return the number of values less than value
+     */
+    @SuppressWarnings("unchecked")
+    public int rank(E value) {
+	int k = search(value);
+	if (k == 0) return 0;
+	return (compare((E)values[k], value) == 0) ? ranks[k] : ranks[k] + 1;
+    }
+
+    /**
+     * @return the height of the implicit tree, or -1 if it is empty
+     */
+    public int height() {
+	return 31 - Integer.numberOfLeadingZeros(size);
+    }
+
+    /**
+     * Returns a mutable tree of the values, built in linear time
+     * @return a new LLRB holding the values of this tree
+     */
+    public LLRB<E> thaw() {
+	return LLRB.fromSorted(iterator(), ordering);
+    }
+
+    public void add(E value) {
+	Assert.fail("FrozenTree is read-only; thaw() it first.");
+    }
+
+    public E remove(E value) {
+	Assert.fail("FrozenTree is read-only; thaw() it first.");
+	return null;
+    }
+
+    public void clear() {
+	Assert.fail("FrozenTree is read-only; thaw() it first.");
+    }
+
+    /**
+     * An in-order iterator, stepping from each index to its successor
+     */
+    private class FrozenIterator extends AbstractIterator<E> {
+	private int k;
+
+	public FrozenIterator() {
+	    reset();
+	}
+
+	public void reset() {
+	    k = (size == 0) ? 0 : 1;
+	    while (k != 0 && 2 * k <= size) k = 2 * k;
+	}
+
+	public boolean hasNext() {
+	    return k != 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public E get() {
+	    return (E)values[k];
+	}
+
+	@SuppressWarnings("unchecked")
+	public E next() {
+	    if (k == 0) throw new NoSuchElementException();
+	    E value = (E)values[k];
+	    if (2 * k + 1 <= size) {
+		//the leftmost value of the right subtree
+		k = 2 * k + 1;
+		while (2 * k <= size) k = 2 * k;
+	    }
+	    else {
+		//up past every right child, then once more
+		k = k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+	    }
+	    return value;
+	}
+    }
+
+    public Iterator<E> iterator() {
+	return new FrozenIterator();
+    }
+
+    public String toString() {
+	StringBuilder sb = new StringBuilder("<FrozenTree:");
+	for (E value : this) sb.append(" " + value);
+	return sb.append(">").toString();
+    }
+}
@@ -0,0 +1,102 @@
+//A program to test FrozenTree
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Freezes LLRBs of every size up to a hundred and of random sizes beyond,
+ * and other ordered structures, and compares contains, get, floor and
+ * rank of each FrozenTree with a java.util.TreeSet of the same values at
+ * every key in and around their range. thaw() must give back a valid,
+ * mutable LLRB of the same values, and the frozen tree must refuse to
+ * change.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class FrozenTreeTest {
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	for (int round = 0; round < 600; round++) {
+	    int n = (round < 100) ? round : random.nextInt((round < 590) ? 1000 : 100000);
+	    int range = 1 + random.nextInt(3 * n + 3);
+	    LLRB<Integer> tree = new LLRB<Integer>();
+	    TreeSet<Integer> expected = new TreeSet<Integer>();
+	    for (int i = 0; i < n; i++) {
+		int value = random.nextInt(range);
+		tree.add(value);
+		expected.add(value);
+	    }
+	    check(tree.freeze(), expected, range, random, "frozen LLRB of " + n);
+	    StructureTest.check(tree, expected, "LLRB after freeze()");
+	}
+
+	//any ordered structure can be frozen
+	BPlusTree<Integer> bplus = new BPlusTree<Integer>();
+	SkipList<Integer> skip = new SkipList<Integer>();
+	TreeSet<Integer> expected = new TreeSet<Integer>();
+	for (int i = 0; i < 5000; i++) {
+	    int value = random.nextInt(20000);
+	    if (expected.add(value)) {
+		bplus.add(value);
+		skip.add(value);
+	    }
+	}
+	check(new FrozenTree<Integer>(bplus), expected, 20000, random, "frozen BPlusTree");
+	check(new FrozenTree<Integer>(skip), expected, 20000, random, "frozen SkipList");
+
+	FrozenTree<Integer> frozen = new FrozenTree<Integer>(bplus);
+	int refusals = 0;
+	try {
+	    frozen.add(-1);
+	} catch (Error e) {
+	    //Assert's errors are not public
+	    refusals++;
+	}
+	try {
+	    frozen.remove(expected.first());
+	} catch (Error e) {
+	    refusals++;
+	}
+	try {
+	    frozen.clear();
+	} catch (Error e) {
+	    refusals++;
+	}
+	Assert.condition(refusals == 3 && frozen.size() == expected.size(), "a frozen tree must not change.");
+	System.out.println("FrozenTree agrees with TreeSet");
+    }
+
+    /**
+     * Compares frozen with expected at keys around [0, range): every key
+     * if the range is small, otherwise a random sample. Then thaws it.
+     */
+    private static void check(FrozenTree<Integer> frozen, TreeSet<Integer> expected, int range, Random random, String what) {
+	StructureTest.check(frozen, expected, what);
+	int perfect = 31 - Integer.numberOfLeadingZeros(expected.size());
+	Assert.condition(frozen.height() == perfect, what + ": height " + frozen.height() + ", expected " + perfect);
+	//TreeSet has no rank, and headSet(key).size() counts, so search a copy
+	Integer[] sorted = expected.toArray(new Integer[expected.size()]);
+	int step = (range > 5000) ? 50 : 1;
+	for (int key = -2; key <= range + 1; key += 1 + random.nextInt(step)) {
+	    Assert.condition(frozen.contains(key) == expected.contains(key), what + ": contains(" + key + ") disagrees.");
+	    Integer value = frozen.get(key);
+	    Assert.condition((value == null) ? !expected.contains(key) : value.equals(key), what + ": get(" + key + ") disagrees.");
+	    Integer floor = expected.floor(key);
+	    Assert.condition((floor == null) ? frozen.floor(key) == null : floor.equals(frozen.floor(key)), what + ": floor(" + key + ") disagrees.");
+	    int rank = Arrays.binarySearch(sorted, key);
+	    if (rank < 0) rank = -rank - 1;
+	    Assert.condition(frozen.rank(key) == rank, what + ": rank(" + key + ") disagrees.");
+	}
+
+	LLRB<Integer> thawed = frozen.thaw();
+	Assert.condition(thawed.consistency(), what + ": thawed tree is not a valid LLRB.");
+	StructureTest.check(thawed, expected, what + ", thawed");
+	thawed.add(range + 5);
+	thawed.remove(range + 5);
+	Assert.condition(thawed.consistency() && thawed.size() == expected.size(), what + ": thawed tree is not mutable.");
+	StructureTest.check(frozen, expected, what + " after thaw()");
+    }
+}
@@ -0,0 +1,208 @@
+//A program to test the iteration modes of LLRB
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Checks each iteration mode of LLRB against java.util.TreeSet while the
+ * tree is changed around the iterator, for each engine and for whole
+ * trees and ranges. A FAIL_FAST iterator must throw once the tree is
+ * changed other than through it; a SNAPSHOT iterator must return the
+ * values present when it was made; a RESUME iterator must return the
+ * next value after the last, in the tree as it now is. In every mode,
+ * remove() must remove the last value returned, and only once. Narrow,
+ * empty and reversed windows of a large tree are checked in every mode.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class IteratorModeTest {
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	int[] engines = {LLRB.RECURSIVE, LLRB.ITERATIVE, LLRB.TOP_DOWN};
+	for (int engine : engines) {
+	    for (int round = 0; round < 200; round++) {
+		int range = (round < 150) ? 40 : 2000;
+		Integer lo = random.nextBoolean() ? null : random.nextInt(range);
+		Integer hi = (lo == null) ? null : lo + random.nextInt(range);
+		failFast(build(engine, random, range), lo, hi, random);
+		snapshot(build(engine, random, range), lo, hi, random);
+		resume(build(engine, random, range), lo, hi, random, range);
+	    }
+	}
+	illegalRemove();
+	windows();
+	System.out.println("LLRB iteration modes agree with TreeSet");
+    }
+
+    /**
+     * @return a tree of random values below range
+     */
+    private static LLRB<Integer> build(int engine, Random random, int range) {
+	LLRB<Integer> tree = new LLRB<Integer>(engine, false);
+	for (int i = random.nextInt(range); i > 0; i--) tree.add(random.nextInt(range));
+	return tree;
+    }
+
+    /**
+     * @return the values of tree in [lo, hi), or all of them if lo is null
+     */
+    private static TreeSet<Integer> window(LLRB<Integer> tree, Integer lo, Integer hi) {
+	TreeSet<Integer> values = new TreeSet<Integer>();
+	for (Integer value : tree) {
+	    if (lo == null || (lo <= value && value < hi)) values.add(value);
+	}
+	return values;
+    }
+
+    private static Iterator<Integer> iterator(LLRB<Integer> tree, Integer lo, Integer hi, int mode) {
+	return (lo == null) ? tree.iterator(mode) : tree.range(lo, hi, mode);
+    }
+
+    /**
+     * Removes random values through the iterator, as TreeSet's would, then
+     * changes the tree directly: the next call to next() must throw
+     */
+    private static void failFast(LLRB<Integer> tree, Integer lo, Integer hi, Random random) {
+	TreeSet<Integer> all = window(tree, null, null);
+	TreeSet<Integer> expected = window(tree, lo, hi);
+	Iterator<Integer> values = iterator(tree, lo, hi, LLRB.FAIL_FAST);
+	Iterator<Integer> model = expected.iterator();
+	while (model.hasNext()) {
+	    Integer value = model.next();
+	    Assert.condition(values.hasNext() && values.next().equals(value), "FAIL_FAST values differ.");
+	    if (random.nextInt(3) == 0) {
+		values.remove();
+		model.remove();
+		all.remove(value);
+	    }
+	}
+	Assert.condition(!values.hasNext(), "FAIL_FAST has too many values.");
+	Assert.condition(tree.consistency(), "removes through a FAIL_FAST iterator broke the tree.");
+	StructureTest.check(tree, all, "removes through a FAIL_FAST iterator");
+
+	values = iterator(tree, lo, hi, LLRB.FAIL_FAST);
+	if (!values.hasNext()) return;
+	values.next();
+	tree.add(-1);
+	boolean failed = false;
+	try {
+	    values.next();
+	} catch (ConcurrentModificationException e) {
+	    failed = true;
+	}
+	Assert.condition(failed, "FAIL_FAST must fail after a change.");
+    }
+
+    /**
+     * Changes the tree at random while iterating: the iterator must still
+     * return exactly the values present when it was made, and remove()
+     * must still remove from the tree
+     */
+    private static void snapshot(LLRB<Integer> tree, Integer lo, Integer hi, Random random) {
+	TreeSet<Integer> expected = window(tree, lo, hi);
+	Iterator<Integer> values = iterator(tree, lo, hi, LLRB.SNAPSHOT);
+	for (Integer value : expected) {
+	    Assert.condition(values.hasNext() && values.next().equals(value), "SNAPSHOT values differ.");
+	    if (random.nextInt(3) == 0) {
+		values.remove();
+		Assert.condition(!tree.contains(value), "SNAPSHOT remove() did not remove " + value);
+	    }
+	    if (random.nextBoolean()) tree.add(random.nextInt(100));
+	    else tree.remove(random.nextInt(100));
+	}
+	Assert.condition(!values.hasNext(), "SNAPSHOT has too many values.");
+	Assert.condition(tree.consistency(), "removes through a SNAPSHOT iterator broke the tree.");
+    }
+
+    /**
+     * Changes the tree at random while iterating: each value returned
+     * must be the least in the window after the last, in the tree as it
+     * now is
+     */
+    private static void resume(LLRB<Integer> tree, Integer lo, Integer hi, Random random, int range) {
+	TreeSet<Integer> all = window(tree, null, null);
+	Iterator<Integer> values = iterator(tree, lo, hi, LLRB.RESUME);
+	Integer last = null;
+	while (true) {
+	    Integer next = (last == null) ? ((lo == null) ? first(all) : all.ceiling(lo)) : all.higher(last);
+	    if (next != null && hi != null && next >= hi) next = null;
+	    if (next == null) break;
+	    Assert.condition(values.hasNext() && values.next().equals(next), "RESUME values differ.");
+	    last = next;
+	    int choice = random.nextInt(4);
+	    if (choice == 0) {
+		values.remove();
+		all.remove(last);
+	    }
+	    else if (choice == 1) {
+		int key = random.nextInt(range);
+		tree.add(key);
+		all.add(key);
+	    }
+	    else if (choice == 2) {
+		int key = random.nextInt(range);
+		tree.remove(key);
+		all.remove(key);
+	    }
+	}
+	Assert.condition(!values.hasNext(), "RESUME has too many values.");
+	Assert.condition(tree.consistency(), "changes during a RESUME iteration broke the tree.");
+	StructureTest.check(tree, all, "changes during a RESUME iteration");
+    }
+
+    private static Integer first(TreeSet<Integer> values) {
+	return values.isEmpty() ? null : values.first();
+    }
+
+    /**
+     * Narrow, empty and reversed windows of a large tree, in each mode
+     */
+    private static void windows() {
+	int[] modes = {LLRB.FAIL_FAST, LLRB.SNAPSHOT, LLRB.RESUME};
+	LLRB<Integer> tree = new LLRB<Integer>();
+	for (int i = 0; i < 200000; i += 2) tree.add(i);
+	for (int mode : modes) {
+	    Iterator<Integer> values = tree.range(1001, 1021, mode);
+	    for (int value = 1002; value < 1021; value += 2) {
+		Assert.condition(values.hasNext() && values.next() == value, "a narrow window differs.");
+	    }
+	    Assert.condition(!values.hasNext(), "a narrow window has too many values.");
+	    Assert.condition(!tree.range(1001, 1002, mode).hasNext(), "an empty window has values.");
+	    Assert.condition(!tree.range(1020, 1000, mode).hasNext(), "a reversed window has values.");
+	    Assert.condition(!tree.range(-10, 0, mode).hasNext() && !tree.range(200000, 200010, mode).hasNext(),
+			     "a window outside the tree has values.");
+	}
+    }
+
+    /**
+     * remove() before next(), or twice for one value, must throw
+     */
+    private static void illegalRemove() {
+	int[] modes = {LLRB.FAIL_FAST, LLRB.SNAPSHOT, LLRB.RESUME};
+	for (int mode : modes) {
+	    LLRB<Integer> tree = new LLRB<Integer>();
+	    for (int i = 0; i < 10; i++) tree.add(i);
+	    Iterator<Integer> values = tree.iterator(mode);
+	    boolean refused = false;
+	    try {
+		values.remove();
+	    } catch (IllegalStateException e) {
+		refused = true;
+	    }
+	    Assert.condition(refused, "remove() before next() must throw.");
+	    values.next();
+	    values.remove();
+	    refused = false;
+	    try {
+		values.remove();
+	    } catch (IllegalStateException e) {
+		refused = true;
+	    }
+	    Assert.condition(refused, "remove() twice must throw.");
+	    Assert.condition(tree.size() == 9 && !tree.contains(0), "remove() removed the wrong value.");
+	}
+    }
+}
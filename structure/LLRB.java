@@ -5,16 +5,24 @@
 //package structure5;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.stream.*;
 import structure5.*;
 
 /**
  * This class implements a left leaning variant of a red-black tree, holding
- * a one-to-one correspondence with 2-3 trees. It is a recursive structure,
+ * a one-to-one correspondence with 2-3 trees, or with 2-3-4 trees under the
+ * TOP_DOWN engine. It is a recursive structure,
  * with most functions utilizing both a wrapper function and a recursive function.
  * Relationships between nodes are singly linked, with no parent pointers. 
  * LLRB utilizes nodes rather than subtrees, with an internal Node class. It
  * also utilizes a version number to support modifications to the tree while
  * iterating.
+ * <P>
+ * Values are ordered by a Comparator given at construction, and then need
+ * not be Comparable; otherwise they are ordered by their natural order, and
+ * must be Comparable, as for java.util.TreeSet.
  *
  * @author, 2014 tony liu, michael shaw
  * @see structure.RedBlackTree
@@ -22,7 +30,7 @@ import structure5.*;
  * @see structure.BinarySearchTree
  */
 
-public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implements OrderedStructure<E>{
+public class LLRB<E> extends AbstractStructure<E> implements OrderedStructure<E>{
 
 
     /**
@@ -32,13 +40,49 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
     private static final boolean BLACK = false; 
 
     private Node root;
-    private int size;
 
     /**
      * Version number, used for the iterator
      */
     private int version;
 
+    /**
+     * Engines for add and remove. RECURSIVE and ITERATIVE keep the tree
+     * a 2-3 tree; TOP_DOWN keeps it a 2-3-4 tree, splitting 4-nodes on
+     * the way down during add, so adds need no pass back up.
+     */
+    public static final int RECURSIVE = 0;
+    public static final int ITERATIVE = 1;
+    public static final int TOP_DOWN = 2;
+
+    /**
+     * The engine used by add and remove
+     */
+    private int engine;
+
+    /**
+     * Descent path used by the iterative and top-down engines: path[i] is the node at
+     * depth i, and pathLeft[i] whether the descent went to its left child.
+     * Preallocated and reused; grown only if the tree outgrows it.
+     */
+    private Node[] path;
+    private boolean[] pathLeft;
+
+    /**
+     * Operation counters, or null when not counting. Every counting site
+     * tests this first, so a tree built without counting pays a single,
+     * always predicted, branch.
+     */
+    private LLRBMetrics metrics;
+
+    /**
+     * The ordering of values, or null for their natural order, which
+     * compare() then reaches with a direct compareTo call on the value
+     * cast to Comparable. A NaturalComparator given to a constructor is
+     * stored as null.
+     */
+    private Comparator<? super E> ordering;
+
 
     /**
      * Internal Node class used to hold data 
@@ -64,6 +108,12 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
 	 * The value stored in this node
 	 */
 	private E value; 
+
+	/**
+	 * The number of nodes in the subtree rooted here, so that split and
+	 * join know the sizes of the trees they build
+	 */
+	private int n;
 	
 	/**
 	 * Constructs a single node with type E value
@@ -74,6 +124,7 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
 	    this.color = RED; 
 	    this.value = value; 
 	    this.left = this.right = null;
+	    this.n = 1;
 	}
 	/**
 	 * Default constructor for a single onde
@@ -85,6 +136,7 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
 	    this.color = BLACK;
 	    this.value = null;
 	    this.left = this.right = null;
+	    this.n = 1;
 	}
 	/**
 	 * Returns value of node
@@ -120,18 +172,111 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
 	
     }
     
-    //default constructor
+    /**
+     * Constructs an empty tree of values in their natural order
+     * @pre values added are Comparable with each other
+     */
     public LLRB() {
 	root = null;
-	size = 0;
 	version = 0;
     }
     
+    /**
+     * Constructs an empty tree, choosing the add/remove engine
+     * @param iterative true for the iterative engine, false for the
+     * recursive one (the default)
+     */
+    public LLRB(boolean iterative) {
+	this(iterative, false);
+    }
+
+    /**
+     * Constructs an empty tree, choosing the add/remove engine and
+     * whether to count the work of each operation
+     * @param iterative true for the iterative engine
+     * @param counting true to keep LLRBMetrics, read with metrics()
+     */
+    public LLRB(boolean iterative, boolean counting) {
+	this(iterative ? ITERATIVE : RECURSIVE, counting);
+    }
+
+    /**
+     * Constructs an empty tree with the given add/remove engine
+     * @pre engine is RECURSIVE, ITERATIVE or TOP_DOWN
+     * @param counting true to keep LLRBMetrics, read with metrics()
+     */
+    @SuppressWarnings("unchecked")
+    public LLRB(int engine, boolean counting) {
+	this();
+	Assert.pre(engine >= RECURSIVE && engine <= TOP_DOWN, "Unknown engine.");
+	this.engine = engine;
+	if (engine != RECURSIVE) {
+	    path = (Node[])new LLRB<?>.Node[64];
+	    pathLeft = new boolean[64];
+	}
+	if (counting) metrics = new LLRBMetrics();
+    }
+
+    /**
+     * Constructs an empty tree ordered by alternateOrder
+     * @param alternateOrder the ordering of values, or null for their
+     * natural order
+     */
+    public LLRB(Comparator<? super E> alternateOrder) {
+	this(RECURSIVE, false, alternateOrder);
+    }
+
+    /**
+     * Constructs an empty tree with the given add/remove engine, ordered
+     * by alternateOrder
+     * @pre engine is RECURSIVE, ITERATIVE or TOP_DOWN
+     * @param counting true to keep LLRBMetrics, read with metrics()
+     * @param alternateOrder the ordering of values, or null for their
+     * natural order
+     */
+    public LLRB(int engine, boolean counting, Comparator<? super E> alternateOrder) {
+	this(engine, counting);
+	ordering = (alternateOrder instanceof NaturalComparator) ? null : alternateOrder;
+    }
+
+    /**
+     * Returns the ordering of the values
+     * @return the Comparator given at construction, or null for the
+     * natural order
+     */
+    public Comparator<? super E> comparator() {
+	return ordering;
+    }
+
+    /**
+     * Returns the operation counts of a counting tree
+     * @return a snapshot of the metrics, or null if the tree does not count
+     */
+    public LLRBMetrics metrics() {
+	return (metrics == null) ? null : metrics.snapshot();
+    }
+
+    /**
+     * Clears the operation counts of a counting tree
+     */
+    public void resetMetrics() {
+	if (metrics != null) metrics.reset();
+    }
+
+    /**
+     * Compares two values by the tree's ordering, counting the comparison
+     */
+    @SuppressWarnings("unchecked")
+    private int compare(E a, E b) {
+	if (metrics != null) metrics.count(LLRBMetrics.COMPARE);
+	if (ordering == null) return ((Comparable<? super E>)a).compareTo(b);
+	return ordering.compare(a, b);
+    }
+
     //root must always be black
     public LLRB(E value) {
 	root = new Node(value);
 	root.color = BLACK;
-	size = 1;
 	version = 0;
     }
     
@@ -154,152 +299,493 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
 	return version;
     }
    
+    /**
+     * Returns the number of values in the tree, in O(1)
+     * @return the number of values in the tree
+     */
     public int size() {
-	return this.size;
+	return size(root);
     }
 
+    /**
+     * @return the number of nodes in the subtree rooted at h
+     */
+    private int size(Node h) {
+	return (h == null) ? 0 : h.n;
+    }
 
     /**
-     * Internal iterator class designed for traversing LLRB.
-     * LLRBIterator iterates through the tree via a stack.
-     * It has the ability to remove the current value while
-     * maintaining the tree traversal. This is accomplished
-     * by checking its version number with the LLRB's version
-     * number; if they are not the same, the iterator will
-     * be reconstructed and updated. 
-     *
+     * Counts the values less than value in one descent, from the sizes of
+     * the subtrees passed on the left
+     * @return the number of values of the tree less than value
+     */
+    private int rank(E value) {
+	int rank = 0;
+	Node x = root;
+	while (x != null) {
+	    if (compare(value, x.value) <= 0) x = x.left;
+	    else {
+		rank += 1 + size(x.left);
+		x = x.right;
+	    }
+	}
+	return rank;
+    }
+
+    /**
+     * Recounts the subtree rooted at h from its children
+     * @return h
+     */
+    private Node resize(Node h) {
+	h.n = 1 + size(h.left) + size(h.right);
+	return h;
+    }
+
+
+    /**
+     * Iteration modes. A FAIL_FAST iterator throws
+     * ConcurrentModificationException from next() once the tree has been
+     * modified other than through the iterator. A SNAPSHOT iterator
+     * copies the values when created and returns them whatever happens
+     * to the tree. A RESUME iterator tolerates modification: it picks up
+     * after the last value it returned, in the tree as it now is.
+     */
+    public static final int FAIL_FAST = 0;
+    public static final int SNAPSHOT = 1;
+    public static final int RESUME = 2;
+
+    /**
+     * Internal iterator class designed for traversing LLRB, within
+     * optional bounds [lo, hi). It holds the path to the next value in a
+     * Node array sized to the height of the tree, at most twice its
+     * black height, so traversal allocates nothing. The stack is seeded
+     * by a single descent, so the first value costs O(log n).
+     * remove() removes the last value returned from the tree, and the
+     * iterator continues after it, in any mode.
      */
-    private class LLRBIterator extends AbstractIterator<E>{
+    private class LLRBIterator extends AbstractIterator<E> {
+
+	private final int mode;
+
+	/**
+	 * Bounds of the iteration; null if unbounded
+	 */
+	private final E lo, hi;
 
 	/**
-	 * Nodes are stored within a StackVector stack
+	 * stack[0..top-1] holds the nodes whose values are still to come
+	 * and whose left subtrees are done; the next value is on top
 	 */
-	StackVector <Node> stack;
+	private Node[] stack;
+	private int top;
 
 	/**
-	 * LLRBIterator has a separate copy of version number
+	 * The values of a SNAPSHOT iterator, and the next to return; sized
+	 * for the values in [lo, hi), which the subtree sizes count in
+	 * O(log n)
 	 */
+	private Object[] values;
+	private int position, end;
+
+	/**
+	 * The last value returned, and whether it may be removed
+	 */
+	private E last;
+	private boolean removable;
+
 	private int iterVersion;
 
 	/**
-	 * LLRBIterator constructor, initialies stack and iterVersion
-	 * and pushes all necessary nodes to begin traversal.
-	 * @return an iterator with the current LLRB version number
-	 * @post returns an iterator with the current LLRB version number
+	 * @pre mode is FAIL_FAST, SNAPSHOT or RESUME
+	 * @post returns an iterator over the values in [lo, hi), where a null
+	 * bound is open
 	 */
-	public LLRBIterator() {
-	    iterVersion = version();
-	    stack = new StackVector<Node>();
-	    stack.push(root);
+	public LLRBIterator(int mode, E lo, E hi) {
+	    Assert.pre(mode == FAIL_FAST || mode == SNAPSHOT || mode == RESUME, "Unknown iteration mode.");
+	    this.mode = mode;
+	    this.lo = lo;
+	    this.hi = hi;
+	    reset();
+	}
 
-	    //pushes all left children from root
-	    if (root.hasLeft()) goLeft(root);
+	public void reset() {
+	    iterVersion = version;
+	    last = null;
+	    removable = false;
+	    seek(lo, true);
+	    if (mode == SNAPSHOT) {
+		int above = (hi == null) ? size() : rank(hi);
+		values = new Object[(lo == null) ? above : Math.max(0, above - rank(lo))];
+		position = end = 0;
+		while (top > 0 && inRange(stack[top - 1])) values[end++] = advance();
+	    }
 	}
 
 	/**
-	 * Checks if the iterator is on the correct version of LLRB, then
-	 * gets the current node in the traversal
-	 * @return the current value in the traversal
-	 * @post returns the current value in the traversal
+	 * Seeds the stack with the path to the first value at or after from
+	 * (after it only, if not inclusive); from null means the minimum
 	 */
-	public E get() {
-	    if(!upToDate()) adjust();
-	    return stack.get().value();
+	@SuppressWarnings("unchecked")
+	protected void seek(E from, boolean inclusive) {
+	    int height = 2 * blackHeight(root) + 1;
+	    if (stack == null || stack.length < height) stack = (Node[])new LLRB<?>.Node[height];
+	    top = 0;
+	    Node x = root;
+	    while (x != null) {
+		int cmp = (from == null) ? -1 : compare(from, x.value);
+		if (cmp < 0 || (inclusive && cmp == 0)) {
+		    stack[top++] = x;
+		    x = x.left;
+		}
+		else x = x.right;
+	    }
+	}
+
+	/**
+	 * Pops the next node, pushing the left spine of its right subtree
+	 * @return the value of the popped node
+	 */
+	protected E advance() {
+	    Node x = stack[--top];
+	    for (Node y = x.right; y != null; y = y.left) stack[top++] = y;
+	    return x.value;
 	}
 
+	protected boolean inRange(Node x) {
+	    return hi == null || compare(x.value, hi) < 0;
+	}
 
 	/**
-	 * Checks if the iterator is on the correct version of LLRB, then
-	 * gets the current node in the traversal
-	 * @return the current value in the traversal
-	 * @post returns the current value in the traversal
+	 * Brings a RESUME iterator up to date with the tree, continuing
+	 * after the last value returned
 	 */
+	protected void resume() {
+	    if (mode != RESUME || iterVersion == version) return;
+	    iterVersion = version;
+	    if (last == null) seek(lo, true);
+	    else seek(last, false);
+	}
+
+	public boolean hasNext() {
+	    if (mode == SNAPSHOT) return position < end;
+	    resume();
+	    return top > 0 && inRange(stack[top - 1]);
+	}
+
+	@SuppressWarnings("unchecked")
+	public E get() {
+	    if (!hasNext()) throw new NoSuchElementException();
+	    if (mode == SNAPSHOT) return (E)values[position];
+	    return stack[top - 1].value;
+	}
+
+	@SuppressWarnings("unchecked")
 	public E next() {
-	    if (!upToDate()) {
-		System.out.println("Adjusted stack.");
-		adjust();
+	    if (mode == FAIL_FAST && iterVersion != version) throw new ConcurrentModificationException();
+	    if (!hasNext()) throw new NoSuchElementException();
+	    if (mode == SNAPSHOT) last = (E)values[position++];
+	    else last = advance();
+	    removable = true;
+	    return last;
+	}
+
+	/**
+	 * Removes the last value returned from the tree, in O(log n)
+	 * @pre next() has returned a value not yet removed
+	 * @post the value is removed; iteration continues after it
+	 */
+	public void remove() {
+	    if (!removable) throw new IllegalStateException();
+	    if (mode == FAIL_FAST && iterVersion != version) throw new ConcurrentModificationException();
+	    LLRB.this.remove(last);
+	    removable = false;
+	    if (mode != SNAPSHOT) {
+		iterVersion = version;
+		seek(last, false);
 	    }
-	    Node temp =stack.pop();
-	    if (temp.hasRight()) {
-		stack.push(temp.right());
-		goLeft(temp.right());
+	}
+    }
+
+    /**
+     * Returns an iterator for this particular LLRB. It tolerates
+     * modification of the tree, resuming after the last value returned.
+     * @return a LLRBiterator for the tree
+     * @post returns a LLRBiterator for the tree
+     */
+    public Iterator<E> iterator() {
+	return new LLRBIterator(RESUME, null, null);
+    }
+
+    /**
+     * Returns an iterator for the tree in the given mode
+     * @pre mode is FAIL_FAST, SNAPSHOT or RESUME
+     * @return an iterator over the values of the tree, in order
+     */
+    public Iterator<E> iterator(int mode) {
+	return new LLRBIterator(mode, null, null);
+    }
+
+    /**
+     * Returns an iterator over the values v of the tree with lo <= v < hi,
+     * in order. The tree must not be modified while iterating, except
+     * through the iterator.
+     * @pre lo and hi are not null
+     * @return an iterator over the values in [lo, hi)
+     */
+    public Iterator<E> range(E lo, E hi) {
+	return new LLRBIterator(FAIL_FAST, lo, hi);
+    }
+
+    /**
+     * Returns an iterator over the values in [lo, hi) in the given mode
+     * @pre lo is not null; hi is null for no upper bound; mode is
+     * FAIL_FAST, SNAPSHOT or RESUME
+     * @return an iterator over the values in [lo, hi)
+     */
+    public Iterator<E> range(E lo, E hi, int mode) {
+	return new LLRBIterator(mode, lo, hi);
+    }
+
+    /**
+     * Internal spliterator class for LLRB. The values still to come are a
+     * sequence of entries, each a node whose value comes next followed by
+     * a subtree: stack[i] and rest[i], with the first entry on top. Once
+     * the left spine of the tree is pushed, an entry's subtree is always
+     * its node's right subtree, until a split cuts it. trySplit hands the
+     * upper entries to a new spliterator, keeping the bottom one, which
+     * holds about half the values in a balanced tree; a single entry is
+     * split at the root of its subtree. Splits thus fall on subtree
+     * boundaries, and cost O(log n).
+     * <P>
+     * The sizes of the subtrees give every piece its exact size. It is
+     * fail-fast, checked as traversal ends.
+     */
+    private class LLRBSpliterator implements Spliterator<E> {
+
+	private Node[] stack;
+	private Node[] rest;
+	private int top;
+	private long estimate;
+	private final int iterVersion;
+
+	@SuppressWarnings("unchecked")
+	public LLRBSpliterator() {
+	    int height = 2 * blackHeight(root) + 1;
+	    stack = (Node[])new LLRB<?>.Node[height];
+	    rest = (Node[])new LLRB<?>.Node[height];
+	    top = 0;
+	    push(root);
+	    estimate = size();
+	    iterVersion = version;
+	}
+
+	/**
+	 * Pushes the left spine of the subtree at x
+	 */
+	protected void push(Node x) {
+	    for (; x != null; x = x.left) {
+		stack[top] = x;
+		rest[top] = x.right;
+		top++;
 	    }
-	    return temp.value(); 
 	}
-	
-	public boolean hasNext() {
-	    if(!upToDate()) adjust();
-	    return !stack.isEmpty();
+
+	public boolean tryAdvance(Consumer<? super E> action) {
+	    if (top == 0) return false;
+	    top--;
+	    Node x = stack[top];
+	    push(rest[top]);
+	    estimate--;
+	    action.accept(x.value);
+	    if (iterVersion != version) throw new ConcurrentModificationException();
+	    return true;
 	}
 
-	public void reset() {
-	    stack = new StackVector<Node>();
-	    stack.push(root);
-	    goLeft(root.left());
-	    
+	public void forEachRemaining(Consumer<? super E> action) {
+	    while (top > 0) {
+		top--;
+		Node x = stack[top];
+		push(rest[top]);
+		action.accept(x.value);
+	    }
+	    estimate = 0;
+	    if (iterVersion != version) throw new ConcurrentModificationException();
 	}
-	
-	protected void goLeft(Node x) {
-	    while (x.hasLeft()) {
-		stack.push(x.left());
-		x = x.left();
+
+	public Spliterator<E> trySplit() {
+	    //a lone entry with nothing after it cannot be split
+	    if (top == 0 || (top == 1 && rest[0] == null)) return null;
+	    LLRBSpliterator prefix = new LLRBSpliterator(stack.length);
+	    if (top > 1) {
+		//entries 1..top-1 come before entry 0
+		System.arraycopy(stack, 1, prefix.stack, 0, top - 1);
+		System.arraycopy(rest, 1, prefix.rest, 0, top - 1);
+		prefix.top = top - 1;
+		top = 1;
+	    }
+	    else {
+		//split the subtree: the node and the left of the subtree go first
+		Node r = rest[0];
+		prefix.stack[0] = stack[0];
+		prefix.rest[0] = r.left;
+		prefix.top = 1;
+		stack[0] = r;
+		rest[0] = r.right;
 	    }
+	    prefix.estimate = prefix.count();
+	    estimate = count();
+	    return prefix;
 	}
 
 	/**
-	 * Checks if the iterator is on the correct version of LLRB
-	 * @return whether iterVersion is the same as LLRB version
-	 * @post returns iterVersion == LLRBVersion
+	 * Constructs an empty spliterator for the prefix of a split
 	 */
-	protected boolean upToDate() {
-	    //System.out.println("version " + version());
-	    //System.out.println("Iterator version " + iterVersion);
-	    return iterVersion == version();
+	@SuppressWarnings("unchecked")
+	private LLRBSpliterator(int height) {
+	    stack = (Node[])new LLRB<?>.Node[height];
+	    rest = (Node[])new LLRB<?>.Node[height];
+	    top = 0;
+	    iterVersion = version;
 	}
 
 	/**
-	 * Rebuilds the iterator stack beginning at the current node
-	 * @post LLRBiterator is up to date and ready for traversal
+	 * @return the number of values still to come, from the sizes of
+	 * the subtrees of the entries
 	 */
-	protected void adjust() {
+	private long count() {
+	    long count = 0;
+	    for (int i = 0; i < top; i++) count += 1 + size(rest[i]);
+	    return count;
+	}
 
-	    //get value to start stack again, reset stack
-	    //note: can be changed to support removal of current node or next node
-	    E start = get();
-	    stack = new StackVector<Node>();
+	public long estimateSize() {
+	    return estimate;
+	}
 
-	    adjustHelper(root, start);
+	public int characteristics() {
+	    return ORDERED | SORTED | DISTINCT | NONNULL | SIZED | SUBSIZED;
+	}
 
-	    //update version number
-	    iterVersion = version();
+	public Comparator<? super E> getComparator() {
+	    return ordering;
 	}
+    }
 
-	/**
-	 * Helper function for adjust
-	 * @pre Node x is not null, value start is not null
-	 * @post LLRBiterator is updated and ready for traversal
-	 */
-	protected void adjustHelper(Node x, E start){
-	    if(x == null) throw new Error("Adjust failed.");
+    /**
+     * Returns a spliterator over the values of the tree, in order, that
+     * splits at subtree boundaries. The tree must not be modified while
+     * it is in use.
+     * @return an ORDERED, SORTED, DISTINCT, SIZED and SUBSIZED spliterator
+     */
+    public Spliterator<E> spliterator() {
+	return new LLRBSpliterator();
+    }
+
+    /**
+     * @return a sequential stream of the values of the tree, in order
+     */
+    public Stream<E> stream() {
+	return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * @return a parallel stream of the values of the tree, in order
+     */
+    public Stream<E> parallelStream() {
+	return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Returns the smallest value of the tree
+     * @return the minimum value, or null if the tree is empty
+     */
+    public E min() {
+	return (root == null) ? null : min(root).value();
+    }
+
+    /**
+     * Returns the largest value of the tree
+     * @return the maximum value, or null if the tree is empty
+     */
+    public E max() {
+	Node x = root;
+	if (x == null) return null;
+	while (x.right != null) x = x.right;
+	return x.value();
+    }
+
+    /**
+     * Returns the largest value of the tree less than or equal to value
+     * @pre value is not null
+     * @return the floor of value, or null if there is none
+     */
+    public E floor(E value) {
+	return below(value, true);
+    }
+
+    /**
+     * Returns the largest value of the tree strictly less than value
+     * @pre value is not null
+     * @return the greatest lower value, or null if there is none
+     */
+    public E lower(E value) {
+	return below(value, false);
+    }
 
-	    int cmp = start.compareTo(x.value());
+    /**
+     * Returns the smallest value of the tree greater than or equal to value
+     * @pre value is not null
+     * @return the ceiling of value, or null if there is none
+     */
+    public E ceiling(E value) {
+	return above(value, true);
+    }
+
+    /**
+     * Returns the smallest value of the tree strictly greater than value
+     * @pre value is not null
+     * @return the least higher value, or null if there is none
+     */
+    public E higher(E value) {
+	return above(value, false);
+    }
 
-	    if(cmp < 0){
-		stack.push(x);
-		adjustHelper(x.left(), start);
+    /**
+     * Helper for floor() and lower(): a single descent remembering the
+     * last value passed on the left.
+     */
+    private E below(E value, boolean inclusive) {
+	E result = null;
+	Node x = root;
+	while (x != null) {
+	    int cmp = compare(value, x.value);
+	    if (cmp == 0 && inclusive) return x.value;
+	    if (cmp > 0) {
+		result = x.value;
+		x = x.right;
 	    }
-	    //if start is larger, already visited
-	    else if(cmp > 0) adjustHelper(x.right(), start);
-	    else stack.push(x);
+	    else x = x.left;
 	}
+	return result;
     }
+
     /**
-     * Returns an iterator for this particular LLRB
-     * @return a LLRBiterator for the tree
-     * @post returns a LLRBiterator for the tree
+     * Helper for ceiling() and higher(): a single descent remembering the
+     * last value passed on the right.
      */
-    public Iterator<E> iterator() {
-	return new LLRBIterator();
+    private E above(E value, boolean inclusive) {
+	E result = null;
+	Node x = root;
+	while (x != null) {
+	    int cmp = compare(value, x.value);
+	    if (cmp == 0 && inclusive) return x.value;
+	    if (cmp < 0) {
+		result = x.value;
+		x = x.left;
+	    }
+	    else x = x.right;
+	}
+	return result;
     }
     
 
@@ -309,6 +795,7 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
      */
     public void clear() {
 	root = null;
+	version++;
     }
 
     public String toString() {
@@ -333,9 +820,20 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
      * @post returns a boolean on whether the value is present within the tree
      */
     public boolean contains(E value) { 
+	if (metrics == null) return find(value);
+	metrics.begin();
+	boolean found = find(value);
+	metrics.end(LLRBMetrics.CONTAINS);
+	return found;
+    }
+
+    /**
+     * Search for contains() and remove()
+     */
+    private boolean find(E value) {
 	Node x = root;
 	while (x != null) {
-	    int cmp = value.compareTo(x.value());
+	    int cmp = compare(value, x.value);
 	    if(cmp == 0) return true;
 	    else if(cmp < 0) x = x.left;
 	    else x = x.right;
@@ -349,6 +847,7 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
      * @post Node h is red, its two children are black
      */
     protected void colorFlip(Node h) {
+	if (metrics != null) metrics.count(LLRBMetrics.COLOR_FLIP);
 	h.color = !h.color;
 	h.left.color = !h.left.color;
 	h.right.color = !h.right.color;
@@ -361,11 +860,14 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
      * @post returns a new parent node, with the left child being red
      */
     protected Node rotateLeft(Node h) {
+	if (metrics != null) metrics.count(LLRBMetrics.ROTATE_LEFT);
 	Node x = h.right;
 	h.right = x.left;
 	x.left = h;
 	x.color = h.color;
 	h.color = RED;
+	x.n = h.n;
+	resize(h);
 	return x; 
     }
 
@@ -378,11 +880,14 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
      * @post returns a new parent node, with the right child being red
      */
     protected Node rotateRight(Node h) {
+	if (metrics != null) metrics.count(LLRBMetrics.ROTATE_RIGHT);
 	Node x = h.left;
 	h.left = x.right; 
 	x.right = h;
 	x.color = h.color;
 	h.color = RED;
+	x.n = h.n;
+	resize(h);
 	return x; 
     }
     /**
@@ -397,7 +902,7 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
     public E get(E value) {
 	Node x = root;
 	while(x != null) {
-	    int cmp = value.compareTo(x.value());
+	    int cmp = compare(value, x.value());
 	    if(cmp == 0) return x.value();
 	    else if (cmp < 0) x = x.left;
 	    else if(cmp > 0) x = x.right;
@@ -412,9 +917,13 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
      * @post value is added into the tree
      */
     public void add(E value) {
-	root = addRecursive(root, value);
+	if (metrics != null) metrics.begin();
+	if (engine == TOP_DOWN) addTopDown(value);
+	else if (engine == ITERATIVE) addIterative(value);
+	else root = addRecursive(root, value);
 	root.color = BLACK;
 	version++;
+	if (metrics != null) metrics.end(LLRBMetrics.ADD);
     }
     /**
      * Private recursive helper function to add().
@@ -423,21 +932,20 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
      * and the tree is rebalanced
      */
     private Node addRecursive(Node h, E value) {
-	if (h == null) {
-	    size++;
-	    return new Node(value);
-	}
-	int compare = value.compareTo(h.value);
+	if (h == null) return new Node(value);
+	int compare = compare(value, h.value);
 	if (compare < 0) h.left = addRecursive(h.left, value);
 	if (compare > 0) h.right = addRecursive(h.right, value);
 	//Is this necessary? No duplicates:
 	//if (value.compareTo(h.value) == 0) h.val = value;   
 
+	//fixUp, inline
+	if (metrics != null) metrics.count(LLRBMetrics.FIX_UP);
 	if (isRed(h.right) && (!isRed(h.left))) h = rotateLeft(h);
 	if (isRed(h.left) && isRed(h.left.left)) h = rotateRight(h);
 	if (isRed(h.left) && isRed(h.right)) colorFlip(h); 
 
-	return h;
+	return resize(h);
     }
     /**
      * A fundamental function. Called on the way down the tree
@@ -449,6 +957,7 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
      * @post returns Node h, which now has a red left child
      */
     protected Node moveRedLeft(Node h) {
+	if (metrics != null) metrics.count(LLRBMetrics.MOVE_RED_LEFT);
 	colorFlip(h);
 	if(isRed(h.right.left)) {
 	    h.right = rotateRight(h.right);
@@ -468,6 +977,7 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
      * @post returns Node h, which now has a red right child
      */
     protected Node moveRedRight(Node h) {
+	if (metrics != null) metrics.count(LLRBMetrics.MOVE_RED_RIGHT);
 	colorFlip(h);
 	if(isRed(h.left.left)){
 	    h = rotateRight(h);
@@ -490,10 +1000,7 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
      * @post the minimum node within a given subtree is removed
      */
     private Node removeMinRecursive(Node h) {
-	if (h.left == null) {
-	    size--;
-	    return null;
-	}	
+	if (h.left == null) return null;
 
 	if (!isRed(h.left) && !isRed(h.left.left)) h = moveRedLeft(h);
 	
@@ -507,10 +1014,17 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
      * @post value is removed from the tree and returned
      */
     public E remove(E value) {
-	if (!contains(value)) return null;
-	root = removeRecursive(root, value);
+	if (metrics != null) metrics.begin();
+	if (!find(value)) {
+	    if (metrics != null) metrics.end(LLRBMetrics.REMOVE);
+	    return null;
+	}
+	if (engine == TOP_DOWN) removeTopDown(value);
+	else if (engine == ITERATIVE) removeIterative(value);
+	else root = removeRecursive(root, value);
 	if(root != null) root.color = BLACK;
 	version++;
+	if (metrics != null) metrics.end(LLRBMetrics.REMOVE);
 	return value; 
     }
     /**
@@ -518,7 +1032,7 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
      */
     private Node removeRecursive(Node h, E value){
 
-	if(value.compareTo(h.value()) < 0) {
+	if(compare(value, h.value) < 0) {
 	    if(!isRed(h.left) && !isRed(h.left.left)) h = moveRedLeft(h);
 	    h.left = removeRecursive(h.left, value); 
 	}
@@ -527,15 +1041,12 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
 	    if(isRed(h.left))
 		h = rotateRight(h);
 	    //found it, no replacement needed
-	    if((value.compareTo(h.value) == 0) && (h.right == null)){
-		size--;
-		return null;
-	    }
+	    if((compare(value, h.value) == 0) && (h.right == null)) return null;
 	    //if there is no red node to rotate into down the right path
 	    if(!isRed(h.right) && !isRed(h.right.left))
 		h = moveRedRight(h);
 	    //found it, need to replace with successor
-	    if(value.compareTo(h.value) == 0){
+	    if(compare(value, h.value) == 0){
 		h.value = min(h.right).value();
 		h.right = removeMinRecursive(h.right);
 	    }
@@ -545,45 +1056,1080 @@ public class LLRB<E extends Comparable<E>> extends AbstractStructure<E> implemen
 	return fixUp(h);
     }
 
-    //duplicate code from add
     /**
-     * Helper function for removeRecursive(). Fixes the tree using
-     * the same process as insert.
+     * Records node h at the given depth of the descent path, growing
+     * the path arrays if needed.
      */
-    private Node fixUp(Node h) {
-	
-	if(isRed(h.right) && !isRed(h.left)) h = rotateLeft(h);
-	if(isRed(h.left) && isRed(h.left.left)) h = rotateRight(h);
-	if(isRed(h.left) && isRed(h.right)) colorFlip(h);
-	
-	return h;
+    private void push(int depth, Node h, boolean left) {
+	if (depth == path.length) {
+	    path = Arrays.copyOf(path, 2 * depth);
+	    pathLeft = Arrays.copyOf(pathLeft, 2 * depth);
+	}
+	path[depth] = h;
+	pathLeft[depth] = left;
     }
+
     /**
-     * Recursively returns the minimum value of a given subtree.
-     * @return the minimum Node
-     * @post returns the minimum value node
+     * Makes h the subtree at the given depth of the path: the root at
+     * depth 0, otherwise the child of path[depth-1] that was descended.
      */
-    public Node min(Node h){
-	if(h.left == null) return h;
-
-	return min(h.left);
+    private void relink(int depth, Node h) {
+	if (depth == 0) root = h;
+	else if (pathLeft[depth - 1]) path[depth - 1].left = h;
+	else path[depth - 1].right = h;
     }
+
     /**
-     * Returns the height of the tree
-     * @return height of the tree
-     * @post returns the height of the tree
+     * Applies fixUp to path[depth-1] .. path[0], bottom-up, relinking
+     * each level to its parent. The unwinding half of the recursion.
      */
-    public int height() {
-	return heightRecursive(root);
+    private void fixPath(int depth) {
+	for (int i = depth - 1; i >= 0; i--) {
+	    relink(i, fixUp(path[i]));
+	    path[i] = null;
+	}
     }
 
     /**
-     * Recursive helper function for height().
+     * Iterative form of addRecursive: descends recording the path in
+     * path/pathLeft, attaches the new node, then fixes the path bottom-up.
+     * @pre value is not null
+     * @post value is inserted into the tree, and the tree is rebalanced
      */
-    protected int heightRecursive(Node h) {
-	if(h == null) return -1;
-	
-	return 1 + Math.max(heightRecursive(h.left()), heightRecursive(h.right()));
+    private void addIterative(E value) {
+	int depth = 0;
+	Node h = root;
+	while (h != null) {
+	    int compare = compare(value, h.value);
+	    if (compare == 0) break;
+	    push(depth++, h, compare < 0);
+	    h = (compare < 0) ? h.left : h.right;
+	}
+	if (h == null) relink(depth, new Node(value));
+	fixPath(depth);
     }
 
-}
\ No newline at end of file
+    /**
+     * Iterative form of removeRecursive. The top-down moveRedLeft,
+     * moveRedRight and rotateRight steps are applied on the way down,
+     * relinking each reshaped node to its parent, and fixUp is applied
+     * to the recorded path on the way back up.
+     * @pre value is in the tree
+     * @post value is removed from the tree
+     */
+    private void removeIterative(E value) {
+	int depth = 0;
+	Node h = root;
+	while (true) {
+	    if (compare(value, h.value) < 0) {
+		if (!isRed(h.left) && !isRed(h.left.left)) h = moveRedLeft(h);
+		relink(depth, h);
+		push(depth++, h, true);
+		h = h.left;
+		continue;
+	    }
+	    if (isRed(h.left)) h = rotateRight(h);
+	    if (compare(value, h.value) == 0 && h.right == null) {
+		relink(depth, null);
+		break;
+	    }
+	    if (!isRed(h.right) && !isRed(h.right.left)) h = moveRedRight(h);
+	    relink(depth, h);
+	    push(depth++, h, false);
+	    if (compare(value, h.value) != 0) {
+		h = h.right;
+		continue;
+	    }
+	    //found it: replace with the successor, then remove the minimum
+	    //of the right subtree, as removeMinRecursive does
+	    h.value = min(h.right).value();
+	    h = h.right;
+	    while (h.left != null) {
+		if (!isRed(h.left) && !isRed(h.left.left)) h = moveRedLeft(h);
+		relink(depth, h);
+		push(depth++, h, true);
+		h = h.left;
+	    }
+	    relink(depth, null);
+	    break;
+	}
+	fixPath(depth);
+    }
+
+    /**
+     * Top-down 2-3-4 insertion, after Sedgewick: every 4-node met on the
+     * way down (a black node with two red children) is split with a
+     * colorFlip, so the new node never lands below a 4-node. A split or
+     * the new node can leave a right-leaning red link or two reds in a
+     * row just above it; these are rotated away at once by balance(), so
+     * the tree is valid when the descent ends and there is no pass back
+     * up. 4-nodes are otherwise left in the tree.
+     * @pre value is not null
+     * @post value is inserted into the tree, and the tree is rebalanced
+     */
+    private void addTopDown(E value) {
+	int depth = 0;
+	Node h = root;
+	while (h != null) {
+	    if (isRed(h.left) && isRed(h.right)) {
+		colorFlip(h);
+		if (depth == 0) h.color = BLACK;
+		else depth = balance(depth, h);
+	    }
+	    int compare = compare(value, h.value);
+	    if (compare == 0) return;
+	    push(depth++, h, compare < 0);
+	    h = (compare < 0) ? h.left : h.right;
+	}
+	h = new Node(value);
+	relink(depth, h);
+	if (depth > 0) depth = balance(depth, h);
+	//the rotations recount the nodes they move below h; recount h and
+	//its ancestors, which now hold the new node
+	resize(h);
+	for (int i = depth - 1; i >= 0; i--) resize(path[i]);
+    }
+
+    /**
+     * Restores the 2-3-4 invariants above x, a node just made red at the
+     * given depth of the path: a right-leaning red link is rotated left,
+     * unless it completes a 4-node, and two reds in a row are rotated
+     * right into a 4-node. The path is kept in step with the rotations.
+     * @pre depth > 0; the parent of x is not a 4-node
+     * @return the depth of x afterwards
+     */
+    private int balance(int depth, Node x) {
+	if (metrics != null) metrics.count(LLRBMetrics.FIX_UP);
+	Node p = path[depth - 1];
+	if (!pathLeft[depth - 1]) {
+	    if (isRed(p.left)) return depth;
+	    boolean red = isRed(p);
+	    relink(depth - 1, rotateLeft(p));
+	    if (!red) return depth - 1;
+	    //x now leans red on p, a red left child: rotate x above its parent
+	    depth--;
+	    relink(depth - 1, rotateRight(path[depth - 1]));
+	    return depth - 1;
+	}
+	if (!isRed(p)) return depth;
+	//p is a red left child, so its parent is not a 4-node
+	relink(depth - 2, rotateRight(path[depth - 2]));
+	path[depth - 2] = p;
+	pathLeft[depth - 2] = true;
+	return depth - 1;
+    }
+
+    /**
+     * Top-down removal from a 2-3-4 tree. As in removeIterative, each
+     * node on the way down is made part of a 3- or 4-node before it is
+     * left, by moveRedLeft, moveRedRight or a rotation. A 4-node already
+     * holds a red child on each side, so it is descended as it is; a
+     * sibling that is a 4-node lends its value without disturbing the
+     * rest of it. fixUp on the way back up splits the 4-nodes it meets.
+     * @pre value is in the tree
+     * @post value is removed from the tree
+     */
+    private void removeTopDown(E value) {
+	int depth = 0;
+	Node h = root;
+	while (true) {
+	    if (compare(value, h.value) < 0) {
+		if (!isRed(h.left) && !isRed(h.left.left)) h = moveRedLeftTopDown(h);
+		relink(depth, h);
+		push(depth++, h, true);
+		h = h.left;
+		continue;
+	    }
+	    if (isRed(h.left) && !isRed(h.right)) h = rotateRight(h);
+	    if (compare(value, h.value) == 0 && h.right == null) {
+		relink(depth, null);
+		break;
+	    }
+	    if (!isRed(h.right) && !isRed(h.right.left)) h = moveRedRight(h);
+	    relink(depth, h);
+	    push(depth++, h, false);
+	    if (compare(value, h.value) != 0) {
+		h = h.right;
+		continue;
+	    }
+	    h.value = min(h.right).value();
+	    h = h.right;
+	    while (h.left != null) {
+		if (!isRed(h.left) && !isRed(h.left.left)) h = moveRedLeftTopDown(h);
+		relink(depth, h);
+		push(depth++, h, true);
+		h = h.left;
+	    }
+	    relink(depth, null);
+	    break;
+	}
+	for (int i = depth - 1; i >= 0; i--) {
+	    relink(i, fixUpTopDown(path[i]));
+	    path[i] = null;
+	}
+    }
+
+    /**
+     * fixUp for a 2-3-4 tree: as fixUp, but a 4-node is split only when
+     * one of its red children has a red child, so 4-nodes survive.
+     */
+    private Node fixUpTopDown(Node h) {
+	if (metrics != null) metrics.count(LLRBMetrics.FIX_UP);
+	if (isRed(h.right) && !isRed(h.left)) h = rotateLeft(h);
+	if (isRed(h.left) && isRed(h.left.left)) h = rotateRight(h);
+	if (isRed(h.left) && isRed(h.right)
+	    && (isRed(h.left.left) || isRed(h.left.right) || isRed(h.right.left) || isRed(h.right.right))) colorFlip(h);
+	return resize(h);
+    }
+
+    /**
+     * moveRedLeft for a 2-3-4 tree: when the right sibling is a 4-node,
+     * the rotations that borrow its left value leave its right value
+     * leaning right, and it is turned back to the left.
+     * @pre as for moveRedLeft
+     * @return Node h, which now has a red left child
+     */
+    private Node moveRedLeftTopDown(Node h) {
+	h = moveRedLeft(h);
+	if (isRed(h.right) || !isRed(h.right.right)) return h;
+	h.right = rotateLeft(h.right);
+	return h;
+    }
+
+    //duplicate code from add
+    /**
+     * Helper function for removeRecursive(). Fixes the tree using
+     * the same process as insert.
+     */
+    private Node fixUp(Node h) {
+	if (metrics != null) metrics.count(LLRBMetrics.FIX_UP);
+
+	if(isRed(h.right) && !isRed(h.left)) h = rotateLeft(h);
+	if(isRed(h.left) && isRed(h.left.left)) h = rotateRight(h);
+	if(isRed(h.left) && isRed(h.right)) colorFlip(h);
+	
+	return resize(h);
+    }
+    /**
+     * Recursively returns the minimum value of a given subtree.
+     * @return the minimum Node
+     * @post returns the minimum value node
+     */
+    public Node min(Node h){
+	if(h.left == null) return h;
+
+	return min(h.left);
+    }
+    /**
+     * Returns the height of the tree
+     * @return height of the tree
+     * @post returns the height of the tree
+     */
+    public int height() {
+	return heightRecursive(root);
+    }
+
+    /**
+     * Recursive helper function for height().
+     */
+    protected int heightRecursive(Node h) {
+	if(h == null) return -1;
+	
+	return 1 + Math.max(heightRecursive(h.left()), heightRecursive(h.right()));
+    }
+
+    /**
+     * Checks the invariants of the tree, for testing: a black root, no
+     * red right link (except in a 4-node of the TOP_DOWN engine, whose
+     * two children are red), no red node with a red child, the same
+     * number of black nodes on every path, values in strictly ascending
+     * order, and subtree sizes that match the nodes.
+     * @return true if the tree is a valid left-leaning red-black tree
+     */
+    @SuppressWarnings("unchecked")
+    public boolean consistency() {
+	if (isRed(root) || blackConsistency(root) < 0) return false;
+	if (countConsistency(root) < 0) return false;
+	E previous = null;
+	for (Iterator<E> i = iterator(FAIL_FAST); i.hasNext(); ) {
+	    E value = i.next();
+	    if (previous != null && compare(previous, value) >= 0) return false;
+	    previous = value;
+	}
+	return true;
+    }
+
+    /**
+     * Recursive helper for consistency()
+     * @return the number of black nodes on every path below h, or -1 if
+     * the paths differ or a red link is misplaced
+     */
+    private int blackConsistency(Node h) {
+	if (h == null) return 0;
+	if (isRed(h.right) && !(engine == TOP_DOWN && isRed(h.left))) return -1;
+	if (isRed(h) && (isRed(h.left) || isRed(h.right))) return -1;
+	int left = blackConsistency(h.left);
+	if (left < 0 || left != blackConsistency(h.right)) return -1;
+	return isRed(h) ? left : left + 1;
+    }
+
+    /**
+     * Recursive helper for consistency()
+     * @return the number of nodes below h, or -1 if a node's size differs
+     */
+    private int countConsistency(Node h) {
+	if (h == null) return 0;
+	int left = countConsistency(h.left);
+	int right = countConsistency(h.right);
+	if (left < 0 || right < 0 || h.n != 1 + left + right) return -1;
+	return h.n;
+    }
+
+
+    /**
+     * Freezes the tree into a read-only array layout, for faster contains,
+     * floor and rank once it no longer changes; the tree is unaffected.
+     * @return a FrozenTree of the values of this tree
+     */
+    public FrozenTree<E> freeze() {
+	return new FrozenTree<E>(this, ordering);
+    }
+
+    /**
+     * Builds a tree from values already in strictly ascending order,
+     * in linear time.
+     * @pre sorted is strictly ascending, with no null entries
+     * @return a new LLRB holding the values of sorted
+     */
+    public static <E extends Comparable<E>> LLRB<E> fromSorted(E[] sorted) {
+	return fromSorted(sorted.clone(), sorted.length, null);
+    }
+
+    /**
+     * Builds a tree from the values of an iterator that returns them in
+     * strictly ascending order, in linear time.
+     * @pre values are strictly ascending and not null
+     * @return a new LLRB holding the values returned by values
+     */
+    public static <E extends Comparable<E>> LLRB<E> fromSorted(Iterator<E> values) {
+	return fromSorted(values, null);
+    }
+
+    /**
+     * Builds a tree ordered by ordering from the values of an iterator
+     * that returns them in strictly ascending order, in linear time.
+     * @pre values are strictly ascending by ordering, or by natural order
+     * if it is null, and not null
+     * @return a new LLRB holding the values returned by values
+     */
+    public static <E> LLRB<E> fromSorted(Iterator<E> values, Comparator<? super E> ordering) {
+	ArrayList<E> list = new ArrayList<E>();
+	while (values.hasNext()) list.add(values.next());
+	return fromSorted(list.toArray(), list.size(), ordering);
+    }
+
+    /**
+     * Builds a tree from a Vector of values in strictly ascending order,
+     * in linear time.
+     * @pre sorted is strictly ascending, with no null entries
+     * @return a new LLRB holding the values of sorted
+     */
+    public static <E extends Comparable<E>> LLRB<E> fromSorted(structure5.Vector<E> sorted) {
+	Object[] data = new Object[sorted.size()];
+	sorted.copyInto(data);
+	return fromSorted(data, data.length, null);
+    }
+
+    /**
+     * Builds a tree from values in any order, possibly with duplicates.
+     * The values are sorted with a parallel sort and duplicates dropped
+     * before the linear-time build.
+     * @pre data has no null entries
+     * @return a new LLRB holding the distinct values of data
+     */
+    public static <E extends Comparable<E>> LLRB<E> fromUnsorted(E[] data) {
+	E[] sorted = data.clone();
+	return fromSorted(sorted, sortDistinct(sorted, null), null);
+    }
+
+    /**
+     * Sorts data in place by ordering, or by natural order if ordering is
+     * null, and moves its distinct values to the front
+     * @return the number of distinct values
+     */
+    private static <E> int sortDistinct(E[] data, Comparator<? super E> ordering) {
+	Arrays.parallelSort(data, ordering);
+	int n = 0;
+	for (int i = 0; i < data.length; i++) {
+	    if (n == 0 || compare(ordering, data[n - 1], data[i]) != 0) data[n++] = data[i];
+	}
+	return n;
+    }
+
+    /**
+     * Compares two values by ordering, or by natural order if it is null
+     */
+    @SuppressWarnings("unchecked")
+    private static <E> int compare(Comparator<? super E> ordering, E a, E b) {
+	return (ordering == null) ? ((Comparable<? super E>)a).compareTo(b) : ordering.compare(a, b);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> LLRB<E> fromSorted(Object[] sorted, int n, Comparator<? super E> ordering) {
+	for (int i = 1; i < n; i++) {
+	    Assert.pre(compare(ordering, (E)sorted[i - 1], (E)sorted[i]) < 0, "Values must be strictly ascending.");
+	}
+	LLRB<E> tree = new LLRB<E>(ordering);
+	//the largest black height whose smallest 2-3 tree fits in n
+	int blackHeight = 31 - Integer.numberOfLeadingZeros(n + 1);
+	if (n >= PARALLEL) tree.root = ForkJoinPool.commonPool().invoke(tree.new BuildTask(sorted, 0, n, blackHeight));
+	else tree.root = tree.build(sorted, 0, n, blackHeight);
+	if (tree.root != null) tree.root.color = BLACK;
+	return tree;
+    }
+
+    /**
+     * Builds the 2-3 tree of black height bh holding sorted[lo..lo+n-1],
+     * as an LLRB. A subtree of black height bh holds between 2^bh - 1
+     * (all 2-nodes) and 3^bh - 1 (all 3-nodes) values. The root is a
+     * 2-node when the two subtrees can hold the rest, and otherwise a
+     * 3-node, whose smaller value is its red left child.
+     * @pre 2^bh - 1 <= n <= 3^bh - 1
+     * @return the root of the subtree, black, or null if n is 0
+     */
+    @SuppressWarnings("unchecked")
+    private Node build(Object[] sorted, int lo, int n, int bh) {
+	if (n == 0) return null;
+	long max = 1;
+	for (int i = 1; i < bh; i++) max *= 3;
+	max--;
+	Node h;
+	if (n - 1 <= 2 * max) {
+	    int left = (n - 1) / 2;
+	    h = new Node((E)sorted[lo + left]);
+	    Node[] subtrees = buildAll(sorted, bh - 1, lo, left, lo + left + 1, n - 1 - left);
+	    h.left = subtrees[0];
+	    h.right = subtrees[1];
+	}
+	else {
+	    int third = (n - 2) / 3;
+	    int middle = (n - 2 - third) / 2;
+	    Node red = new Node((E)sorted[lo + third]);
+	    h = new Node((E)sorted[lo + third + 1 + middle]);
+	    Node[] subtrees = buildAll(sorted, bh - 1, lo, third, lo + third + 1, middle,
+				       lo + third + middle + 2, n - 2 - third - middle);
+	    red.left = subtrees[0];
+	    red.right = subtrees[1];
+	    resize(red);
+	    h.left = red;
+	    h.right = subtrees[2];
+	}
+	h.color = BLACK;
+	h.n = n;
+	return h;
+    }
+
+    /**
+     * Builds the sibling subtrees of black height bh holding the ranges
+     * given as (lo, n) pairs; in parallel if they are large enough.
+     * @return the roots of the subtrees, in order
+     */
+    @SuppressWarnings("unchecked")
+    private Node[] buildAll(Object[] sorted, int bh, int... ranges) {
+	Node[] subtrees = (Node[])new LLRB<?>.Node[ranges.length / 2];
+	if (ranges[1] < PARALLEL) {
+	    for (int i = 0; i < subtrees.length; i++) subtrees[i] = build(sorted, ranges[2 * i], ranges[2 * i + 1], bh);
+	    return subtrees;
+	}
+	ArrayList<BuildTask> tasks = new ArrayList<BuildTask>();
+	for (int i = 0; i < subtrees.length; i++) tasks.add(new BuildTask(sorted, ranges[2 * i], ranges[2 * i + 1], bh));
+	ForkJoinTask.invokeAll(tasks);
+	for (int i = 0; i < subtrees.length; i++) subtrees[i] = tasks.get(i).join();
+	return subtrees;
+    }
+
+    /**
+     * Fork/join task building one subtree, for large builds. build makes
+     * no comparisons and counts nothing, so tasks share no state.
+     */
+    private class BuildTask extends RecursiveTask<Node> {
+	final static long serialVersionUID = 0L;
+
+	private final Object[] sorted;
+	private final int lo, n, bh;
+
+	BuildTask(Object[] sorted, int lo, int n, int bh) {
+	    this.sorted = sorted;
+	    this.lo = lo;
+	    this.n = n;
+	    this.bh = bh;
+	}
+
+	protected Node compute() {
+	    return build(sorted, lo, n, bh);
+	}
+    }
+
+
+    /*
+     * Join-based operations. join(l, m, r) links two trees and a middle
+     * value, all of l below m and all of r above it, in time proportional
+     * to the difference of their black heights: the shorter tree hangs
+     * from the spine of the taller one by a red link, which is then fixed
+     * up exactly as after an insertion. split(h, key) cuts a tree at key
+     * in O(log n) with one join per level. Both take and return subtrees
+     * with a black root and a known black height (a Tree), and reuse the
+     * nodes they are given; the trees passed in are consumed.
+     *
+     * union, intersect and difference are built on these: split one tree
+     * by the root of the other, recurse on the two halves independently,
+     * and join the results. The halves are disjoint, so above a size
+     * threshold they run as fork/join tasks.
+     */
+
+    /**
+     * Trees at least this large are built or combined in parallel
+     */
+    private static final int PARALLEL = 1 << 13;
+
+    /**
+     * Black height above which set operations fork: about PARALLEL nodes
+     */
+    private static final int PARALLEL_HEIGHT = 13;
+
+    /**
+     * A detached subtree with a black root, and its black height: the
+     * number of black nodes on any path from its root to a null link
+     */
+    private class Tree {
+	private final Node root;
+	private final int height;
+
+	Tree(Node root, int height) {
+	    this.root = root;
+	    this.height = height;
+	}
+    }
+
+    /**
+     * The result of splitting a tree at a key
+     */
+    private class Split {
+	private Tree left;
+	private Node match;
+	private Tree right;
+
+	Split(Tree left, Node match, Tree right) {
+	    this.left = left;
+	    this.match = match;
+	    this.right = right;
+	}
+    }
+
+    /**
+     * @pre the root of h is black
+     * @return the black height of the tree rooted at h
+     */
+    private int blackHeight(Node h) {
+	int height = 0;
+	for (; h != null; h = h.left) {
+	    if (!isRed(h)) height++;
+	}
+	return height;
+    }
+
+    /**
+     * @return the tree rooted here, detached
+     */
+    private Tree tree() {
+	return new Tree(root, blackHeight(root));
+    }
+
+    /**
+     * Detaches child x of a black node of black height height, making
+     * its root black
+     * @return x as a tree
+     */
+    private Tree child(Node x, int height) {
+	if (isRed(x)) {
+	    x.color = BLACK;
+	    return new Tree(x, height);
+	}
+	return new Tree(x, height - 1);
+    }
+
+    /**
+     * Joins l, m and r into one tree, using m as the middle node
+     * @pre every value of l is less than m's, every value of r greater
+     * @return the joined tree
+     */
+    private Tree join(Tree l, Node m, Tree r) {
+	m.color = RED;
+	Node h;
+	if (l.height > r.height) h = joinRight(l.root, l.height, m, r.root, r.height);
+	else if (l.height < r.height) h = joinLeft(r.root, r.height, m, l.root, l.height);
+	else {
+	    m.left = l.root;
+	    m.right = r.root;
+	    h = resize(m);
+	}
+	int height = Math.max(l.height, r.height);
+	if (isRed(h)) {
+	    h.color = BLACK;
+	    height++;
+	}
+	return new Tree(h, height);
+    }
+
+    /**
+     * Hangs m, with children h and r, from the right spine of h, where
+     * the black height falls to that of r. The spine of a 2-3 tree is
+     * all black; the red right halves of 4-nodes are passed over.
+     * @pre hh >= rh
+     * @return the new root of the subtree, possibly red
+     */
+    private Node joinRight(Node h, int hh, Node m, Node r, int rh) {
+	if (hh == rh) {
+	    m.left = h;
+	    m.right = r;
+	    return resize(m);
+	}
+	if (isRed(h.right)) {
+	    Node red = h.right;
+	    red.right = joinRight(red.right, hh - 1, m, r, rh);
+	    h.right = fixJoin(red);
+	}
+	else h.right = joinRight(h.right, hh - 1, m, r, rh);
+	return fixJoin(h);
+    }
+
+    /**
+     * Hangs m, with children l and h, from the left spine of h, where the
+     * black height falls to that of l. Red nodes on the spine are passed
+     * over, since m must replace a black node.
+     * @pre hh >= lh
+     * @return the new root of the subtree, possibly red
+     */
+    private Node joinLeft(Node h, int hh, Node m, Node l, int lh) {
+	if (hh == lh) {
+	    m.left = l;
+	    m.right = h;
+	    return resize(m);
+	}
+	if (isRed(h.left)) {
+	    Node red = h.left;
+	    red.left = joinLeft(red.left, hh - 1, m, l, lh);
+	    h.left = fixJoin(red);
+	}
+	else h.left = joinLeft(h.left, hh - 1, m, l, lh);
+	return fixJoin(h);
+    }
+
+    /**
+     * The fixUp of a join: fixUp, which keeps a 2-3 tree, or fixUp234
+     * for a tree that may hold 4-nodes
+     */
+    private Node fixJoin(Node h) {
+	return (engine == TOP_DOWN) ? fixUp234(h) : fixUp(h);
+    }
+
+    /**
+     * Bottom-up fix of a 2-3-4 tree after a red link is added below h: a
+     * red child of h with a red child of its own is rotated into a
+     * 4-node with h, unless h is already a 4-node, which is then split.
+     * A lone red right child is leaned left.
+     */
+    private Node fixUp234(Node h) {
+	if (metrics != null) metrics.count(LLRBMetrics.FIX_UP);
+	if (isRed(h.left) && isRed(h.right)) {
+	    if (isRed(h.left.left) || isRed(h.left.right) || isRed(h.right.left) || isRed(h.right.right)) {
+		colorFlip(h);
+		if (isRed(h.left.right) && !isRed(h.left.left)) h.left = rotateLeft(h.left);
+		if (isRed(h.right.right) && !isRed(h.right.left)) h.right = rotateLeft(h.right);
+	    }
+	    return resize(h);
+	}
+	if (isRed(h.right)) {
+	    if (isRed(h.right.left)) h.right = rotateRight(h.right);
+	    return rotateLeft(resize(h));
+	}
+	if (isRed(h.left)) {
+	    if (isRed(h.left.right)) h.left = rotateLeft(h.left);
+	    if (isRed(h.left.left)) h = rotateRight(h);
+	}
+	return resize(h);
+    }
+
+    /**
+     * Joins two trees with no middle value, using the minimum of r
+     * @pre every value of l is less than every value of r
+     * @return the joined tree
+     */
+    private Tree join(Tree l, Tree r) {
+	if (l.root == null) return r;
+	if (r.root == null) return l;
+	E key = min(r.root).value;
+	return join(l, new Node(key), split(r, key).right);
+    }
+
+    /**
+     * Splits t at key. The node holding key, if any, is detached.
+     * @return the values less than key, the node holding key or null,
+     * and the values greater than key
+     */
+    private Split split(Tree t, E key) {
+	Node h = t.root;
+	if (h == null) return new Split(t, null, t);
+	Tree l = child(h.left, t.height);
+	Tree r = child(h.right, t.height);
+	int compare = compare(key, h.value);
+	if (compare < 0) {
+	    Split s = split(l, key);
+	    s.right = join(s.right, h, r);
+	    return s;
+	}
+	if (compare > 0) {
+	    Split s = split(r, key);
+	    s.left = join(l, h, s.left);
+	    return s;
+	}
+	h.left = h.right = null;
+	h.n = 1;
+	return new Split(l, h, r);
+    }
+
+    private static final int UNION = 0;
+    private static final int INTERSECT = 1;
+    private static final int DIFFERENCE = 2;
+
+    /**
+     * Fork/join task for union, intersect and difference of two trees.
+     * If the tree counts, each task keeps its own metrics, through a
+     * worker tree; the task that joins it adds them to its own, so no
+     * counter is shared between threads.
+     */
+    private class SetTask extends RecursiveTask<Tree> {
+	final static long serialVersionUID = 0L;
+
+	private final int op;
+	private final Tree a, b;
+	private final LLRB<E> worker;
+
+	SetTask(int op, Tree a, Tree b) {
+	    this.op = op;
+	    this.a = a;
+	    this.b = b;
+	    worker = (metrics == null) ? LLRB.this : new LLRB<E>(engine, true, ordering);
+	}
+
+	protected Tree compute() {
+	    return worker.combine(op, a, b);
+	}
+
+	/**
+	 * Adds the metrics of this finished task to tree's
+	 */
+	void addTo(LLRB<E> tree) {
+	    if (tree.metrics != null) tree.metrics.add(worker.metrics);
+	}
+    }
+
+    /**
+     * Recursive helper for the set operations
+     * @return the result of op on a and b
+     */
+    private Tree combine(int op, Tree a, Tree b) {
+	//difference splits a by b; the others split b by a
+	boolean byA = op != DIFFERENCE;
+	Tree pivot = byA ? a : b;
+	Tree other = byA ? b : a;
+	if (pivot.root == null) return (op == UNION) ? other : (op == INTERSECT) ? pivot : a;
+	if (other.root == null) return (op == UNION) ? pivot : other;
+
+	Node m = pivot.root;
+	Tree l = child(m.left, pivot.height);
+	Tree r = child(m.right, pivot.height);
+	Split s = split(other, m.value);
+
+	Tree lowA = byA ? l : s.left, lowB = byA ? s.left : l;
+	Tree highA = byA ? r : s.right, highB = byA ? s.right : r;
+	Tree lower, upper;
+	if (Math.max(a.height, b.height) > PARALLEL_HEIGHT) {
+	    SetTask left = new SetTask(op, lowA, lowB);
+	    left.fork();
+	    upper = combine(op, highA, highB);
+	    lower = left.join();
+	    left.addTo(this);
+	}
+	else {
+	    lower = combine(op, lowA, lowB);
+	    upper = combine(op, highA, highB);
+	}
+	if (op == UNION || (op == INTERSECT && s.match != null)) return join(lower, m, upper);
+	return join(lower, upper);
+    }
+
+    /**
+     * Runs a set operation on the trees of a and b, consuming both. A
+     * counting result records it as one BATCH operation.
+     * @return the resulting tree
+     */
+    private static <E> LLRB<E> combine(int op, LLRB<E> a, LLRB<E> b) {
+	Assert.pre(a != b, "Trees must be distinct.");
+	LLRB<E> result = like(a, b);
+	if (result.metrics != null) result.metrics.begin();
+	LLRB<E>.SetTask task = result.new SetTask(op, a.tree(), b.tree());
+	result.root = ForkJoinPool.commonPool().invoke(task).root;
+	task.addTo(result);
+	if (result.metrics != null) result.metrics.end(LLRBMetrics.BATCH);
+	a.clear();
+	b.clear();
+	return result;
+    }
+
+    /**
+     * Returns an empty tree to hold the result of an operation on a and
+     * b, with a's engine; with the top-down engine if either uses it,
+     * since the result may then hold 4-nodes. The result counts its
+     * operations if either a or b does.
+     * @pre a and b have the same ordering
+     */
+    private static <E> LLRB<E> like(LLRB<E> a, LLRB<E> b) {
+	Assert.pre(a.ordering == b.ordering || (a.ordering != null && a.ordering.equals(b.ordering)),
+		   "Trees must have the same ordering.");
+	boolean counting = a.metrics != null || b.metrics != null;
+	return new LLRB<E>((b.engine == TOP_DOWN) ? TOP_DOWN : a.engine, counting, a.ordering);
+    }
+
+    /**
+     * Computes the union of two trees in O(m log(n/m + 1)) work, for
+     * sizes m <= n, in parallel for large trees. The nodes of a and b are
+     * reused, so both are left empty.
+     * @pre a and b are distinct trees
+     * @return a tree of the values in a or b
+     * @post a and b are empty
+     */
+    public static <E> LLRB<E> union(LLRB<E> a, LLRB<E> b) {
+	return combine(UNION, a, b);
+    }
+
+    /**
+     * Computes the intersection of two trees, as union does.
+     * @pre a and b are distinct trees
+     * @return a tree of the values in both a and b
+     * @post a and b are empty
+     */
+    public static <E> LLRB<E> intersect(LLRB<E> a, LLRB<E> b) {
+	return combine(INTERSECT, a, b);
+    }
+
+    /**
+     * Computes the difference of two trees, as union does.
+     * @pre a and b are distinct trees
+     * @return a tree of the values in a but not in b
+     * @post a and b are empty
+     */
+    public static <E> LLRB<E> difference(LLRB<E> a, LLRB<E> b) {
+	return combine(DIFFERENCE, a, b);
+    }
+
+    /**
+     * Joins two trees and a value between them in O(log n): the shorter
+     * tree is linked into the taller at its own black height.
+     * @pre every value of left is less than key, every value of right
+     * greater; left and right are distinct trees
+     * @return a tree of the values of left, key and the values of right
+     * @post left and right are empty
+     */
+    public static <E> LLRB<E> join(LLRB<E> left, E key, LLRB<E> right) {
+	Assert.pre(left != right, "Trees must be distinct.");
+	Assert.pre(left.isEmpty() || left.compare(left.max(), key) < 0, "Left values must be less than key.");
+	Assert.pre(right.isEmpty() || right.compare(right.min(), key) > 0, "Right values must be greater than key.");
+	LLRB<E> result = like(left, right);
+	result.root = result.join(left.tree(), result.new Node(key), right.tree()).root;
+	left.clear();
+	right.clear();
+	return result;
+    }
+
+    /**
+     * Splits the tree at key in O(log n). Values less than key stay in
+     * this tree; values greater than key are moved to the returned tree.
+     * key itself, if present, is removed.
+     * @pre key is not null
+     * @return a tree of the values greater than key
+     * @post this tree holds only the values less than key
+     */
+    public LLRB<E> split(E key) {
+	Split s = split(tree(), key);
+	LLRB<E> result = like(this, this);
+	result.root = s.right.root;
+	root = s.left.root;
+	version++;
+	return result;
+    }
+
+    /**
+     * Splits the tree at key in O(log n), into the values less than key
+     * and the values from key up.
+     * @pre key is not null
+     * @return two trees: the values less than key, and the values greater
+     * than or equal to key
+     * @post this tree is empty
+     */
+    @SuppressWarnings("unchecked")
+    public LLRB<E>[] splitAt(E key) {
+	Split s = split(tree(), key);
+	Tree upper = s.right;
+	if (s.match != null) upper = join(new Tree(null, 0), s.match, upper);
+	LLRB<E>[] result = (LLRB<E>[])new LLRB<?>[2];
+	result[0] = like(this, this);
+	result[0].root = s.left.root;
+	result[1] = like(this, this);
+	result[1].root = upper.root;
+	root = null;
+	version++;
+	return result;
+    }
+
+    /**
+     * Concatenates two trees whose ranges do not overlap, in O(log n):
+     * the minimum of b is split off and used to join the two.
+     * @pre every value of a is less than every value of b; a and b are
+     * distinct trees
+     * @return a tree of the values of a and b
+     * @post a and b are empty
+     */
+    public static <E> LLRB<E> concat(LLRB<E> a, LLRB<E> b) {
+	Assert.pre(a != b, "Trees must be distinct.");
+	Assert.pre(a.isEmpty() || b.isEmpty() || a.compare(a.max(), b.min()) < 0, "Values of a must be less than values of b.");
+	LLRB<E> result = like(a, b);
+	result.root = result.join(a.tree(), b.tree()).root;
+	a.clear();
+	b.clear();
+	return result;
+    }
+
+    /**
+     * Adds a batch of values in one pass, and changes the version once.
+     * The batch is sorted, then merged with the tree: a small batch is
+     * built into a tree and merged in with union, in O(m log(n/m + 1))
+     * work for m values into n; a batch of more than n/BATCH_REBUILD
+     * values is merged with the values of the tree in order and the tree
+     * rebuilt from the result, in O(n + m).
+     * @pre values has no null entries
+     * @post every value of values is in the tree
+     */
+    public void addAll(E[] values) {
+	E[] sorted = values.clone();
+	merge(UNION, sorted, sortDistinct(sorted, ordering));
+    }
+
+    /**
+     * Adds every value of other, as addAll(E[]) does
+     * @post every value of other is in the tree
+     */
+    public void addAll(Structure<E> other) {
+	E[] sorted = toArray(other);
+	merge(UNION, sorted, sortDistinct(sorted, ordering));
+    }
+
+    /**
+     * Removes a batch of values in one pass, as addAll adds them, using
+     * difference for a small batch.
+     * @pre values has no null entries
+     * @post no value of values is in the tree
+     */
+    public void removeAll(E[] values) {
+	E[] sorted = values.clone();
+	merge(DIFFERENCE, sorted, sortDistinct(sorted, ordering));
+    }
+
+    /**
+     * Removes every value of other, as removeAll(E[]) does
+     * @post no value of other is in the tree
+     */
+    public void removeAll(Structure<E> other) {
+	E[] sorted = toArray(other);
+	merge(DIFFERENCE, sorted, sortDistinct(sorted, ordering));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> E[] toArray(Structure<E> other) {
+	Object[] values = new Object[other.size()];
+	int n = 0;
+	for (E value : other) values[n++] = value;
+	return (E[])values;
+    }
+
+    /**
+     * Batches larger than size()/BATCH_REBUILD rebuild the tree
+     */
+    private static final int BATCH_REBUILD = 2;
+
+    /**
+     * Combines the first m values of sorted into this tree with op. A
+     * counting tree records this as one BATCH operation, with the work
+     * of every fork/join task; the sort before it is not counted.
+     * @pre sorted[0..m-1] is strictly ascending
+     */
+    private void merge(int op, E[] sorted, int m) {
+	if (metrics != null) metrics.begin();
+	int n = size();
+	if (m > n / BATCH_REBUILD) {
+	    Object[] current = new Object[n];
+	    inorder(root, current, 0);
+	    Object[] merged = new Object[(op == UNION) ? n + m : n];
+	    int k = mergeSorted(op, current, n, sorted, m, merged);
+	    LLRB<E> rebuilt = fromSorted(merged, k, ordering);
+	    root = rebuilt.root;
+	    version++;
+	}
+	else if (m > 0) {
+	    int height = 31 - Integer.numberOfLeadingZeros(m + 1);
+	    Tree batch = new Tree(build(sorted, 0, m, height), height);
+	    SetTask task = new SetTask(op, tree(), batch);
+	    root = ForkJoinPool.commonPool().invoke(task).root;
+	    task.addTo(this);
+	    version++;
+	}
+	if (metrics != null) metrics.end(LLRBMetrics.BATCH);
+    }
+
+    /**
+     * Stores the values of the subtree at h in order, from values[i]
+     * @return the index after the last value stored
+     */
+    private int inorder(Node h, Object[] values, int i) {
+	if (h == null) return i;
+	i = inorder(h.left, values, i);
+	values[i++] = h.value;
+	return inorder(h.right, values, i);
+    }
+
+    /**
+     * Merges two strictly ascending runs: their union, or the values of
+     * a not in b
+     * @return the number of values stored in result
+     */
+    @SuppressWarnings("unchecked")
+    private int mergeSorted(int op, Object[] a, int n, E[] b, int m, Object[] result) {
+	int i = 0, j = 0, k = 0;
+	while (i < n && j < m) {
+	    int compare = compare((E)a[i], b[j]);
+	    if (compare < 0) result[k++] = a[i++];
+	    else if (compare > 0) {
+		if (op == UNION) result[k++] = b[j];
+		j++;
+	    }
+	    else {
+		if (op == UNION) result[k++] = a[i];
+		i++;
+		j++;
+	    }
+	}
+	while (i < n) result[k++] = a[i++];
+	while (op == UNION && j < m) result[k++] = b[j++];
+	return k;
+    }
+}
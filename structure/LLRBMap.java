@@ -0,0 +1,592 @@
+//A sorted map of keys to values, backed by a left leaning red black tree.
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * This class implements java.util.NavigableMap over an LLRB of
+ * ComparableAssociations, in the way Table keeps its associations in an
+ * OrderedVector. It can stand in for java.util.TreeMap.
+ * <P>
+ * The head, tail, sub and descending maps are views: each is an LLRBMap
+ * sharing the same tree, with bounds on its keys and a direction.
+ * Navigation on a view costs O(log n); its size() is counted by iteration,
+ * as with TreeMap's views. As with TreeMap, a view's bounds must lie
+ * within those of the map it is taken from, and iterators are fail-fast.
+ * <P>
+ * The structure5 Map interface cannot be implemented by the same class,
+ * since its add(), keySet() and values() have return types that conflict
+ * with java.util's, so asOrderedMap() returns an OrderedMap view of the
+ * same tree.
+ *
+ * @author, 2014 tony liu, michael shaw
+ * @see LLRB
+ * @see structure5.Table
+ */
+
+public class LLRBMap<K extends Comparable<K>, V> extends java.util.AbstractMap<K,V> implements NavigableMap<K,V> {
+
+    /**
+     * The associations of the map, shared by every view
+     */
+    private LLRB<ComparableAssociation<K,V>> data;
+
+    /**
+     * Bounds on the keys of this view; a null bound is no bound
+     */
+    private K lo, hi;
+    private boolean loInclusive, hiInclusive;
+
+    /**
+     * Whether this view presents the keys in decreasing order
+     */
+    private boolean descending;
+
+    //default constructor
+    public LLRBMap() {
+	this(new LLRB<ComparableAssociation<K,V>>(), null, false, null, false, false);
+    }
+
+    /**
+     * Constructs a map holding the entries of other
+     * @post the map holds every mapping of other
+     */
+    public LLRBMap(java.util.Map<? extends K, ? extends V> other) {
+	this();
+	putAll(other);
+    }
+
+    private LLRBMap(LLRB<ComparableAssociation<K,V>> data, K lo, boolean loInclusive,
+		    K hi, boolean hiInclusive, boolean descending) {
+	this.data = data;
+	this.lo = lo;
+	this.loInclusive = loInclusive;
+	this.hi = hi;
+	this.hiInclusive = hiInclusive;
+	this.descending = descending;
+    }
+
+    /**
+     * @return true if this is the whole map rather than a bounded view
+     */
+    private boolean unbounded() {
+	return lo == null && hi == null;
+    }
+
+    private boolean tooLow(K key) {
+	if (lo == null) return false;
+	int cmp = key.compareTo(lo);
+	return cmp < 0 || (cmp == 0 && !loInclusive);
+    }
+
+    private boolean tooHigh(K key) {
+	if (hi == null) return false;
+	int cmp = key.compareTo(hi);
+	return cmp > 0 || (cmp == 0 && !hiInclusive);
+    }
+
+    private boolean inRange(K key) {
+	return !tooLow(key) && !tooHigh(key);
+    }
+
+    private ComparableAssociation<K,V> probe(K key) {
+	return new ComparableAssociation<K,V>(key);
+    }
+
+    /**
+     * @return true if key lies within the closed range of this view, so
+     * that it may be an exclusive bound of a view taken from this one
+     */
+    private boolean inClosedRange(K key) {
+	return (lo == null || key.compareTo(lo) >= 0) && (hi == null || key.compareTo(hi) <= 0);
+    }
+
+    /**
+     * @return the stored association with key, or null if absent or out of range
+     * @throws NullPointerException if key is null
+     */
+    @SuppressWarnings("unchecked")
+    private ComparableAssociation<K,V> find(Object key) {
+	if (key == null) throw new NullPointerException();
+	K k = (K)key;
+	if (!inRange(k)) return null;
+	return data.get(probe(k));
+    }
+
+    //Navigation in increasing key order, within the bounds of this view
+
+    private ComparableAssociation<K,V> absLowest() {
+	ComparableAssociation<K,V> e;
+	if (lo == null) e = data.min();
+	else e = loInclusive ? data.ceiling(probe(lo)) : data.higher(probe(lo));
+	return (e == null || tooHigh(e.getKey())) ? null : e;
+    }
+
+    private ComparableAssociation<K,V> absHighest() {
+	ComparableAssociation<K,V> e;
+	if (hi == null) e = data.max();
+	else e = hiInclusive ? data.floor(probe(hi)) : data.lower(probe(hi));
+	return (e == null || tooLow(e.getKey())) ? null : e;
+    }
+
+    private ComparableAssociation<K,V> absCeiling(K key) {
+	if (tooLow(key)) return absLowest();
+	ComparableAssociation<K,V> e = data.ceiling(probe(key));
+	return (e == null || tooHigh(e.getKey())) ? null : e;
+    }
+
+    private ComparableAssociation<K,V> absHigher(K key) {
+	if (tooLow(key)) return absLowest();
+	ComparableAssociation<K,V> e = data.higher(probe(key));
+	return (e == null || tooHigh(e.getKey())) ? null : e;
+    }
+
+    private ComparableAssociation<K,V> absFloor(K key) {
+	if (tooHigh(key)) return absHighest();
+	ComparableAssociation<K,V> e = data.floor(probe(key));
+	return (e == null || tooLow(e.getKey())) ? null : e;
+    }
+
+    private ComparableAssociation<K,V> absLower(K key) {
+	if (tooHigh(key)) return absHighest();
+	ComparableAssociation<K,V> e = data.lower(probe(key));
+	return (e == null || tooLow(e.getKey())) ? null : e;
+    }
+
+    //Navigation in the order of this view
+
+    private ComparableAssociation<K,V> first() {
+	return descending ? absHighest() : absLowest();
+    }
+
+    private ComparableAssociation<K,V> last() {
+	return descending ? absLowest() : absHighest();
+    }
+
+    private static <K extends Comparable<K>,V> java.util.Map.Entry<K,V> snapshot(ComparableAssociation<K,V> e) {
+	return (e == null) ? null : new SimpleImmutableEntry<K,V>(e.getKey(), e.getValue());
+    }
+
+    private static <K extends Comparable<K>> K key(ComparableAssociation<K,?> e) {
+	return (e == null) ? null : e.getKey();
+    }
+
+    public int size() {
+	if (unbounded()) return data.size();
+	int count = 0;
+	for (EntryIterator i = new EntryIterator(); i.hasNext(); i.advance()) count++;
+	return count;
+    }
+
+    public boolean isEmpty() {
+	return unbounded() ? data.isEmpty() : first() == null;
+    }
+
+    public boolean containsKey(Object key) {
+	return find(key) != null;
+    }
+
+    public V get(Object key) {
+	ComparableAssociation<K,V> e = find(key);
+	return (e == null) ? null : e.getValue();
+    }
+
+    /**
+     * Associates value with key
+     * @pre key is not null, and is within the bounds of this view
+     * @return the value previously associated with key, or null
+     */
+    public V put(K key, V value) {
+	if (key == null) throw new NullPointerException();
+	if (!inRange(key)) throw new IllegalArgumentException("Key out of range.");
+	ComparableAssociation<K,V> e = data.get(probe(key));
+	if (e != null) return e.setValue(value);
+	data.add(new ComparableAssociation<K,V>(key, value));
+	return null;
+    }
+
+    public V remove(Object key) {
+	ComparableAssociation<K,V> e = find(key);
+	if (e == null) return null;
+	data.remove(e);
+	return e.getValue();
+    }
+
+    public void clear() {
+	if (unbounded()) data.clear();
+	else {
+	    for (ComparableAssociation<K,V> e = first(); e != null; e = first()) data.remove(e);
+	}
+    }
+
+    public Comparator<? super K> comparator() {
+	return descending ? Collections.<K>reverseOrder() : null;
+    }
+
+    public K firstKey() {
+	ComparableAssociation<K,V> e = first();
+	if (e == null) throw new NoSuchElementException();
+	return e.getKey();
+    }
+
+    public K lastKey() {
+	ComparableAssociation<K,V> e = last();
+	if (e == null) throw new NoSuchElementException();
+	return e.getKey();
+    }
+
+    public java.util.Map.Entry<K,V> firstEntry() {
+	return snapshot(first());
+    }
+
+    public java.util.Map.Entry<K,V> lastEntry() {
+	return snapshot(last());
+    }
+
+    public java.util.Map.Entry<K,V> pollFirstEntry() {
+	ComparableAssociation<K,V> e = first();
+	if (e != null) data.remove(e);
+	return snapshot(e);
+    }
+
+    public java.util.Map.Entry<K,V> pollLastEntry() {
+	ComparableAssociation<K,V> e = last();
+	if (e != null) data.remove(e);
+	return snapshot(e);
+    }
+
+    public java.util.Map.Entry<K,V> lowerEntry(K key) {
+	return snapshot(descending ? absHigher(key) : absLower(key));
+    }
+
+    public java.util.Map.Entry<K,V> floorEntry(K key) {
+	return snapshot(descending ? absCeiling(key) : absFloor(key));
+    }
+
+    public java.util.Map.Entry<K,V> ceilingEntry(K key) {
+	return snapshot(descending ? absFloor(key) : absCeiling(key));
+    }
+
+    public java.util.Map.Entry<K,V> higherEntry(K key) {
+	return snapshot(descending ? absLower(key) : absHigher(key));
+    }
+
+    public K lowerKey(K key) {
+	return key(descending ? absHigher(key) : absLower(key));
+    }
+
+    public K floorKey(K key) {
+	return key(descending ? absCeiling(key) : absFloor(key));
+    }
+
+    public K ceilingKey(K key) {
+	return key(descending ? absFloor(key) : absCeiling(key));
+    }
+
+    public K higherKey(K key) {
+	return key(descending ? absLower(key) : absHigher(key));
+    }
+
+    /**
+     * Returns a view of the keys in [from, to] (or the open forms), in the
+     * order of this map
+     * @throws NullPointerException if from or to is null
+     * @throws IllegalArgumentException if from comes after to, or either
+     * lies outside the range of this view
+     */
+    public NavigableMap<K,V> subMap(K from, boolean fromInclusive, K to, boolean toInclusive) {
+	if (descending) return view(to, toInclusive, from, fromInclusive, true, true);
+	return view(from, fromInclusive, to, toInclusive, true, true);
+    }
+
+    public NavigableMap<K,V> headMap(K to, boolean inclusive) {
+	if (descending) return view(to, inclusive, null, false, true, false);
+	return view(null, false, to, inclusive, false, true);
+    }
+
+    public NavigableMap<K,V> tailMap(K from, boolean inclusive) {
+	if (descending) return view(null, false, from, inclusive, false, true);
+	return view(from, inclusive, null, false, true, false);
+    }
+
+    public SortedMap<K,V> subMap(K from, K to) {
+	return subMap(from, true, to, false);
+    }
+
+    public SortedMap<K,V> headMap(K to) {
+	return headMap(to, false);
+    }
+
+    public SortedMap<K,V> tailMap(K from) {
+	return tailMap(from, true);
+    }
+
+    /**
+     * Constructs a view sharing the tree, with this view's bounds replaced
+     * by the (increasing order) bounds given; setLo and setHi say which of
+     * the given bounds apply. As in TreeMap, a bound must lie within this
+     * view: an inclusive bound must be a key of its range, and an
+     * exclusive one may also be one of its own exclusive bounds.
+     * @throws NullPointerException if an applied bound is null
+     * @throws IllegalArgumentException if the bounds are out of order or
+     * outside this view
+     */
+    private LLRBMap<K,V> view(K newLo, boolean newLoInclusive, K newHi, boolean newHiInclusive,
+			      boolean setLo, boolean setHi) {
+	if ((setLo && newLo == null) || (setHi && newHi == null)) throw new NullPointerException();
+	if (setLo && setHi && newLo.compareTo(newHi) > 0) throw new IllegalArgumentException("fromKey > toKey");
+	if (setLo && !(newLoInclusive ? inRange(newLo) : inClosedRange(newLo))) {
+	    throw new IllegalArgumentException("Lower bound out of range.");
+	}
+	if (setHi && !(newHiInclusive ? inRange(newHi) : inClosedRange(newHi))) {
+	    throw new IllegalArgumentException("Upper bound out of range.");
+	}
+	K l = lo, h = hi;
+	boolean li = loInclusive, hiInc = hiInclusive;
+	if (setLo) {
+	    l = newLo;
+	    li = newLoInclusive;
+	}
+	if (setHi) {
+	    h = newHi;
+	    hiInc = newHiInclusive;
+	}
+	return new LLRBMap<K,V>(data, l, li, h, hiInc, descending);
+    }
+
+    public NavigableMap<K,V> descendingMap() {
+	return new LLRBMap<K,V>(data, lo, loInclusive, hi, hiInclusive, !descending);
+    }
+
+    public NavigableSet<K> navigableKeySet() {
+	return new KeySet<K>(this);
+    }
+
+    public NavigableSet<K> keySet() {
+	return navigableKeySet();
+    }
+
+    public NavigableSet<K> descendingKeySet() {
+	return descendingMap().navigableKeySet();
+    }
+
+    public java.util.Set<java.util.Map.Entry<K,V>> entrySet() {
+	return new java.util.AbstractSet<java.util.Map.Entry<K,V>>() {
+	    public Iterator<java.util.Map.Entry<K,V>> iterator() {
+		return new EntryIterator();
+	    }
+
+	    public int size() {
+		return LLRBMap.this.size();
+	    }
+	};
+    }
+
+    /**
+     * Iterates over the entries of this view in its order, holding the
+     * path to the next entry on a stack, as LLRB's iterator does, so a
+     * full iteration costs O(n). The iterator is fail-fast: the map must
+     * not be modified while iterating except through remove(), which
+     * seeks past the removed key in O(log n). Entries write through to
+     * the map with setValue().
+     */
+    private class EntryIterator implements Iterator<java.util.Map.Entry<K,V>> {
+
+	/**
+	 * stack holds the nodes whose entries are still to come and whose
+	 * subtrees before them are done; the next entry is on top
+	 */
+	private ArrayList<LLRB<ComparableAssociation<K,V>>.Node> stack;
+	private ComparableAssociation<K,V> last = null;
+	private int iterVersion;
+
+	public EntryIterator() {
+	    stack = new ArrayList<LLRB<ComparableAssociation<K,V>>.Node>();
+	    iterVersion = data.version();
+	    if (descending) seek(hi, hi == null || hiInclusive);
+	    else seek(lo, lo == null || loInclusive);
+	}
+
+	/**
+	 * Seeds the stack with the path to the first entry, in the order of
+	 * this view, at or after key (after it only, if not inclusive); a
+	 * null key means the first entry of the tree
+	 */
+	private void seek(K key, boolean inclusive) {
+	    stack.clear();
+	    LLRB<ComparableAssociation<K,V>>.Node x = data.root();
+	    while (x != null) {
+		int cmp = (key == null) ? 0 : x.value().getKey().compareTo(key);
+		if (descending) cmp = -cmp;
+		if (key == null || cmp > 0 || (inclusive && cmp == 0)) {
+		    stack.add(x);
+		    x = descending ? x.right() : x.left();
+		}
+		else x = descending ? x.left() : x.right();
+	    }
+	}
+
+	/**
+	 * Pops the next node, pushing the nearest spine of its far subtree
+	 * @return the association of the popped node
+	 */
+	private ComparableAssociation<K,V> advance() {
+	    LLRB<ComparableAssociation<K,V>>.Node x = stack.remove(stack.size() - 1);
+	    for (LLRB<ComparableAssociation<K,V>>.Node y = descending ? x.left() : x.right(); y != null;
+		 y = descending ? y.right() : y.left()) {
+		stack.add(y);
+	    }
+	    return x.value();
+	}
+
+	public boolean hasNext() {
+	    if (stack.isEmpty()) return false;
+	    K key = stack.get(stack.size() - 1).value().getKey();
+	    return descending ? !tooLow(key) : !tooHigh(key);
+	}
+
+	public java.util.Map.Entry<K,V> next() {
+	    if (iterVersion != data.version()) throw new ConcurrentModificationException();
+	    if (!hasNext()) throw new NoSuchElementException();
+	    last = advance();
+	    final ComparableAssociation<K,V> e = last;
+	    return new SimpleEntry<K,V>(e.getKey(), e.getValue()) {
+		public V setValue(V value) {
+		    super.setValue(value);
+		    return e.setValue(value);
+		}
+	    };
+	}
+
+	public void remove() {
+	    if (last == null) throw new IllegalStateException();
+	    if (iterVersion != data.version()) throw new ConcurrentModificationException();
+	    data.remove(last);
+	    iterVersion = data.version();
+	    seek(last.getKey(), false);
+	    last = null;
+	}
+    }
+
+    /**
+     * A NavigableSet of the keys of an LLRBMap, backed by the map
+     */
+    private static class KeySet<K> extends java.util.AbstractSet<K> implements NavigableSet<K> {
+	private NavigableMap<K,?> map;
+
+	KeySet(NavigableMap<K,?> map) {
+	    this.map = map;
+	}
+
+	public Iterator<K> iterator() {
+	    final Iterator<? extends java.util.Map.Entry<K,?>> i = map.entrySet().iterator();
+	    return new Iterator<K>() {
+		public boolean hasNext() { return i.hasNext(); }
+		public K next() { return i.next().getKey(); }
+		public void remove() { i.remove(); }
+	    };
+	}
+
+	public Iterator<K> descendingIterator() {
+	    return descendingSet().iterator();
+	}
+
+	public int size() { return map.size(); }
+	public boolean isEmpty() { return map.isEmpty(); }
+	public boolean contains(Object o) { return map.containsKey(o); }
+	public void clear() { map.clear(); }
+
+	public boolean remove(Object o) {
+	    if (!map.containsKey(o)) return false;
+	    map.remove(o);
+	    return true;
+	}
+
+	public Comparator<? super K> comparator() { return map.comparator(); }
+	public K first() { return map.firstKey(); }
+	public K last() { return map.lastKey(); }
+	public K lower(K k) { return map.lowerKey(k); }
+	public K floor(K k) { return map.floorKey(k); }
+	public K ceiling(K k) { return map.ceilingKey(k); }
+	public K higher(K k) { return map.higherKey(k); }
+
+	public K pollFirst() {
+	    java.util.Map.Entry<K,?> e = map.pollFirstEntry();
+	    return (e == null) ? null : e.getKey();
+	}
+
+	public K pollLast() {
+	    java.util.Map.Entry<K,?> e = map.pollLastEntry();
+	    return (e == null) ? null : e.getKey();
+	}
+
+	public NavigableSet<K> descendingSet() {
+	    return new KeySet<K>(map.descendingMap());
+	}
+
+	public NavigableSet<K> subSet(K from, boolean fromInclusive, K to, boolean toInclusive) {
+	    return new KeySet<K>(map.subMap(from, fromInclusive, to, toInclusive));
+	}
+
+	public NavigableSet<K> headSet(K to, boolean inclusive) {
+	    return new KeySet<K>(map.headMap(to, inclusive));
+	}
+
+	public NavigableSet<K> tailSet(K from, boolean inclusive) {
+	    return new KeySet<K>(map.tailMap(from, inclusive));
+	}
+
+	public SortedSet<K> subSet(K from, K to) { return subSet(from, true, to, false); }
+	public SortedSet<K> headSet(K to) { return headSet(to, false); }
+	public SortedSet<K> tailSet(K from) { return tailSet(from, true); }
+    }
+
+    /**
+     * Returns this map as a structure5 OrderedMap, backed by the same tree
+     * @return an OrderedMap view of this map
+     */
+    public OrderedMap<K,V> asOrderedMap() {
+	return new OrderedView();
+    }
+
+    /**
+     * The OrderedMap view. As in Table, keySet(), values() and entrySet()
+     * return new structures holding the current contents.
+     */
+    private class OrderedView extends structure5.AbstractMap<K,V> implements OrderedMap<K,V> {
+
+	public int size() { return LLRBMap.this.size(); }
+	public boolean isEmpty() { return LLRBMap.this.isEmpty(); }
+	public boolean containsKey(K key) { return LLRBMap.this.containsKey(key); }
+	public boolean containsValue(V value) { return LLRBMap.this.containsValue(value); }
+	public V get(K key) { return LLRBMap.this.get(key); }
+	public V put(K key, V value) { return LLRBMap.this.put(key, value); }
+	public V remove(K key) { return LLRBMap.this.remove(key); }
+	public void clear() { LLRBMap.this.clear(); }
+
+	public structure5.Set<K> keySet() {
+	    structure5.Set<K> result = new SetList<K>();
+	    for (K key : LLRBMap.this.keySet()) result.add(key);
+	    return result;
+	}
+
+	public Structure<V> values() {
+	    structure5.List<V> result = new SinglyLinkedList<V>();
+	    for (V value : LLRBMap.this.values()) result.addLast(value);
+	    return result;
+	}
+
+	public structure5.Set<Association<K,V>> entrySet() {
+	    structure5.Set<Association<K,V>> result = new SetList<Association<K,V>>();
+	    for (java.util.Map.Entry<K,V> e : LLRBMap.this.entrySet()) {
+		result.add(new Association<K,V>(e.getKey(), e.getValue()));
+	    }
+	    return result;
+	}
+
+	public String toString() {
+	    return LLRBMap.this.toString();
+	}
+    }
+}
@@ -0,0 +1,209 @@
+//A program to test LLRBMap against java.util.TreeMap
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Compares LLRBMap against java.util.TreeMap on random puts and removes,
+ * then through chains of random head, tail, sub and descending views
+ * taken of both. At each step the entries, both directions of
+ * iteration, every lookup and navigation method, puts through the view,
+ * polls, and removal and setValue through the entry iterator must agree,
+ * as must the exceptions thrown for views out of bounds. The OrderedMap
+ * view is compared last.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class LLRBMapTest {
+
+    static Random random = new Random(2014);
+
+    /**
+     * A view to take of both maps
+     */
+    static abstract class View {
+	abstract NavigableMap<Integer,Integer> of(NavigableMap<Integer,Integer> map);
+    }
+
+    public static void main(String args[]) {
+	for (int round = 0; round < 3000; round++) {
+	    int range = 1 + random.nextInt(60);
+	    LLRBMap<Integer,Integer> map = new LLRBMap<Integer,Integer>();
+	    TreeMap<Integer,Integer> expected = new TreeMap<Integer,Integer>();
+	    for (int i = random.nextInt(100); i > 0; i--) {
+		int key = random.nextInt(range);
+		int value = random.nextInt();
+		if (random.nextInt(4) > 0) Assert.condition(same(map.put(key, value), expected.put(key, value)), "put disagrees.");
+		else Assert.condition(same(map.remove(key), expected.remove(key)), "remove disagrees.");
+	    }
+	    NavigableMap<Integer,Integer> a = map;
+	    NavigableMap<Integer,Integer> b = expected;
+	    for (int depth = 0; depth < 3; depth++) {
+		check(a, b, range, "view " + depth);
+		if (random.nextInt(3) == 0) change(a, b, range, "view " + depth);
+		check(map, expected, range, "map after changing view " + depth);
+		View view = view(range);
+		a = take(view, a);
+		NavigableMap<Integer,Integer> c = take(view, b);
+		Assert.condition((a == null) == (c == null), "views disagree on their bounds.");
+		if (a == null) break;
+		b = c;
+	    }
+	    if (!map.isEmpty()) {
+		Iterator<Integer> keys = map.keySet().iterator();
+		keys.next();
+		map.put(range + 100, 0);
+		boolean failed = false;
+		try {
+		    keys.next();
+		} catch (ConcurrentModificationException e) {
+		    failed = true;
+		}
+		Assert.condition(failed, "iterators must be fail-fast.");
+	    }
+	    if (round % 10 == 0) ordered(map.asOrderedMap(), new TreeMap<Integer,Integer>(map));
+	}
+	System.out.println("LLRBMap agrees with TreeMap");
+    }
+
+    private static boolean same(Object a, Object b) {
+	return (a == null) ? b == null : a.equals(b);
+    }
+
+    /**
+     * @return a random view: bounded on either side or both, with random
+     * inclusivity, or reversed
+     */
+    private static View view(int range) {
+	final int from = random.nextInt(range + 4) - 2;
+	final int to = random.nextInt(range + 4) - 2;
+	final boolean fromInclusive = random.nextBoolean();
+	final boolean toInclusive = random.nextBoolean();
+	switch (random.nextInt(5)) {
+	case 0:
+	    return new View() {
+		NavigableMap<Integer,Integer> of(NavigableMap<Integer,Integer> map) {
+		    return map.subMap(from, fromInclusive, to, toInclusive);
+		}
+	    };
+	case 1:
+	    return new View() {
+		NavigableMap<Integer,Integer> of(NavigableMap<Integer,Integer> map) {
+		    return map.headMap(to, toInclusive);
+		}
+	    };
+	case 2:
+	    return new View() {
+		NavigableMap<Integer,Integer> of(NavigableMap<Integer,Integer> map) {
+		    return map.tailMap(from, fromInclusive);
+		}
+	    };
+	case 3:
+	    return new View() {
+		NavigableMap<Integer,Integer> of(NavigableMap<Integer,Integer> map) {
+		    return map.descendingMap();
+		}
+	    };
+	default:
+	    return new View() {
+		NavigableMap<Integer,Integer> of(NavigableMap<Integer,Integer> map) {
+		    return (NavigableMap<Integer,Integer>)map.subMap(from, to);
+		}
+	    };
+	}
+    }
+
+    /**
+     * @return the view of map, or null if its bounds are refused
+     */
+    private static NavigableMap<Integer,Integer> take(View view, NavigableMap<Integer,Integer> map) {
+	try {
+	    return view.of(map);
+	} catch (IllegalArgumentException e) {
+	    return null;
+	}
+    }
+
+    /**
+     * Checks that a agrees with b in its entries, both directions and
+     * every lookup and navigation over the keys near range
+     */
+    private static void check(NavigableMap<Integer,Integer> a, NavigableMap<Integer,Integer> b, int range, String what) {
+	Assert.condition(a.size() == b.size() && a.isEmpty() == b.isEmpty(), what + ": sizes disagree.");
+	Assert.condition(new ArrayList<Object>(a.entrySet()).equals(new ArrayList<Object>(b.entrySet())), what + ": entries disagree.");
+	Assert.condition(new ArrayList<Integer>(a.descendingKeySet()).equals(new ArrayList<Integer>(b.descendingKeySet())), what + ": descending keys disagree.");
+	Assert.condition(a.equals(b) && b.equals(a) && a.hashCode() == b.hashCode(), what + ": maps are not equal.");
+	Assert.condition(same(a.firstEntry(), b.firstEntry()) && same(a.lastEntry(), b.lastEntry()), what + ": first or last disagrees.");
+	for (int key = -2; key <= range + 1; key++) {
+	    Assert.condition(a.containsKey(key) == b.containsKey(key) && same(a.get(key), b.get(key)), what + ": get(" + key + ") disagrees.");
+	    Assert.condition(same(a.lowerEntry(key), b.lowerEntry(key)), what + ": lowerEntry(" + key + ") disagrees.");
+	    Assert.condition(same(a.floorEntry(key), b.floorEntry(key)), what + ": floorEntry(" + key + ") disagrees.");
+	    Assert.condition(same(a.ceilingKey(key), b.ceilingKey(key)), what + ": ceilingKey(" + key + ") disagrees.");
+	    Assert.condition(same(a.higherKey(key), b.higherKey(key)), what + ": higherKey(" + key + ") disagrees.");
+	}
+    }
+
+    /**
+     * Changes both maps through their views: puts of keys in or out of
+     * bounds, a poll, and removals and setValue through the iterator
+     */
+    private static void change(NavigableMap<Integer,Integer> a, NavigableMap<Integer,Integer> b, int range, String what) {
+	for (int i = 0; i < 5; i++) {
+	    int key = random.nextInt(range + 4) - 2;
+	    int value = random.nextInt();
+	    String refusedA = null, refusedB = null;
+	    try {
+		a.put(key, value);
+	    } catch (IllegalArgumentException e) {
+		refusedA = "refused";
+	    }
+	    try {
+		b.put(key, value);
+	    } catch (IllegalArgumentException e) {
+		refusedB = "refused";
+	    }
+	    Assert.condition(same(refusedA, refusedB), what + ": put(" + key + ") disagrees on the bounds.");
+	}
+	if (random.nextBoolean()) Assert.condition(same(a.pollFirstEntry(), b.pollFirstEntry()), what + ": pollFirstEntry disagrees.");
+	else Assert.condition(same(a.pollLastEntry(), b.pollLastEntry()), what + ": pollLastEntry disagrees.");
+	Iterator<java.util.Map.Entry<Integer,Integer>> i = a.entrySet().iterator();
+	Iterator<java.util.Map.Entry<Integer,Integer>> j = b.entrySet().iterator();
+	while (i.hasNext()) {
+	    java.util.Map.Entry<Integer,Integer> x = i.next();
+	    java.util.Map.Entry<Integer,Integer> y = j.next();
+	    Assert.condition(x.equals(y), what + ": iteration disagrees.");
+	    int choice = random.nextInt(6);
+	    if (choice < 2) {
+		i.remove();
+		j.remove();
+	    }
+	    else if (choice == 2) {
+		int value = random.nextInt();
+		Assert.condition(same(x.setValue(value), y.setValue(value)), what + ": setValue disagrees.");
+	    }
+	}
+	Assert.condition(!j.hasNext(), what + ": iteration stopped early.");
+	check(a, b, range, what + " after changes");
+    }
+
+    /**
+     * Checks the OrderedMap view of a map against a copy of its entries
+     */
+    private static void ordered(OrderedMap<Integer,Integer> view, TreeMap<Integer,Integer> expected) {
+	Assert.condition(view.size() == expected.size(), "OrderedMap sizes disagree.");
+	for (java.util.Map.Entry<Integer,Integer> e : expected.entrySet()) {
+	    Assert.condition(view.containsKey(e.getKey()) && same(view.get(e.getKey()), e.getValue()), "OrderedMap get disagrees.");
+	}
+	int i = 0;
+	for (Integer key : view.keySet()) {
+	    Assert.condition(expected.containsKey(key), "OrderedMap keySet disagrees.");
+	    i++;
+	}
+	Assert.condition(i == expected.size(), "OrderedMap keySet is the wrong size.");
+	Assert.condition(same(view.put(-5, 1), expected.put(-5, 1)), "OrderedMap put disagrees.");
+	Assert.condition(same(view.remove(-5), expected.remove(-5)), "OrderedMap remove disagrees.");
+	Assert.condition(view.size() == expected.size(), "OrderedMap sizes disagree after changes.");
+    }
+}
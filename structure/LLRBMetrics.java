@@ -0,0 +1,171 @@
+//Operation counters for LLRB.
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+
+/**
+ * This class counts the work LLRB does inside each add, remove and
+ * contains, and each batch: an addAll or removeAll, or a set operation
+ * whose result counts. It counts calls of rotateLeft, rotateRight,
+ * colorFlip, moveRedLeft, moveRedRight and fixUp, and comparisons of
+ * values. A tree constructed with counting on tallies these per
+ * operation; when the operation ends the tallies are added to
+ * per-operation totals and histograms, so both the mean and the spread
+ * of, say, rotations per remove can be read.
+ * <P>
+ * A tree's metrics are read through LLRB.metrics(), which returns a
+ * snapshot: a copy, unaffected by later operations.
+ *
+ * @author, 2014 tony liu, michael shaw
+ * @see LLRB
+ */
+
+public class LLRBMetrics {
+
+    /**
+     * Counters
+     */
+    public static final int ROTATE_LEFT = 0;
+    public static final int ROTATE_RIGHT = 1;
+    public static final int COLOR_FLIP = 2;
+    public static final int MOVE_RED_LEFT = 3;
+    public static final int MOVE_RED_RIGHT = 4;
+    public static final int FIX_UP = 5;
+    public static final int COMPARE = 6;
+    public static final int COUNTERS = 7;
+
+    public static final String[] COUNTER_NAMES = {
+	"rotateLeft", "rotateRight", "colorFlip", "moveRedLeft", "moveRedRight", "fixUp", "compare"
+    };
+
+    /**
+     * Operations
+     */
+    public static final int ADD = 0;
+    public static final int REMOVE = 1;
+    public static final int CONTAINS = 2;
+    public static final int BATCH = 3;
+    public static final int OPERATIONS = 4;
+
+    public static final String[] OPERATION_NAMES = {
+	"add", "remove", "contains", "batch"
+    };
+
+    /**
+     * Histogram buckets; the last also holds every larger count
+     */
+    public static final int BUCKETS = 64;
+
+    /**
+     * Tallies of the operation in progress
+     */
+    private long[] current;
+
+    private long[] operations;
+    private long[][] totals;
+    private long[][][] histograms;
+
+    public LLRBMetrics() {
+	current = new long[COUNTERS];
+	reset();
+    }
+
+    /**
+     * Clears all totals and histograms
+     */
+    public void reset() {
+	Arrays.fill(current, 0);
+	operations = new long[OPERATIONS];
+	totals = new long[OPERATIONS][COUNTERS];
+	histograms = new long[OPERATIONS][COUNTERS][BUCKETS];
+    }
+
+    /**
+     * Starts an operation, discarding work counted outside one
+     */
+    protected void begin() {
+	Arrays.fill(current, 0);
+    }
+
+    protected void count(int counter) {
+	current[counter]++;
+    }
+
+    /**
+     * Adds the tallies of other's operation in progress to this one's,
+     * for work done on this one's behalf in another thread
+     * @pre other is no longer counting
+     */
+    protected void add(LLRBMetrics other) {
+	for (int c = 0; c < COUNTERS; c++) current[c] += other.current[c];
+    }
+
+    /**
+     * Ends an operation of kind op, recording its tallies
+     */
+    protected void end(int op) {
+	operations[op]++;
+	for (int c = 0; c < COUNTERS; c++) {
+	    totals[op][c] += current[c];
+	    histograms[op][c][(int)Math.min(current[c], BUCKETS - 1)]++;
+	    current[c] = 0;
+	}
+    }
+
+    /**
+     * @return a copy of these metrics
+     */
+    public LLRBMetrics snapshot() {
+	LLRBMetrics copy = new LLRBMetrics();
+	copy.operations = operations.clone();
+	for (int op = 0; op < OPERATIONS; op++) {
+	    copy.totals[op] = totals[op].clone();
+	    for (int c = 0; c < COUNTERS; c++) copy.histograms[op][c] = histograms[op][c].clone();
+	}
+	return copy;
+    }
+
+    /**
+     * @return the number of operations of kind op recorded
+     */
+    public long operations(int op) {
+	return operations[op];
+    }
+
+    /**
+     * @return the total of counter over all operations of kind op
+     */
+    public long total(int op, int counter) {
+	return totals[op][counter];
+    }
+
+    /**
+     * @return the mean of counter per operation of kind op, or 0
+     */
+    public double mean(int op, int counter) {
+	return (operations[op] == 0) ? 0 : (double)totals[op][counter] / operations[op];
+    }
+
+    /**
+     * Returns the histogram of counter over operations of kind op:
+     * element i is the number of operations that counted i, the last
+     * element the number that counted BUCKETS-1 or more
+     * @return a copy of the histogram
+     */
+    public long[] histogram(int op, int counter) {
+	return histograms[op][counter].clone();
+    }
+
+    public String toString() {
+	StringBuilder sb = new StringBuilder("<LLRBMetrics:");
+	for (int op = 0; op < OPERATIONS; op++) {
+	    sb.append(" " + OPERATION_NAMES[op] + " " + operations[op] + " [");
+	    for (int c = 0; c < COUNTERS; c++) {
+		if (c > 0) sb.append(", ");
+		sb.append(COUNTER_NAMES[c] + " " + String.format("%.2f", mean(op, c)));
+	    }
+	    sb.append("]");
+	}
+	return sb.append(">").toString();
+    }
+}
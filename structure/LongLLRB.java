@@ -0,0 +1,318 @@
+//A left leaning red black tree specialized for long keys, based off LLRB.
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+
+/**
+ * This class implements a left leaning red-black tree whose keys are
+ * primitive longs. It follows LLRB exactly (the same rotateLeft, rotateRight,
+ * colorFlip, moveRedLeft and moveRedRight), but compares keys with
+ * primitive comparisons, so add, contains and remove never box a key
+ * or make a virtual compareTo call. Each key may optionally carry a value
+ * of type V; used as a set, the value is left null.
+ * Nodes are static, so they hold no reference to the enclosing tree.
+ * <P>
+ * IntLLRB and LongLLRB are deliberately the same code with the key type
+ * changed: Java generics range over reference types only, so a single
+ * class generic in its key would box every key, which is what these
+ * classes exist to avoid. A fix to one must be made to the other.
+ *
+ * @author, 2014 tony liu, michael shaw
+ * @see LLRB
+ * @see IntLLRB
+ */
+
+public class LongLLRB<V> {
+
+    /**
+     * Color is stored in the child node
+     */
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+
+    private Node<V> root;
+    private int size;
+
+    /**
+     * Internal Node class used to hold a key and its value
+     */
+    protected static class Node<V> {
+	private boolean color;
+	private Node<V> left;
+	private Node<V> right;
+	private long key;
+	private V value;
+
+	/**
+	 * Constructs a single red node with no children
+	 */
+	protected Node(long key, V value) {
+	    this.color = RED;
+	    this.key = key;
+	    this.value = value;
+	}
+    }
+
+    //default constructor
+    public LongLLRB() {
+	root = null;
+	size = 0;
+    }
+
+    protected boolean isRed(Node<V> x) {
+	return x != null && x.color == RED;
+    }
+
+    public boolean isEmpty() {
+	return root == null;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    /**
+     * Clears the entire tree
+     * @post The tree is empty
+     */
+    public void clear() {
+	root = null;
+	size = 0;
+    }
+
+    /**
+     * Performs a search on whether the tree contains key
+     * @return whether key is present within the tree
+     */
+    public boolean contains(long key) {
+	Node<V> x = root;
+	while (x != null) {
+	    if (key == x.key) return true;
+	    else if (key < x.key) x = x.left;
+	    else x = x.right;
+	}
+	return false;
+    }
+
+    /**
+     * Returns the value associated with key
+     * @return the value associated with key, null if absent or unset
+     */
+    public V get(long key) {
+	Node<V> x = root;
+	while (x != null) {
+	    if (key == x.key) return x.value;
+	    else if (key < x.key) x = x.left;
+	    else x = x.right;
+	}
+	return null;
+    }
+
+    /**
+     * Adds key into the tree, with no value, if it is not present; the
+     * value of a key already present is kept
+     * @post key is in the tree
+     */
+    public void add(long key) {
+	root = addRecursive(root, key, null, false);
+	root.color = BLACK;
+    }
+
+    /**
+     * Associates value with key, adding key if it is not present
+     * @post key is in the tree and maps to value
+     */
+    public void put(long key, V value) {
+	root = addRecursive(root, key, value, true);
+	root.color = BLACK;
+    }
+
+    /**
+     * Adds key below h; if key is present, its value is set to value
+     * only if replace is true
+     */
+    private Node<V> addRecursive(Node<V> h, long key, V value, boolean replace) {
+	if (h == null) {
+	    size++;
+	    return new Node<V>(key, value);
+	}
+	if (key < h.key) h.left = addRecursive(h.left, key, value, replace);
+	else if (key > h.key) h.right = addRecursive(h.right, key, value, replace);
+	else if (replace) h.value = value;
+
+	return fixUp(h);
+    }
+
+    /**
+     * Removes key from the tree.
+     * @return true if key was present
+     * @post key is not in the tree
+     */
+    public boolean remove(long key) {
+	if (!contains(key)) return false;
+	root = removeRecursive(root, key);
+	if (root != null) root.color = BLACK;
+	return true;
+    }
+
+    /**
+     * Recursive helper function for remove(); see LLRB.removeRecursive
+     */
+    private Node<V> removeRecursive(Node<V> h, long key) {
+	if (key < h.key) {
+	    if (!isRed(h.left) && !isRed(h.left.left)) h = moveRedLeft(h);
+	    h.left = removeRecursive(h.left, key);
+	}
+	else {
+	    if (isRed(h.left)) h = rotateRight(h);
+	    if (key == h.key && h.right == null) {
+		size--;
+		return null;
+	    }
+	    if (!isRed(h.right) && !isRed(h.right.left)) h = moveRedRight(h);
+	    if (key == h.key) {
+		Node<V> m = min(h.right);
+		h.key = m.key;
+		h.value = m.value;
+		h.right = removeMinRecursive(h.right);
+	    }
+	    else h.right = removeRecursive(h.right, key);
+	}
+	return fixUp(h);
+    }
+
+    private Node<V> removeMinRecursive(Node<V> h) {
+	if (h.left == null) {
+	    size--;
+	    return null;
+	}
+	if (!isRed(h.left) && !isRed(h.left.left)) h = moveRedLeft(h);
+	h.left = removeMinRecursive(h.left);
+	return fixUp(h);
+    }
+
+    protected void colorFlip(Node<V> h) {
+	h.color = !h.color;
+	h.left.color = !h.left.color;
+	h.right.color = !h.right.color;
+    }
+
+    protected Node<V> rotateLeft(Node<V> h) {
+	Node<V> x = h.right;
+	h.right = x.left;
+	x.left = h;
+	x.color = h.color;
+	h.color = RED;
+	return x;
+    }
+
+    protected Node<V> rotateRight(Node<V> h) {
+	Node<V> x = h.left;
+	h.left = x.right;
+	x.right = h;
+	x.color = h.color;
+	h.color = RED;
+	return x;
+    }
+
+    protected Node<V> moveRedLeft(Node<V> h) {
+	colorFlip(h);
+	if (isRed(h.right.left)) {
+	    h.right = rotateRight(h.right);
+	    h = rotateLeft(h);
+	    colorFlip(h);
+	}
+	return h;
+    }
+
+    protected Node<V> moveRedRight(Node<V> h) {
+	colorFlip(h);
+	if (isRed(h.left.left)) {
+	    h = rotateRight(h);
+	    colorFlip(h);
+	}
+	return h;
+    }
+
+    private Node<V> fixUp(Node<V> h) {
+	if (isRed(h.right) && !isRed(h.left)) h = rotateLeft(h);
+	if (isRed(h.left) && isRed(h.left.left)) h = rotateRight(h);
+	if (isRed(h.left) && isRed(h.right)) colorFlip(h);
+	return h;
+    }
+
+    private Node<V> min(Node<V> h) {
+	while (h.left != null) h = h.left;
+	return h;
+    }
+
+    /**
+     * Returns the keys of the tree in ascending order
+     * @return a new array of size() keys, in order
+     */
+    public long[] keys() {
+	long[] result = new long[size];
+	keysRecursive(root, result, 0);
+	return result;
+    }
+
+    private int keysRecursive(Node<V> h, long[] result, int i) {
+	if (h == null) return i;
+	i = keysRecursive(h.left, result, i);
+	result[i++] = h.key;
+	return keysRecursive(h.right, result, i);
+    }
+
+    /**
+     * Returns the height of the tree
+     * @return height of the tree, -1 if empty
+     */
+    public int height() {
+	return heightRecursive(root);
+    }
+
+    protected int heightRecursive(Node<V> h) {
+	if (h == null) return -1;
+	return 1 + Math.max(heightRecursive(h.left), heightRecursive(h.right));
+    }
+
+    /**
+     * Checks the invariants of the tree, for testing: a black root, no
+     * red right link, no red node with a red child, the same number of
+     * black nodes on every path, keys in strictly ascending order, and a
+     * size that matches the nodes.
+     * @return true if the tree is a valid left-leaning red-black tree
+     */
+    public boolean consistency() {
+	if (isRed(root) || blackConsistency(root) < 0) return false;
+	if (count(root) != size) return false;
+	long[] keys = keys();
+	for (int i = 1; i < keys.length; i++) {
+	    if (keys[i - 1] >= keys[i]) return false;
+	}
+	return true;
+    }
+
+    /**
+     * Recursive helper for consistency()
+     * @return the number of black nodes on every path below h, or -1 if
+     * the paths differ or a red link is misplaced
+     */
+    private int blackConsistency(Node<V> h) {
+	if (h == null) return 0;
+	if (isRed(h.right)) return -1;
+	if (isRed(h) && isRed(h.left)) return -1;
+	int left = blackConsistency(h.left);
+	if (left < 0 || left != blackConsistency(h.right)) return -1;
+	return isRed(h) ? left : left + 1;
+    }
+
+    private int count(Node<V> h) {
+	if (h == null) return 0;
+	return 1 + count(h.left) + count(h.right);
+    }
+
+    public String toString() {
+	return Arrays.toString(keys());
+    }
+}
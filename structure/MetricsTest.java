@@ -0,0 +1,161 @@
+//A program to test LLRBMetrics
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Runs the same random adds, removes and lookups, then batches of addAll
+ * and removeAll, through a counting LLRB, a plain one and a
+ * java.util.TreeSet, for each engine. Counting must not
+ * change what the tree does: both trees must agree with the TreeSet and
+ * have the same shape. The metrics must count every operation once,
+ * each histogram must add up to its operations and match its total, and
+ * lookups must never restructure the tree. A batch is one operation,
+ * and must count the work of its fork/join tasks. Trees split from or
+ * combined with a counting tree must count too. Snapshots must not change
+ * afterwards, and resetMetrics() must clear them.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class MetricsTest {
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	int[] engines = {LLRB.RECURSIVE, LLRB.ITERATIVE, LLRB.TOP_DOWN};
+	for (int engine : engines) {
+	    LLRB<Integer> counting = new LLRB<Integer>(engine, true);
+	    LLRB<Integer> plain = new LLRB<Integer>(engine, false);
+	    TreeSet<Integer> expected = new TreeSet<Integer>();
+	    Assert.condition(plain.metrics() == null, "a tree that does not count has no metrics.");
+	    long[] calls = new long[LLRBMetrics.OPERATIONS];
+	    LLRBMetrics early = null;
+	    long[] earlyCalls = null;
+	    for (int i = 0; i < 50000; i++) {
+		int key = random.nextInt(5000);
+		int op = random.nextInt(3);
+		if (op == 0) {
+		    counting.add(key);
+		    plain.add(key);
+		    expected.add(key);
+		    calls[LLRBMetrics.ADD]++;
+		}
+		else if (op == 1) {
+		    Integer removed = counting.remove(key);
+		    plain.remove(key);
+		    Assert.condition((removed != null) == expected.remove(key), "remove(" + key + ") disagrees.");
+		    calls[LLRBMetrics.REMOVE]++;
+		}
+		else {
+		    Assert.condition(counting.contains(key) == expected.contains(key), "contains(" + key + ") disagrees.");
+		    calls[LLRBMetrics.CONTAINS]++;
+		}
+		if (i == 10000) {
+		    early = counting.metrics();
+		    earlyCalls = calls.clone();
+		}
+	    }
+
+	    //batches large enough to rebuild the tree, and small ones merged
+	    //in by fork/join tasks
+	    for (int i = 0; i < 40; i++) {
+		Integer[] batch = new Integer[(i % 4 == 0) ? 60000 : random.nextInt(2000)];
+		for (int j = 0; j < batch.length; j++) batch[j] = random.nextInt(200000);
+		if (random.nextInt(3) > 0) {
+		    counting.addAll(batch);
+		    plain.addAll(batch);
+		    expected.addAll(Arrays.asList(batch));
+		}
+		else {
+		    counting.removeAll(batch);
+		    plain.removeAll(batch);
+		    expected.removeAll(Arrays.asList(batch));
+		}
+		calls[LLRBMetrics.BATCH]++;
+	    }
+	    LLRBMetrics before = counting.metrics();
+	    Integer[] small = new Integer[100];
+	    for (int j = 0; j < small.length; j++) small[j] = -1 - j;
+	    counting.addAll(small);
+	    plain.addAll(small);
+	    expected.addAll(Arrays.asList(small));
+	    calls[LLRBMetrics.BATCH]++;
+	    LLRBMetrics after = counting.metrics();
+	    Assert.condition(after.total(LLRBMetrics.BATCH, LLRBMetrics.COMPARE) > before.total(LLRBMetrics.BATCH, LLRBMetrics.COMPARE)
+			     && after.total(LLRBMetrics.BATCH, LLRBMetrics.FIX_UP) > before.total(LLRBMetrics.BATCH, LLRBMetrics.FIX_UP),
+			     "a small batch must count the work of its tasks.");
+	    Assert.condition(counting.consistency(), "the counting tree is not a valid LLRB.");
+	    StructureTest.check(counting, expected, "counting tree");
+	    Assert.condition(counting.toString().equals(plain.toString()), "counting changed the shape of the tree.");
+
+	    check(counting.metrics(), calls, "engine " + engine);
+	    check(early, earlyCalls, "early snapshot of engine " + engine);
+
+	    counting.resetMetrics();
+	    LLRBMetrics cleared = counting.metrics();
+	    for (int op = 0; op < LLRBMetrics.OPERATIONS; op++) {
+		Assert.condition(cleared.operations(op) == 0, "resetMetrics() must clear the operations.");
+		for (int c = 0; c < LLRBMetrics.COUNTERS; c++) {
+		    Assert.condition(cleared.total(op, c) == 0, "resetMetrics() must clear the totals.");
+		}
+	    }
+	}
+	pieces(random);
+	System.out.println("LLRBMetrics agree with the operations performed");
+    }
+
+    /**
+     * The trees made by split, splitAt, join, concat and the set
+     * operations must count if the trees they come from do
+     */
+    private static void pieces(Random random) {
+	LLRB<Integer> counting = new LLRB<Integer>(LLRB.RECURSIVE, true);
+	for (int i = 0; i < 20000; i++) counting.add(random.nextInt(100000));
+	LLRB<Integer> upper = counting.split(50000);
+	Assert.condition(counting.metrics() != null && upper.metrics() != null, "split pieces must count.");
+	LLRB<Integer>[] halves = upper.splitAt(75000);
+	Assert.condition(halves[0].metrics() != null && halves[1].metrics() != null, "splitAt pieces must count.");
+	LLRB<Integer> joined = LLRB.concat(counting, LLRB.join(halves[0], 75000, halves[1]));
+	Assert.condition(joined.metrics() != null, "joined trees must count.");
+
+	LLRB<Integer> plain = new LLRB<Integer>();
+	for (int i = 0; i < 20000; i++) plain.add(random.nextInt(100000));
+	LLRB<Integer> union = LLRB.union(plain, joined);
+	LLRBMetrics metrics = union.metrics();
+	Assert.condition(metrics != null && metrics.operations(LLRBMetrics.BATCH) == 1, "a union must count as one batch.");
+	Assert.condition(metrics.total(LLRBMetrics.BATCH, LLRBMetrics.COMPARE) > 0, "a union must count its comparisons.");
+	Assert.condition(union.consistency(), "the union is not a valid LLRB.");
+	union.add(-1);
+	Assert.condition(union.metrics().operations(LLRBMetrics.ADD) == 1, "the union must count its own adds.");
+    }
+
+    /**
+     * Checks metrics against the number of calls of each operation
+     */
+    private static void check(LLRBMetrics metrics, long[] calls, String what) {
+	for (int op = 0; op < LLRBMetrics.OPERATIONS; op++) {
+	    String name = what + ", " + LLRBMetrics.OPERATION_NAMES[op];
+	    Assert.condition(metrics.operations(op) == calls[op], name + ": " + metrics.operations(op) + " operations, expected " + calls[op]);
+	    for (int c = 0; c < LLRBMetrics.COUNTERS; c++) {
+		long[] histogram = metrics.histogram(op, c);
+		long operations = 0, sum = 0;
+		for (int i = 0; i < histogram.length; i++) {
+		    operations += histogram[i];
+		    sum += i * histogram[i];
+		}
+		String counter = name + " " + LLRBMetrics.COUNTER_NAMES[c];
+		Assert.condition(operations == calls[op], counter + ": the histogram does not add up.");
+		//the last bucket holds every larger count
+		if (histogram[histogram.length - 1] == 0) Assert.condition(sum == metrics.total(op, c), counter + ": the histogram does not match the total.");
+		else Assert.condition(sum <= metrics.total(op, c), counter + ": the histogram exceeds the total.");
+	    }
+	}
+	Assert.condition(metrics.total(LLRBMetrics.ADD, LLRBMetrics.COMPARE) > 0, what + ": adds must compare.");
+	Assert.condition(metrics.total(LLRBMetrics.CONTAINS, LLRBMetrics.COMPARE) >= calls[LLRBMetrics.CONTAINS], what + ": every lookup compares.");
+	if (calls[LLRBMetrics.BATCH] > 0) Assert.condition(metrics.total(LLRBMetrics.BATCH, LLRBMetrics.COMPARE) > 0, what + ": batches must compare.");
+	for (int c = 0; c < LLRBMetrics.COUNTERS; c++) {
+	    if (c != LLRBMetrics.COMPARE) Assert.condition(metrics.total(LLRBMetrics.CONTAINS, c) == 0, what + ": a lookup changed the tree.");
+	}
+    }
+}
@@ -0,0 +1,263 @@
+//A left leaning red black tree of long keys stored outside the Java heap.
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.lang.reflect.*;
+import java.nio.*;
+import java.util.*;
+import structure5.*;
+
+/**
+ * This class implements LLRB over an arena of direct (native) memory, so
+ * a large sorted set of fixed-width keys adds almost nothing to the Java
+ * heap. As in ArrayLLRB, a node is an int index, 0 meaning "no node",
+ * and the algorithms are those of PooledLLRB; only the storage differs.
+ * Each node is a fixed record of NODE_BYTES:
+ * <pre>
+ *   offset 0   the key (a long)
+ *   offset 8   index of the left child
+ *   offset 12  index of the right child
+ *   offset 16  color (1 is red)
+ * </pre>
+ * Records live in direct ByteBuffers of CHUNK_NODES nodes each, so the
+ * arena grows one chunk at a time without copying and is not limited to
+ * the 2GB of a single buffer. Freed records are reused via a free list.
+ * <P>
+ * The tree must be closed when no longer needed. close() frees the
+ * native memory of the arena at once, through the buffers' cleaners,
+ * rather than when the collector next finds the buffers unreachable.
+ * (On a JVM where neither sun.misc.Unsafe.invokeCleaner nor the Java 8
+ * cleaner can be reached, the memory is left to the collector.) Any use
+ * after close fails its precondition.
+ *
+ * @author, 2014 tony liu, michael shaw
+ * @see PooledLLRB
+ * @see ArrayLLRB
+ */
+
+public class OffHeapLLRB extends PooledLLRB<Long> implements AutoCloseable {
+
+    private static final int NODE_BYTES = 24;
+    private static final int KEY = 0;
+    private static final int LEFT = 8;
+    private static final int RIGHT = 12;
+    private static final int COLOR = 16;
+
+    /**
+     * log2 of the number of nodes in a chunk
+     */
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_NODES = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_NODES - 1;
+
+    private ByteBuffer[] chunks;
+    private int chunkCount;
+
+    /**
+     * The key being added, sought or removed
+     */
+    private long sought;
+
+    //default constructor
+    public OffHeapLLRB() {
+	super();
+	chunks = new ByteBuffer[4];
+	chunkCount = 0;
+    }
+
+    /**
+     * Frees the native arena. Closing a closed tree does nothing.
+     * @post the tree may no longer be used
+     */
+    public void close() {
+	if (isClosed()) return;
+	for (int i = 0; i < chunkCount; i++) {
+	    free(chunks[i]);
+	    chunks[i] = null;
+	}
+	chunks = null;
+	chunkCount = 0;
+	root = NIL;
+	size = 0;
+	version++;
+    }
+
+    /**
+     * Frees the native memory of a direct buffer, which must not be used
+     * again: with sun.misc.Unsafe.invokeCleaner on Java 9 and later, or
+     * the buffer's own cleaner on Java 8. Both are reached by reflection,
+     * so this compiles anywhere; if neither is found, the memory is left
+     * for the collector.
+     */
+    private static void free(ByteBuffer buffer) {
+	try {
+	    Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+	    Field field = unsafeClass.getDeclaredField("theUnsafe");
+	    field.setAccessible(true);
+	    Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+	    invokeCleaner.invoke(field.get(null), buffer);
+	    return;
+	} catch (Exception e) {
+	    //not Java 9 or later: try the Java 8 cleaner below
+	}
+	try {
+	    Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+	    cleanerMethod.setAccessible(true);
+	    Object cleaner = cleanerMethod.invoke(buffer);
+	    if (cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+	} catch (Exception e) {
+	    //no cleaner can be reached: the collector frees the buffer
+	}
+    }
+
+    /**
+     * @return true if close() has been called
+     */
+    public boolean isClosed() {
+	return chunks == null;
+    }
+
+    private ByteBuffer chunk(int h) {
+	return chunks[h >>> CHUNK_BITS];
+    }
+
+    private int offset(int h) {
+	return (h & CHUNK_MASK) * NODE_BYTES;
+    }
+
+    protected long key(int h) {
+	return chunk(h).getLong(offset(h) + KEY);
+    }
+
+    protected int left(int h) {
+	return chunk(h).getInt(offset(h) + LEFT);
+    }
+
+    protected int right(int h) {
+	return chunk(h).getInt(offset(h) + RIGHT);
+    }
+
+    protected void setKey(int h, long key) {
+	chunk(h).putLong(offset(h) + KEY, key);
+    }
+
+    protected void setLeft(int h, int x) {
+	chunk(h).putInt(offset(h) + LEFT, x);
+    }
+
+    protected void setRight(int h, int x) {
+	chunk(h).putInt(offset(h) + RIGHT, x);
+    }
+
+    protected boolean isRed(int h) {
+	return h != NIL && chunk(h).get(offset(h) + COLOR) != 0;
+    }
+
+    protected void setRed(int h, boolean red) {
+	chunk(h).put(offset(h) + COLOR, (byte)(red ? 1 : 0));
+    }
+
+    protected Long value(int h) {
+	return key(h);
+    }
+
+    protected int compareKey(int h) {
+	return Long.compare(sought, key(h));
+    }
+
+    protected void setKey(int h) {
+	setKey(h, sought);
+    }
+
+    protected void copyKey(int from, int to) {
+	setKey(to, key(from));
+    }
+
+    protected void reserve(int h) {
+	if ((h >>> CHUNK_BITS) == chunkCount) addChunk();
+    }
+
+    private void addChunk() {
+	Assert.pre(chunkCount < (1 << (31 - CHUNK_BITS)), "Arena is full.");
+	if (chunkCount == chunks.length) chunks = Arrays.copyOf(chunks, 2 * chunks.length);
+	chunks[chunkCount++] = ByteBuffer.allocateDirect(CHUNK_NODES * NODE_BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * @return the number of bytes of native memory held by the arena
+     */
+    public long arenaBytes() {
+	return (long)chunkCount * CHUNK_NODES * NODE_BYTES;
+    }
+
+    /**
+     * Clears the tree, keeping the arena for reuse
+     * @pre the tree is not closed
+     * @post The tree is empty
+     */
+    public void clear() {
+	Assert.pre(!isClosed(), "Tree is closed.");
+	super.clear();
+    }
+
+    public boolean contains(Long value) {
+	return contains(value.longValue());
+    }
+
+    /**
+     * @pre the tree is not closed
+     * @return whether key is in the tree
+     */
+    public boolean contains(long key) {
+	Assert.pre(!isClosed(), "Tree is closed.");
+	sought = key;
+	return find() != NIL;
+    }
+
+    public void add(Long value) {
+	add(value.longValue());
+    }
+
+    /**
+     * @pre the tree is not closed
+     * @post key is in the tree
+     */
+    public void add(long key) {
+	Assert.pre(!isClosed(), "Tree is closed.");
+	sought = key;
+	insert();
+    }
+
+    public Long remove(Long value) {
+	return remove(value.longValue()) ? value : null;
+    }
+
+    /**
+     * @pre the tree is not closed
+     * @return true if key was in the tree
+     * @post key is not in the tree
+     */
+    public boolean remove(long key) {
+	if (!contains(key)) return false;
+	delete();
+	return true;
+    }
+
+    /**
+     * Checks the invariants of the tree and its arena, as PooledLLRB does
+     * @pre the tree is not closed
+     * @return true if the tree and its arena are consistent
+     */
+    public boolean consistency() {
+	Assert.pre(!isClosed(), "Tree is closed.");
+	return super.consistency();
+    }
+
+    /**
+     * @pre the tree is not closed
+     * @return an in-order iterator over the keys
+     */
+    public Iterator<Long> iterator() {
+	Assert.pre(!isClosed(), "Tree is closed.");
+	return super.iterator();
+    }
+}
@@ -0,0 +1,80 @@
+//A program to test OffHeapLLRB
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Compares OffHeapLLRB against java.util.TreeSet on random adds, removes
+ * and lookups, with keys spread over the whole long range and enough of
+ * them that the arena spans several chunks, then checks clear() and
+ * close(): a closed tree holds no arena and refuses to be used.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class OffHeapLLRBTest {
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	OffHeapLLRB tree = new OffHeapLLRB();
+	TreeSet<Long> expected = new TreeSet<Long>();
+	long[] spread = new long[400000];
+	for (int i = 0; i < spread.length; i++) spread[i] = random.nextLong();
+
+	for (int phase = 0; phase < 4; phase++) {
+	    //alternately grow the tree and shrink it, so records are reused
+	    int adds = (phase % 2 == 0) ? 3 : 1;
+	    for (int i = 0; i < 200000; i++) {
+		long key = spread[random.nextInt(spread.length)];
+		if (random.nextInt(4) < adds) {
+		    tree.add(key);
+		    expected.add(key);
+		}
+		else {
+		    Assert.condition(tree.remove(key) == expected.remove(key), "remove(" + key + ") disagrees.");
+		}
+		long probe = spread[random.nextInt(spread.length)];
+		Assert.condition(tree.contains(probe) == expected.contains(probe), "contains(" + probe + ") disagrees.");
+	    }
+	    check(tree, expected, "phase " + phase);
+	}
+	Assert.condition(tree.arenaBytes() > 65536L * 24, "the arena should span several chunks.");
+
+	long bytes = tree.arenaBytes();
+	tree.clear();
+	expected.clear();
+	check(tree, expected, "clear");
+	Assert.condition(tree.arenaBytes() == bytes, "clear() should keep the arena.");
+	for (long key = -1000; key < 1000; key++) {
+	    tree.add(key);
+	    expected.add(key);
+	}
+	check(tree, expected, "adds after clear");
+
+	tree.close();
+	Assert.condition(tree.isClosed() && tree.arenaBytes() == 0, "close() should free the arena.");
+	tree.close();
+	//Assert's errors are not public, so any Error will do
+	boolean refused = false;
+	try {
+	    tree.add(1L);
+	} catch (Error e) {
+	    refused = true;
+	}
+	Assert.condition(refused, "a closed tree must refuse add.");
+	refused = false;
+	try {
+	    tree.contains(1L);
+	} catch (Error e) {
+	    refused = true;
+	}
+	Assert.condition(refused, "a closed tree must refuse contains.");
+	System.out.println("OffHeapLLRB agrees with TreeSet");
+    }
+
+    private static void check(OffHeapLLRB tree, SortedSet<Long> expected, String what) {
+	Assert.condition(tree.consistency(), what + ": tree is not a valid LLRB.");
+	StructureTest.check(tree, expected, what);
+    }
+}
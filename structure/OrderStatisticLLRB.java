@@ -0,0 +1,348 @@
+//A left leaning red black tree augmented with subtree sizes, based off LLRB.
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * This class implements LLRB with each node also holding the number of
+ * nodes in its subtree. Sizes are kept correct through rotateLeft and
+ * rotateRight (and so moveRedLeft and moveRedRight) and through fixUp,
+ * which every node on a modified path passes through on the way up.
+ * This supports order statistics in O(log n):
+ * rank(value), the number of values smaller than value;
+ * select(k), the value of rank k;
+ * count(lo, hi), the number of values in [lo, hi).
+ *
+ * @author, 2014 tony liu, michael shaw
+ * @see LLRB
+ */
+
+public class OrderStatisticLLRB<E extends Comparable<E>> extends AbstractStructure<E> implements OrderedStructure<E> {
+
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+
+    private Node<E> root;
+
+    /**
+     * Version number, used for the iterator
+     */
+    private int version;
+
+    /**
+     * Internal Node class; count is the size of the subtree rooted here
+     */
+    protected static class Node<E> implements TreeNode<E> {
+	private boolean color;
+	private Node<E> left;
+	private Node<E> right;
+	private E value;
+	private int count;
+
+	protected Node(E value) {
+	    this.color = RED;
+	    this.value = value;
+	    this.count = 1;
+	}
+
+	public E value() {
+	    return value;
+	}
+
+	public Node<E> left() {
+	    return left;
+	}
+
+	public Node<E> right() {
+	    return right;
+	}
+    }
+
+    //default constructor
+    public OrderStatisticLLRB() {
+	root = null;
+	version = 0;
+    }
+
+    protected boolean isRed(Node<E> x) {
+	return x != null && x.color == RED;
+    }
+
+    protected int count(Node<E> x) {
+	return (x == null) ? 0 : x.count;
+    }
+
+    public boolean isEmpty() {
+	return root == null;
+    }
+
+    public int size() {
+	return count(root);
+    }
+
+    public void clear() {
+	root = null;
+	version++;
+    }
+
+    public boolean contains(E value) {
+	return get(value) != null;
+    }
+
+    public E get(E value) {
+	Node<E> x = root;
+	while (x != null) {
+	    int cmp = value.compareTo(x.value);
+	    if (cmp == 0) return x.value;
+	    else if (cmp < 0) x = x.left;
+	    else x = x.right;
+	}
+	return null;
+    }
+
+    /**
+     * Returns the number of values in the tree smaller than value
+     * @pre value is not null
+     * @return the rank of value: its index in order if present, otherwise
+     * the index at which it would be added
+     */
+    public int rank(E value) {
+	int rank = 0;
+	Node<E> x = root;
+	while (x != null) {
+	    int cmp = value.compareTo(x.value);
+	    if (cmp < 0) x = x.left;
+	    else {
+		rank += count(x.left);
+		if (cmp == 0) return rank;
+		rank++;
+		x = x.right;
+	    }
+	}
+	return rank;
+    }
+
+    /**
+     * Returns the value of rank k, the k-th smallest counting from 0
+     * @pre 0 <= k < size()
+     * @return the value of rank k
+     */
+    public E select(int k) {
+	Assert.pre(0 <= k && k < size(), "Rank must be between 0 and size()-1.");
+	Node<E> x = root;
+	while (true) {
+	    int t = count(x.left);
+	    if (k < t) x = x.left;
+	    else if (k > t) {
+		k -= t + 1;
+		x = x.right;
+	    }
+	    else return x.value;
+	}
+    }
+
+    /**
+     * Returns the number of values v in the tree with lo <= v < hi
+     * @pre lo and hi are not null
+     * @return the number of values in [lo, hi)
+     */
+    public int count(E lo, E hi) {
+	if (lo.compareTo(hi) >= 0) return 0;
+	return rank(hi) - rank(lo);
+    }
+
+    public void add(E value) {
+	root = addRecursive(root, value);
+	root.color = BLACK;
+	version++;
+    }
+
+    private Node<E> addRecursive(Node<E> h, E value) {
+	if (h == null) return new Node<E>(value);
+	int compare = value.compareTo(h.value);
+	if (compare < 0) h.left = addRecursive(h.left, value);
+	if (compare > 0) h.right = addRecursive(h.right, value);
+	return fixUp(h);
+    }
+
+    public E remove(E value) {
+	E result = get(value);
+	if (result == null) return null;
+	root = removeRecursive(root, value);
+	if (root != null) root.color = BLACK;
+	version++;
+	return result;
+    }
+
+    private Node<E> removeRecursive(Node<E> h, E value) {
+	if (value.compareTo(h.value) < 0) {
+	    if (!isRed(h.left) && !isRed(h.left.left)) h = moveRedLeft(h);
+	    h.left = removeRecursive(h.left, value);
+	}
+	else {
+	    if (isRed(h.left)) h = rotateRight(h);
+	    if (value.compareTo(h.value) == 0 && h.right == null) return null;
+	    if (!isRed(h.right) && !isRed(h.right.left)) h = moveRedRight(h);
+	    if (value.compareTo(h.value) == 0) {
+		h.value = min(h.right).value;
+		h.right = removeMinRecursive(h.right);
+	    }
+	    else h.right = removeRecursive(h.right, value);
+	}
+	return fixUp(h);
+    }
+
+    private Node<E> removeMinRecursive(Node<E> h) {
+	if (h.left == null) return null;
+	if (!isRed(h.left) && !isRed(h.left.left)) h = moveRedLeft(h);
+	h.left = removeMinRecursive(h.left);
+	return fixUp(h);
+    }
+
+    protected void colorFlip(Node<E> h) {
+	h.color = !h.color;
+	h.left.color = !h.left.color;
+	h.right.color = !h.right.color;
+    }
+
+    /**
+     * Rotates left about h; x takes over h's subtree, and so its count
+     */
+    protected Node<E> rotateLeft(Node<E> h) {
+	Node<E> x = h.right;
+	h.right = x.left;
+	x.left = h;
+	x.color = h.color;
+	h.color = RED;
+	x.count = h.count;
+	h.count = 1 + count(h.left) + count(h.right);
+	return x;
+    }
+
+    /**
+     * Rotates right about h; x takes over h's subtree, and so its count
+     */
+    protected Node<E> rotateRight(Node<E> h) {
+	Node<E> x = h.left;
+	h.left = x.right;
+	x.right = h;
+	x.color = h.color;
+	h.color = RED;
+	x.count = h.count;
+	h.count = 1 + count(h.left) + count(h.right);
+	return x;
+    }
+
+    protected Node<E> moveRedLeft(Node<E> h) {
+	colorFlip(h);
+	if (isRed(h.right.left)) {
+	    h.right = rotateRight(h.right);
+	    h = rotateLeft(h);
+	    colorFlip(h);
+	}
+	return h;
+    }
+
+    protected Node<E> moveRedRight(Node<E> h) {
+	colorFlip(h);
+	if (isRed(h.left.left)) {
+	    h = rotateRight(h);
+	    colorFlip(h);
+	}
+	return h;
+    }
+
+    /**
+     * Rebalances h as LLRB.fixUp does, then recomputes its count, since
+     * one of its subtrees has just changed size
+     */
+    private Node<E> fixUp(Node<E> h) {
+	if (isRed(h.right) && !isRed(h.left)) h = rotateLeft(h);
+	if (isRed(h.left) && isRed(h.left.left)) h = rotateRight(h);
+	if (isRed(h.left) && isRed(h.right)) colorFlip(h);
+	h.count = 1 + count(h.left) + count(h.right);
+	return h;
+    }
+
+    private Node<E> min(Node<E> h) {
+	while (h.left != null) h = h.left;
+	return h;
+    }
+
+    public int height() {
+	return heightRecursive(root);
+    }
+
+    protected int heightRecursive(Node<E> h) {
+	if (h == null) return -1;
+	return 1 + Math.max(heightRecursive(h.left), heightRecursive(h.right));
+    }
+
+    /**
+     * Checks the invariants of the tree, for testing: those of LLRB,
+     * values in strictly ascending order, and a count in every node equal
+     * to the size of its subtree.
+     * @return true if the tree is consistent
+     */
+    public boolean consistency() {
+	if (isRed(root) || blackConsistency(root) < 0) return false;
+	E previous = null;
+	for (E value : this) {
+	    if (previous != null && previous.compareTo(value) >= 0) return false;
+	    previous = value;
+	}
+	return countConsistency(root) >= 0;
+    }
+
+    /**
+     * Recursive helper for consistency()
+     * @return the number of black nodes on every path below h, or -1 if
+     * the paths differ or a red link is misplaced
+     */
+    private int blackConsistency(Node<E> h) {
+	if (h == null) return 0;
+	if (isRed(h.right)) return -1;
+	if (isRed(h) && isRed(h.left)) return -1;
+	int black = blackConsistency(h.left);
+	if (black < 0 || black != blackConsistency(h.right)) return -1;
+	return isRed(h) ? black : black + 1;
+    }
+
+    /**
+     * Recursive helper for consistency()
+     * @return the size of the subtree at h, or -1 if a count is wrong
+     */
+    private int countConsistency(Node<E> h) {
+	if (h == null) return 0;
+	int left = countConsistency(h.left);
+	int right = countConsistency(h.right);
+	if (left < 0 || right < 0 || h.count != left + right + 1) return -1;
+	return h.count;
+    }
+
+    /**
+     * An in-order iterator; the tree must not be modified while iterating
+     */
+    private class OrderStatisticIterator extends TreeNodeIterator<E> {
+	public OrderStatisticIterator() {
+	    reset();
+	}
+
+	protected TreeNode<E> root() {
+	    return root;
+	}
+
+	protected int version() {
+	    return version;
+	}
+    }
+
+    public Iterator<E> iterator() {
+	return new OrderStatisticIterator();
+    }
+
+    public String toString() {
+	return TreeNodeIterator.toString("OrderStatisticLLRB", this);
+    }
+}
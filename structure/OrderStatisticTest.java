@@ -0,0 +1,63 @@
+//A program to test OrderStatisticLLRB
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Compares OrderStatisticLLRB against java.util.TreeSet on random adds and
+ * removes. rank, select and count are checked against the TreeSet's
+ * headSet and subSet sizes and its order of iteration, and the invariants
+ * of the tree, including every subtree count, as it goes.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class OrderStatisticTest {
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	for (int round = 0; round < 20; round++) {
+	    int range = (round < 10) ? 200 : 20000;
+	    OrderStatisticLLRB<Integer> tree = new OrderStatisticLLRB<Integer>();
+	    TreeSet<Integer> expected = new TreeSet<Integer>();
+	    for (int i = 0; i < 5000; i++) {
+		int key = random.nextInt(range);
+		if (random.nextInt(3) > 0) {
+		    tree.add(key);
+		    expected.add(key);
+		}
+		else {
+		    Integer removed = tree.remove(key);
+		    Assert.condition((removed != null) == expected.remove(key), "remove(" + key + ") disagrees.");
+		}
+		int probe = random.nextInt(range + 2) - 1;
+		Assert.condition(tree.rank(probe) == expected.headSet(probe).size(), "rank(" + probe + ") disagrees.");
+		int lo = random.nextInt(range + 2) - 1;
+		int hi = random.nextInt(range + 2) - 1;
+		int count = (lo < hi) ? expected.subSet(lo, hi).size() : 0;
+		Assert.condition(tree.count(lo, hi) == count, "count(" + lo + ", " + hi + ") disagrees.");
+		if (i % 500 == 0) check(tree, expected, "round " + round);
+	    }
+	    check(tree, expected, "round " + round);
+	}
+	OrderStatisticLLRB<Integer> empty = new OrderStatisticLLRB<Integer>();
+	Assert.condition(empty.rank(5) == 0 && empty.count(0, 10) == 0 && empty.consistency(), "empty tree disagrees.");
+	System.out.println("OrderStatisticLLRB agrees with TreeSet");
+    }
+
+    /**
+     * Checks the invariants of the tree, its values, and that select(k)
+     * is the k-th value of expected and has rank k
+     */
+    private static void check(OrderStatisticLLRB<Integer> tree, SortedSet<Integer> expected, String what) {
+	Assert.condition(tree.consistency(), what + ": tree is not a valid order statistic LLRB.");
+	StructureTest.check(tree, expected, what);
+	int k = 0;
+	for (Integer value : expected) {
+	    Assert.condition(tree.select(k).equals(value), what + ": select(" + k + ") disagrees.");
+	    Assert.condition(tree.rank(value) == k, what + ": rank(" + value + ") disagrees.");
+	    k++;
+	}
+    }
+}
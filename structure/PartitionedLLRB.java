@@ -0,0 +1,398 @@
+//A concurrent ordered structure of range-partitioned LLRB shards.
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.*;
+import structure5.*;
+
+/**
+ * This class implements a thread-safe OrderedStructure as a sequence of
+ * independent LLRB shards, each holding a contiguous range of values.
+ * Shard i holds the values v with splits[i-1] <= v < splits[i]. Each shard
+ * has its own lock, and no other lock is taken by ordinary operations, so
+ * writers to different ranges proceed in parallel. The size is a LongAdder
+ * for the same reason.
+ * <P>
+ * The split points start empty (a single shard) and are chosen from the
+ * data: when a shard grows well beyond its fair share, every shard is
+ * rebuilt with split points at the quantiles of the current values, using
+ * the linear-time LLRB.fromSorted. A rebalance holds the lock of every
+ * shard while it copies them, publishes the new layout, and marks the old
+ * one retired. An operation that locks a shard of a retired layout
+ * unlocks it and starts over on the current one.
+ * <P>
+ * Since shards hold disjoint, ordered ranges, iteration visits the shards
+ * in order. Iteration is weakly consistent: values are read a chunk at a
+ * time under the lock of their shard, values added or removed elsewhere
+ * during iteration may or may not be seen, but no value is returned twice.
+ *
+ * @author, 2014 tony liu, michael shaw
+ * @see LLRB
+ */
+
+public class PartitionedLLRB<E extends Comparable<E>> extends AbstractStructure<E> implements OrderedStructure<E> {
+
+    /**
+     * Shards are not split until each would hold at least this many values
+     */
+    private static final int MIN_SHARD = 1024;
+
+    /**
+     * Most values an iterator copies under one shard lock
+     */
+    private static final int CHUNK = 256;
+
+    /**
+     * Number of shards once the data is split
+     */
+    private final int partitions;
+
+    /**
+     * The shards, their locks and split points. A layout is never changed;
+     * a rebalance replaces it, setting retired while it holds every lock.
+     */
+    private class Layout {
+	final LLRB<E>[] shards;
+	final ReentrantLock[] locks;
+	final E[] splits;
+	volatile boolean retired;
+
+	@SuppressWarnings("unchecked")
+	Layout(java.util.List<LLRB<E>> newShards, java.util.List<E> newSplits) {
+	    shards = (LLRB<E>[])newShards.toArray(new LLRB<?>[newShards.size()]);
+	    splits = (E[])newSplits.toArray(new Comparable<?>[newSplits.size()]);
+	    locks = new ReentrantLock[shards.length];
+	    for (int i = 0; i < locks.length; i++) locks[i] = new ReentrantLock();
+	}
+
+	/**
+	 * Returns the index of the shard responsible for value
+	 */
+	int shard(E value) {
+	    int lo = 0, hi = splits.length;
+	    while (lo < hi) {
+		int mid = (lo + hi) >>> 1;
+		if (value.compareTo(splits[mid]) < 0) hi = mid;
+		else lo = mid + 1;
+	    }
+	    return lo;
+	}
+
+	/**
+	 * Locks every shard, in order, excluding all operations on the layout
+	 */
+	void lockAll() {
+	    for (ReentrantLock lock : locks) lock.lock();
+	}
+
+	void unlockAll() {
+	    for (ReentrantLock lock : locks) lock.unlock();
+	}
+    }
+
+    private volatile Layout current;
+
+    /**
+     * Serializes rebalance() and clear()
+     */
+    private final ReentrantLock rebuild = new ReentrantLock();
+
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * Constructs an empty structure that splits into one shard per processor
+     */
+    public PartitionedLLRB() {
+	this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an empty structure of up to partitions shards
+     * @pre partitions > 0
+     */
+    public PartitionedLLRB(int partitions) {
+	Assert.pre(partitions > 0, "There must be at least one partition.");
+	this.partitions = partitions;
+	current = emptyLayout();
+    }
+
+    private Layout emptyLayout() {
+	return new Layout(new ArrayList<LLRB<E>>(Arrays.asList(new LLRB<E>())), new ArrayList<E>());
+    }
+
+    /**
+     * Locks the shard responsible for value in the current layout
+     * @post the returned layout is not retired, and the lock of its shard
+     * for value is held by the caller
+     */
+    private Layout lock(E value) {
+	while (true) {
+	    Layout layout = current;
+	    ReentrantLock lock = layout.locks[layout.shard(value)];
+	    lock.lock();
+	    if (!layout.retired) return layout;
+	    lock.unlock();
+	}
+    }
+
+    public int size() {
+	return size.intValue();
+    }
+
+    public boolean isEmpty() {
+	return size() == 0;
+    }
+
+    /**
+     * @return the number of shards currently in use
+     */
+    public int shards() {
+	return current.shards.length;
+    }
+
+    /**
+     * @return the height of the tallest shard
+     */
+    public int height() {
+	Layout layout = current;
+	int height = -1;
+	for (int i = 0; i < layout.shards.length; i++) {
+	    layout.locks[i].lock();
+	    try {
+		height = Math.max(height, layout.shards[i].height());
+	    } finally {
+		layout.locks[i].unlock();
+	    }
+	}
+	return height;
+    }
+
+    public boolean contains(E value) {
+	Layout layout = lock(value);
+	int i = layout.shard(value);
+	try {
+	    return layout.shards[i].contains(value);
+	} finally {
+	    layout.locks[i].unlock();
+	}
+    }
+
+    public void add(E value) {
+	boolean skewed;
+	Layout layout = lock(value);
+	int i = layout.shard(value);
+	try {
+	    int before = layout.shards[i].size();
+	    layout.shards[i].add(value);
+	    if (layout.shards[i].size() != before) size.increment();
+	    skewed = skewed(layout.shards[i].size(), layout.shards.length);
+	} finally {
+	    layout.locks[i].unlock();
+	}
+	if (skewed) rebalance();
+    }
+
+    public E remove(E value) {
+	Layout layout = lock(value);
+	int i = layout.shard(value);
+	try {
+	    E result = layout.shards[i].remove(value);
+	    if (result != null) size.decrement();
+	    return result;
+	} finally {
+	    layout.locks[i].unlock();
+	}
+    }
+
+    public void clear() {
+	rebuild.lock();
+	try {
+	    Layout old = current;
+	    old.lockAll();
+	    try {
+		current = emptyLayout();
+		size.reset();
+		old.retired = true;
+	    } finally {
+		old.unlockAll();
+	    }
+	} finally {
+	    rebuild.unlock();
+	}
+    }
+
+    /**
+     * A shard is skewed when it holds more than twice its fair share, or,
+     * with fewer than four partitions, where that would take more than all
+     * of the values, more than halfway from its fair share to all of them.
+     * A layout with fewer shards than partitions is skewed once there are
+     * enough values to split.
+     * @return true if a shard of shardSize values warrants a rebalance
+     */
+    private boolean skewed(int shardSize, int shardCount) {
+	if (partitions == 1) return false;
+	long total = size.sum();
+	if (total < (long)partitions * MIN_SHARD) return false;
+	if (shardCount < partitions) return true;
+	long fair = total / partitions;
+	return shardSize > MIN_SHARD && shardSize > Math.min(2 * fair, (total + fair) / 2);
+    }
+
+    /**
+     * Rebuilds the shards with split points at the quantiles of the
+     * current values, so each shard holds about size()/partitions values.
+     * @post shards are balanced
+     */
+    @SuppressWarnings("unchecked")
+    public void rebalance() {
+	rebuild.lock();
+	try {
+	    Layout old = current;
+	    old.lockAll();
+	    try {
+		//another writer may have rebalanced while we waited
+		int largest = 0, n = 0;
+		for (LLRB<E> shard : old.shards) {
+		    largest = Math.max(largest, shard.size());
+		    n += shard.size();
+		}
+		if (!skewed(largest, old.shards.length)) return;
+
+		Object[] all = new Object[n];
+		n = 0;
+		for (LLRB<E> shard : old.shards) {
+		    for (E value : shard) all[n++] = value;
+		}
+		ArrayList<LLRB<E>> newShards = new ArrayList<LLRB<E>>();
+		ArrayList<E> newSplits = new ArrayList<E>();
+		for (int p = 0; p < partitions; p++) {
+		    int from = (int)((long)n * p / partitions);
+		    int to = (int)((long)n * (p + 1) / partitions);
+		    if (p > 0) newSplits.add((E)all[from]);
+		    newShards.add(LLRB.fromSorted((E[])Arrays.copyOfRange(all, from, to, Comparable[].class)));
+		}
+		current = new Layout(newShards, newSplits);
+		old.retired = true;
+	    } finally {
+		old.unlockAll();
+	    }
+	} finally {
+	    rebuild.unlock();
+	}
+    }
+
+    /**
+     * Checks the invariants of the structure, for testing: every shard is
+     * a valid LLRB, its values lie between its split points, and the
+     * shards' sizes add up to size(). Holds every lock while it checks.
+     * @return true if the structure is consistent
+     */
+    public boolean consistency() {
+	rebuild.lock();
+	try {
+	    Layout layout = current;
+	    layout.lockAll();
+	    try {
+		long n = 0;
+		for (int i = 0; i < layout.shards.length; i++) {
+		    LLRB<E> shard = layout.shards[i];
+		    if (!shard.consistency()) return false;
+		    if (shard.isEmpty()) continue;
+		    if (i > 0 && shard.min().compareTo(layout.splits[i - 1]) < 0) return false;
+		    if (i < layout.splits.length && shard.max().compareTo(layout.splits[i]) >= 0) return false;
+		    n += shard.size();
+		}
+		return n == size.sum();
+	    } finally {
+		layout.unlockAll();
+	    }
+	} finally {
+	    rebuild.unlock();
+	}
+    }
+
+    /**
+     * Weakly consistent iterator; it reads a chunk of one shard at a time,
+     * resuming after the last value returned, so it tolerates rebalancing.
+     */
+    private class PartitionIterator extends AbstractIterator<E> {
+	private ArrayList<E> chunk;
+	private int position;
+	private E last;
+	private boolean done;
+
+	public PartitionIterator() {
+	    reset();
+	}
+
+	public void reset() {
+	    chunk = new ArrayList<E>();
+	    position = 0;
+	    last = null;
+	    done = false;
+	    fill();
+	}
+
+	/**
+	 * Loads up to CHUNK values after last, from the first shard that has
+	 * any: one higher() seeks the first, and the shard's own iterator
+	 * walks on from there, all under the shard's lock
+	 */
+	private void fill() {
+	    chunk.clear();
+	    position = 0;
+	    Layout layout = current;
+	    int i = (last == null) ? 0 : layout.shard(last);
+	    while (i < layout.shards.length && chunk.isEmpty()) {
+		ReentrantLock lock = layout.locks[i];
+		lock.lock();
+		try {
+		    if (layout.retired) {
+			//rebalanced; look again in the new layout
+			layout = current;
+			i = (last == null) ? 0 : layout.shard(last);
+			continue;
+		    }
+		    LLRB<E> shard = layout.shards[i];
+		    E from = (last == null) ? shard.min() : shard.higher(last);
+		    if (from != null) {
+			Iterator<E> values = shard.range(from, null, LLRB.FAIL_FAST);
+			while (values.hasNext() && chunk.size() < CHUNK) chunk.add(values.next());
+		    }
+		} finally {
+		    lock.unlock();
+		}
+		if (chunk.isEmpty()) i++;
+	    }
+	    done = chunk.isEmpty();
+	}
+
+	public boolean hasNext() {
+	    return !done;
+	}
+
+	public E get() {
+	    if (done) throw new NoSuchElementException();
+	    return chunk.get(position);
+	}
+
+	public E next() {
+	    if (done) throw new NoSuchElementException();
+	    E value = chunk.get(position++);
+	    last = value;
+	    if (position == chunk.size()) fill();
+	    return value;
+	}
+    }
+
+    public Iterator<E> iterator() {
+	return new PartitionIterator();
+    }
+
+    public String toString() {
+	StringBuilder sb = new StringBuilder("<PartitionedLLRB:");
+	for (E value : this) sb.append(" " + value);
+	return sb.append(">").toString();
+    }
+}
@@ -0,0 +1,127 @@
+//A program to test PartitionedLLRB
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import structure5.*;
+
+/**
+ * Compares PartitionedLLRB against java.util.TreeSet for one to four
+ * partitions: first from one thread, with ascending runs that skew the
+ * last shard and force rebalancing, then from several writers at once,
+ * each on its own residue of the values, while a reader checks that
+ * iteration stays in strictly ascending order. The shards must end up
+ * valid LLRBs within their split points, holding exactly the values of
+ * the TreeSet, and an exhausted iterator must throw
+ * NoSuchElementException.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class PartitionedTest {
+
+    static final int WRITERS = 4;
+
+    public static void main(String args[]) throws InterruptedException {
+	for (int partitions = 1; partitions <= 4; partitions++) {
+	    single(partitions, new Random(partitions));
+	    concurrent(partitions);
+	}
+	System.out.println("PartitionedLLRB agrees with TreeSet");
+    }
+
+    /**
+     * Random adds and removes from one thread, interleaved with ascending
+     * runs that land in the last shard
+     */
+    private static void single(int partitions, Random random) {
+	PartitionedLLRB<Integer> tree = new PartitionedLLRB<Integer>(partitions);
+	TreeSet<Integer> expected = new TreeSet<Integer>();
+	int ascending = 100000;
+	for (int i = 0; i < 60000; i++) {
+	    int key = (random.nextInt(4) == 0) ? ascending++ : random.nextInt(100000);
+	    if (random.nextInt(3) > 0) {
+		tree.add(key);
+		expected.add(key);
+	    }
+	    else {
+		Integer removed = tree.remove(key);
+		Assert.condition((removed != null) == expected.remove(key), "remove(" + key + ") disagrees.");
+	    }
+	    int probe = random.nextInt(ascending);
+	    Assert.condition(tree.contains(probe) == expected.contains(probe), "contains(" + probe + ") disagrees.");
+	    if (i % 5000 == 0) check(tree, expected, partitions + " partitions after " + i + " operations");
+	}
+	check(tree, expected, partitions + " partitions");
+	Assert.condition(partitions == 1 || tree.shards() == partitions, "the values should have been split.");
+
+	Iterator<Integer> values = tree.iterator();
+	while (values.hasNext()) values.next();
+	boolean thrown = false;
+	try {
+	    values.next();
+	} catch (NoSuchElementException e) {
+	    thrown = true;
+	}
+	Assert.condition(thrown, "next() past the end must throw NoSuchElementException.");
+	tree.clear();
+	expected.clear();
+	check(tree, expected, partitions + " partitions after clear");
+    }
+
+    /**
+     * Writers add and remove their own values while a reader iterates
+     */
+    private static void concurrent(int partitions) throws InterruptedException {
+	final PartitionedLLRB<Integer> tree = new PartitionedLLRB<Integer>(partitions);
+	final AtomicReference<String> failure = new AtomicReference<String>();
+	Thread[] writers = new Thread[WRITERS];
+	for (int w = 0; w < WRITERS; w++) {
+	    final int residue = w;
+	    writers[w] = new Thread(new Runnable() {
+		    public void run() {
+			Random random = new Random(residue);
+			for (int i = 0; i < 30000; i++) {
+			    //ascending, so the last shard grows fastest
+			    int value = WRITERS * i + residue;
+			    tree.add(value);
+			    if (random.nextInt(4) == 0) {
+				if (tree.remove(value) == null) failure.compareAndSet(null, "a writer lost " + value);
+			    }
+			}
+		    }
+		});
+	}
+	Thread reader = new Thread(new Runnable() {
+		public void run() {
+		    for (int round = 0; round < 10; round++) {
+			Integer previous = null;
+			for (Integer value : tree) {
+			    if (previous != null && previous >= value) failure.compareAndSet(null, "iteration went out of order");
+			    previous = value;
+			}
+		    }
+		}
+	    });
+	for (Thread writer : writers) writer.start();
+	reader.start();
+	for (Thread writer : writers) writer.join();
+	reader.join();
+	Assert.condition(failure.get() == null, "" + failure.get());
+
+	//replay each writer's choices
+	TreeSet<Integer> expected = new TreeSet<Integer>();
+	for (int w = 0; w < WRITERS; w++) {
+	    Random random = new Random(w);
+	    for (int i = 0; i < 30000; i++) {
+		if (random.nextInt(4) != 0) expected.add(WRITERS * i + w);
+	    }
+	}
+	check(tree, expected, partitions + " partitions, " + WRITERS + " writers");
+    }
+
+    private static void check(PartitionedLLRB<Integer> tree, SortedSet<Integer> expected, String what) {
+	Assert.condition(tree.consistency(), what + ": shards are not consistent.");
+	StructureTest.check(tree, expected, what);
+    }
+}
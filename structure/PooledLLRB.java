@@ -0,0 +1,389 @@
+//A left leaning red black tree over a pool of int handles, based off LLRB.
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * This class holds the LLRB algorithms for trees whose nodes are not
+ * objects but int handles into a pool: rotateLeft, rotateRight, colorFlip,
+ * moveRedLeft, moveRedRight and fixUp, insertion, deletion, the free list
+ * and the iterator. Handle 0 (NIL) means "no node". A subclass stores the
+ * nodes, through the accessors left, right, isRed and their setters, and
+ * the keys. Keys may be primitives that a generic method would box, so
+ * the algorithms never handle one: the subclass puts the key being added,
+ * sought or removed in a field of its own, then calls insert, find or
+ * delete, which ask it to compare that key with a node's (compareKey),
+ * store it in a new node (setKey), or move a key between nodes (copyKey).
+ * <P>
+ * Nodes freed by delete are threaded through their left links into a free
+ * list and reused by later inserts; handles never handed out start at
+ * next, and reserve makes room for one before it is used.
+ *
+ * @author, 2014 tony liu, michael shaw
+ * @see LLRB
+ * @see ArrayLLRB
+ * @see OffHeapLLRB
+ */
+
+public abstract class PooledLLRB<E extends Comparable<E>> extends AbstractStructure<E> implements OrderedStructure<E> {
+
+    /**
+     * Handle used as the null link
+     */
+    protected static final int NIL = 0;
+
+    protected int root;
+    protected int size;
+
+    /**
+     * Head of the list of freed nodes, linked through their left links
+     */
+    protected int free;
+
+    /**
+     * Next never-used handle in the pool
+     */
+    protected int next;
+
+    /**
+     * Version number, used for the iterator
+     */
+    protected int version;
+
+    protected PooledLLRB() {
+	root = NIL;
+	size = 0;
+	free = NIL;
+	next = 1;
+	version = 0;
+    }
+
+    protected abstract int left(int h);
+
+    protected abstract int right(int h);
+
+    protected abstract void setLeft(int h, int x);
+
+    protected abstract void setRight(int h, int x);
+
+    /**
+     * @return true if h is red; NIL is black
+     */
+    protected abstract boolean isRed(int h);
+
+    protected abstract void setRed(int h, boolean red);
+
+    /**
+     * @return the key of node h, as a value of the structure
+     */
+    protected abstract E value(int h);
+
+    /**
+     * Compares the key being sought with the key of node h
+     * @return less than, equal to or greater than 0 as the key sought is
+     * below, at or above that of h
+     */
+    protected abstract int compareKey(int h);
+
+    /**
+     * Stores the key being sought in node h
+     */
+    protected abstract void setKey(int h);
+
+    /**
+     * Replaces the key of node to with that of node from
+     */
+    protected abstract void copyKey(int from, int to);
+
+    /**
+     * Makes room in the pool for handle h, the next never used
+     */
+    protected abstract void reserve(int h);
+
+    /**
+     * Takes a node from the free list, or from the unused end of the pool
+     * @return the handle of a new red node holding the key being sought
+     */
+    protected int allocate() {
+	int h;
+	if (free != NIL) {
+	    h = free;
+	    free = left(h);
+	}
+	else {
+	    reserve(next);
+	    h = next++;
+	}
+	setLeft(h, NIL);
+	setRight(h, NIL);
+	setRed(h, true);
+	setKey(h);
+	return h;
+    }
+
+    /**
+     * Returns node h to the free list
+     */
+    protected void release(int h) {
+	setRight(h, NIL);
+	setLeft(h, free);
+	free = h;
+    }
+
+    public boolean isEmpty() {
+	return root == NIL;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    /**
+     * Clears the entire tree, keeping the pool's capacity
+     * @post The tree is empty
+     */
+    public void clear() {
+	root = NIL;
+	size = 0;
+	free = NIL;
+	next = 1;
+	version++;
+    }
+
+    /**
+     * @return the handle of the node holding the key being sought, or NIL
+     */
+    protected int find() {
+	int x = root;
+	while (x != NIL) {
+	    int cmp = compareKey(x);
+	    if (cmp == 0) return x;
+	    else if (cmp < 0) x = left(x);
+	    else x = right(x);
+	}
+	return NIL;
+    }
+
+    /**
+     * Adds the key being sought to the tree
+     */
+    protected void insert() {
+	root = addRecursive(root);
+	setRed(root, false);
+	version++;
+    }
+
+    private int addRecursive(int h) {
+	if (h == NIL) {
+	    size++;
+	    return allocate();
+	}
+	int compare = compareKey(h);
+	if (compare < 0) setLeft(h, addRecursive(left(h)));
+	else if (compare > 0) setRight(h, addRecursive(right(h)));
+
+	return fixUp(h);
+    }
+
+    /**
+     * Removes the key being sought from the tree
+     * @pre the key is in the tree
+     */
+    protected void delete() {
+	root = removeRecursive(root);
+	if (root != NIL) setRed(root, false);
+	version++;
+    }
+
+    private int removeRecursive(int h) {
+	if (compareKey(h) < 0) {
+	    if (!isRed(left(h)) && !isRed(left(left(h)))) h = moveRedLeft(h);
+	    setLeft(h, removeRecursive(left(h)));
+	}
+	else {
+	    if (isRed(left(h))) h = rotateRight(h);
+	    if (compareKey(h) == 0 && right(h) == NIL) {
+		size--;
+		release(h);
+		return NIL;
+	    }
+	    if (!isRed(right(h)) && !isRed(left(right(h)))) h = moveRedRight(h);
+	    if (compareKey(h) == 0) {
+		copyKey(min(right(h)), h);
+		setRight(h, removeMinRecursive(right(h)));
+	    }
+	    else setRight(h, removeRecursive(right(h)));
+	}
+	return fixUp(h);
+    }
+
+    private int removeMinRecursive(int h) {
+	if (left(h) == NIL) {
+	    size--;
+	    release(h);
+	    return NIL;
+	}
+	if (!isRed(left(h)) && !isRed(left(left(h)))) h = moveRedLeft(h);
+	setLeft(h, removeMinRecursive(left(h)));
+	return fixUp(h);
+    }
+
+    protected void colorFlip(int h) {
+	setRed(h, !isRed(h));
+	setRed(left(h), !isRed(left(h)));
+	setRed(right(h), !isRed(right(h)));
+    }
+
+    protected int rotateLeft(int h) {
+	int x = right(h);
+	setRight(h, left(x));
+	setLeft(x, h);
+	setRed(x, isRed(h));
+	setRed(h, true);
+	return x;
+    }
+
+    protected int rotateRight(int h) {
+	int x = left(h);
+	setLeft(h, right(x));
+	setRight(x, h);
+	setRed(x, isRed(h));
+	setRed(h, true);
+	return x;
+    }
+
+    protected int moveRedLeft(int h) {
+	colorFlip(h);
+	if (isRed(left(right(h)))) {
+	    setRight(h, rotateRight(right(h)));
+	    h = rotateLeft(h);
+	    colorFlip(h);
+	}
+	return h;
+    }
+
+    protected int moveRedRight(int h) {
+	colorFlip(h);
+	if (isRed(left(left(h)))) {
+	    h = rotateRight(h);
+	    colorFlip(h);
+	}
+	return h;
+    }
+
+    private int fixUp(int h) {
+	if (isRed(right(h)) && !isRed(left(h))) h = rotateLeft(h);
+	if (isRed(left(h)) && isRed(left(left(h)))) h = rotateRight(h);
+	if (isRed(left(h)) && isRed(right(h))) colorFlip(h);
+	return h;
+    }
+
+    private int min(int h) {
+	while (left(h) != NIL) h = left(h);
+	return h;
+    }
+
+    public int height() {
+	return heightRecursive(root);
+    }
+
+    protected int heightRecursive(int h) {
+	if (h == NIL) return -1;
+	return 1 + Math.max(heightRecursive(left(h)), heightRecursive(right(h)));
+    }
+
+    /**
+     * Checks the invariants of the tree, for testing: those of LLRB (a
+     * black root, no red right link, no red node with a red child, the
+     * same number of black nodes on every path, values in strictly
+     * ascending order, a size that matches the nodes), and that every
+     * handle of the pool in use is either in the tree or on the free list.
+     * @return true if the tree and its pool are consistent
+     */
+    public boolean consistency() {
+	if (isRed(root) || blackConsistency(root) < 0) return false;
+	int nodes = 0;
+	E previous = null;
+	for (E value : this) {
+	    if (previous != null && previous.compareTo(value) >= 0) return false;
+	    previous = value;
+	    nodes++;
+	}
+	if (nodes != size) return false;
+	int freed = 0;
+	for (int h = free; h != NIL; h = left(h)) {
+	    if (!released(h) || ++freed > next) return false;
+	}
+	return size + freed == next - 1;
+    }
+
+    /**
+     * Helper for consistency(), for a pool that clears what it frees
+     * @return true if freed node h holds nothing it should not
+     */
+    protected boolean released(int h) {
+	return true;
+    }
+
+    /**
+     * Recursive helper for consistency()
+     * @return the number of black nodes on every path below h, or -1 if
+     * the paths differ or a red link is misplaced
+     */
+    private int blackConsistency(int h) {
+	if (h == NIL) return 0;
+	if (isRed(right(h))) return -1;
+	if (isRed(h) && isRed(left(h))) return -1;
+	int black = blackConsistency(left(h));
+	if (black < 0 || black != blackConsistency(right(h))) return -1;
+	return isRed(h) ? black : black + 1;
+    }
+
+    /**
+     * An in-order iterator over the pool, holding a stack of handles.
+     * The tree must not be modified while iterating.
+     */
+    private class PooledIterator extends AbstractIterator<E> {
+	private int[] stack;
+	private int top;
+	private int iterVersion;
+
+	public PooledIterator() {
+	    reset();
+	}
+
+	public void reset() {
+	    stack = new int[2 * (32 - Integer.numberOfLeadingZeros(size + 1)) + 2];
+	    top = 0;
+	    iterVersion = version;
+	    goLeft(root);
+	}
+
+	protected void goLeft(int x) {
+	    while (x != NIL) {
+		stack[top++] = x;
+		x = left(x);
+	    }
+	}
+
+	public boolean hasNext() {
+	    return top > 0;
+	}
+
+	public E get() {
+	    return PooledLLRB.this.value(stack[top - 1]);
+	}
+
+	public E next() {
+	    if (iterVersion != version) throw new ConcurrentModificationException();
+	    int x = stack[--top];
+	    goLeft(right(x));
+	    return PooledLLRB.this.value(x);
+	}
+    }
+
+    public Iterator<E> iterator() {
+	return new PooledIterator();
+    }
+}
@@ -0,0 +1,88 @@
+//A program to test IntLLRB and LongLLRB
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Compares IntLLRB and LongLLRB against java.util.TreeMap on random
+ * adds, puts, removes and lookups, checking the invariants of each tree
+ * as it goes. add must keep the value of a key already present, and put
+ * replace it. LongLLRB keys are spread over the whole long range, so
+ * comparisons that overflowed an int would show.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class PrimitiveLLRBTest {
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	IntLLRB<String> ints = new IntLLRB<String>();
+	LongLLRB<String> longs = new LongLLRB<String>();
+	TreeMap<Integer,String> intMap = new TreeMap<Integer,String>();
+	TreeMap<Long,String> longMap = new TreeMap<Long,String>();
+	long[] spread = new long[2000];
+	for (int i = 0; i < spread.length; i++) spread[i] = random.nextLong();
+
+	for (int i = 0; i < 200000; i++) {
+	    int k = random.nextInt(2000) - 1000;
+	    long l = spread[random.nextInt(spread.length)];
+	    String value = "v" + i;
+	    int op = random.nextInt(4);
+	    if (op == 0) {
+		ints.add(k);
+		if (!intMap.containsKey(k)) intMap.put(k, null);
+		longs.add(l);
+		if (!longMap.containsKey(l)) longMap.put(l, null);
+	    }
+	    else if (op == 1) {
+		ints.put(k, value);
+		intMap.put(k, value);
+		longs.put(l, value);
+		longMap.put(l, value);
+	    }
+	    else {
+		boolean removed = intMap.containsKey(k);
+		intMap.remove(k);
+		Assert.condition(ints.remove(k) == removed, "IntLLRB remove(" + k + ") disagrees.");
+		removed = longMap.containsKey(l);
+		longMap.remove(l);
+		Assert.condition(longs.remove(l) == removed, "LongLLRB remove(" + l + ") disagrees.");
+	    }
+	    k = random.nextInt(2000) - 1000;
+	    l = spread[random.nextInt(spread.length)];
+	    Assert.condition(ints.contains(k) == intMap.containsKey(k), "IntLLRB contains(" + k + ") disagrees.");
+	    Assert.condition(same(ints.get(k), intMap.get(k)), "IntLLRB get(" + k + ") disagrees.");
+	    Assert.condition(longs.contains(l) == longMap.containsKey(l), "LongLLRB contains(" + l + ") disagrees.");
+	    Assert.condition(same(longs.get(l), longMap.get(l)), "LongLLRB get(" + l + ") disagrees.");
+	    if (i % 5000 == 0) check(ints, intMap, longs, longMap);
+	}
+	check(ints, intMap, longs, longMap);
+	ints.clear();
+	longs.clear();
+	Assert.condition(ints.isEmpty() && longs.isEmpty() && ints.consistency() && longs.consistency(), "clear() left values.");
+	System.out.println("IntLLRB and LongLLRB agree with TreeMap");
+    }
+
+    private static boolean same(String a, String b) {
+	return (a == null) ? b == null : a.equals(b);
+    }
+
+    /**
+     * Checks the invariants of both trees, and that their keys are those
+     * of the maps, in order
+     */
+    private static void check(IntLLRB<String> ints, TreeMap<Integer,String> intMap,
+			      LongLLRB<String> longs, TreeMap<Long,String> longMap) {
+	Assert.condition(ints.consistency(), "IntLLRB is not a valid LLRB.");
+	Assert.condition(longs.consistency(), "LongLLRB is not a valid LLRB.");
+	Assert.condition(ints.size() == intMap.size() && longs.size() == longMap.size(), "sizes disagree.");
+	int i = 0;
+	int[] intKeys = ints.keys();
+	for (int key : intMap.keySet()) Assert.condition(intKeys[i++] == key, "IntLLRB keys differ.");
+	i = 0;
+	long[] longKeys = longs.keys();
+	for (long key : longMap.keySet()) Assert.condition(longKeys[i++] == key, "LongLLRB keys differ.");
+    }
+}
@@ -0,0 +1,169 @@
+//A relaxed AVL tree: deletion without rebalancing, after Sen and Tarjan.
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * This class implements a relaxed AVL (RAVL) tree, as described by Sen
+ * and Tarjan in doc/ravl-soda10.pdf. Every node has a rank, a null child
+ * has rank -1, and the only balance rule is that the rank of a child is
+ * less than that of its parent (every rank difference is positive).
+ * <P>
+ * add rebalances as an AVL tree does, in RankBalancedTree: the new leaf
+ * has rank 0, and the parent of a child of equal rank is promoted, while
+ * its other child is one rank below, or else fixed by a single or double
+ * rotation, which ends the insertion. remove does no rebalancing at all:
+ * a node with two children takes its successor's value, and the node
+ * removed is replaced by its only child, if any. There are no
+ * moveRedLeft, moveRedRight or fixUp steps on the way down or back up.
+ * <P>
+ * Sen and Tarjan show that, after m insertions and any deletions, every
+ * rank is at most log_phi m, phi the golden ratio, so the height is too.
+ * To bound the height in terms of the current size n instead, the tree
+ * is rebuilt, perfectly balanced, whenever the deletions since the last
+ * rebuild outnumber the values that remain: then m <= 2n, and the height
+ * is at most log_phi 2n, about 1.44 log n + 1.44. The rebuild is linear,
+ * and paid for by the n/2 deletions before it.
+ *
+ * @author, 2014 tony liu, michael shaw
+ * @see RankBalancedTree
+ * @see LLRB
+ */
+
+public class RAVLTree<E extends Comparable<E>> extends RankBalancedTree<E> {
+
+    private static final double PHI = (1 + Math.sqrt(5)) / 2;
+
+    /**
+     * Insertions counted since the last rebuild; a rebuilt tree counts
+     * as its size. Deletions since the last rebuild are inserted - size.
+     */
+    private int inserted;
+
+    private int rebuilds;
+
+    //default constructor
+    public RAVLTree() {
+	super();
+	inserted = 0;
+    }
+
+    public void clear() {
+	super.clear();
+	inserted = 0;
+    }
+
+    /**
+     * Adds value to the tree, counting the insertion
+     * @pre value is not null
+     * @post value is in the tree
+     */
+    public void add(E value) {
+	int before = size;
+	super.add(value);
+	inserted += size - before;
+    }
+
+    /**
+     * Removes value from the tree, without rebalancing. Ranks are left
+     * as they are: removing a node only lengthens rank differences.
+     * @return the removed value, or null if it was not present
+     */
+    public E remove(E value) {
+	Node<E> parent = null;
+	Node<E> x = root;
+	while (x != null) {
+	    int cmp = value.compareTo(x.value);
+	    if (cmp == 0) break;
+	    parent = x;
+	    x = (cmp < 0) ? x.left : x.right;
+	}
+	if (x == null) return null;
+	E result = x.value;
+	if (x.left != null && x.right != null) {
+	    //take the successor's value, and remove the successor instead
+	    Node<E> successor = x.right;
+	    parent = x;
+	    while (successor.left != null) {
+		parent = successor;
+		successor = successor.left;
+	    }
+	    x.value = successor.value;
+	    x = successor;
+	}
+	Node<E> child = (x.left != null) ? x.left : x.right;
+	if (parent == null) root = child;
+	else if (parent.left == x) parent.left = child;
+	else parent.right = child;
+	size--;
+	version++;
+	if (2 * (inserted - size) > inserted) rebuild();
+	return result;
+    }
+
+    /**
+     * Rebuilds the tree perfectly balanced, with each rank the height of
+     * its subtree, and restarts the count of insertions
+     * @post the tree holds the same values, at minimum height
+     */
+    public void rebuild() {
+	ArrayList<Node<E>> nodes = new ArrayList<Node<E>>(size);
+	inorder(root, nodes);
+	root = build(nodes, 0, nodes.size());
+	inserted = size;
+	rebuilds++;
+	version++;
+    }
+
+    private void inorder(Node<E> x, ArrayList<Node<E>> nodes) {
+	while (x != null) {
+	    inorder(x.left, nodes);
+	    nodes.add(x);
+	    x = x.right;
+	}
+    }
+
+    /**
+     * Links nodes[lo..hi-1] into a perfectly balanced subtree
+     * @return its root, or null if the range is empty
+     */
+    private Node<E> build(ArrayList<Node<E>> nodes, int lo, int hi) {
+	if (lo == hi) return null;
+	int mid = (lo + hi) >>> 1;
+	Node<E> x = nodes.get(mid);
+	x.left = build(nodes, lo, mid);
+	x.right = build(nodes, mid + 1, hi);
+	x.rank = 1 + Math.max(rank(x.left), rank(x.right));
+	return x;
+    }
+
+    /**
+     * @return the number of rebuilds so far
+     */
+    public int rebuilds() {
+	return rebuilds;
+    }
+
+    /**
+     * Recursive helper for consistency(): the rank of every child is
+     * less than its parent's, so a rank bounds the height of its subtree
+     * @return true if every rank difference below h is positive
+     */
+    protected boolean rankConsistency(Node<E> h) {
+	if (h == null) return true;
+	if (rank(h.left) >= h.rank || rank(h.right) >= h.rank) return false;
+	return rankConsistency(h.left) && rankConsistency(h.right);
+    }
+
+    /**
+     * Returns the bound on height() that holds at the current size: the
+     * tree is rebuilt before insertions since the last rebuild exceed
+     * twice the size, so the height is at most log_phi 2n
+     * @return floor(log_phi 2n), or -1 for an empty tree
+     */
+    public int heightBound() {
+	if (size == 0) return -1;
+	return (int)Math.floor(Math.log(2.0 * size) / Math.log(PHI));
+    }
+}
@@ -0,0 +1,65 @@
+//A program to test RAVLTree
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Compares RAVLTree against java.util.TreeSet on random adds and removes,
+ * in phases that alternately grow the tree and delete most of it, so
+ * that deletions without rebalancing pile up and rebuilds are triggered.
+ * Every rank difference must stay positive and the height within
+ * heightBound(), and sorted adds must keep it there too.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class RAVLTreeTest {
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	RAVLTree<Integer> tree = new RAVLTree<Integer>();
+	TreeSet<Integer> expected = new TreeSet<Integer>();
+	for (int phase = 0; phase < 20; phase++) {
+	    int range = (phase < 10) ? 300 : 30000;
+	    //alternately grow the tree and shrink it
+	    int adds = (phase % 2 == 0) ? 3 : 1;
+	    for (int i = 0; i < 20000; i++) {
+		int key = random.nextInt(range);
+		if (random.nextInt(4) < adds) {
+		    tree.add(key);
+		    expected.add(key);
+		}
+		else {
+		    Integer removed = tree.remove(key);
+		    Assert.condition((removed != null) == expected.remove(key), "remove(" + key + ") disagrees.");
+		}
+		int probe = random.nextInt(range);
+		Assert.condition(tree.contains(probe) == expected.contains(probe), "contains(" + probe + ") disagrees.");
+		if (i % 2000 == 0) check(tree, expected, "phase " + phase);
+	    }
+	    check(tree, expected, "phase " + phase);
+	}
+	Assert.condition(tree.rebuilds() > 0, "deleting most of the tree should rebuild it.");
+
+	tree.clear();
+	expected.clear();
+	for (int i = 0; i < 100000; i++) {
+	    tree.add(i);
+	    expected.add(i);
+	}
+	check(tree, expected, "ascending adds");
+	for (int i = 0; i < 100000; i += 3) {
+	    tree.remove(i);
+	    expected.remove(i);
+	}
+	check(tree, expected, "removes");
+	System.out.println("RAVLTree agrees with TreeSet");
+    }
+
+    private static void check(RAVLTree<Integer> tree, SortedSet<Integer> expected, String what) {
+	Assert.condition(tree.consistency(), what + ": tree is not a valid RAVL tree.");
+	StructureTest.check(tree, expected, what);
+	Assert.condition(tree.height() <= tree.heightBound(), what + ": height " + tree.height() + " exceeds " + tree.heightBound());
+    }
+}
@@ -0,0 +1,76 @@
+//A program to test the navigation methods and range iterators of LLRB
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Compares floor, ceiling, lower, higher, min and max of LLRB against
+ * java.util.TreeSet, and the values of range(lo, hi) in each iteration
+ * mode against the TreeSet's subSet, for each engine, on random adds and
+ * removes. Probes and bounds fall below, between, on and above the
+ * values of the tree, and bounds with lo >= hi must give no values.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class RangeTest {
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	int[] engines = {LLRB.RECURSIVE, LLRB.ITERATIVE, LLRB.TOP_DOWN};
+	int[] modes = {LLRB.FAIL_FAST, LLRB.SNAPSHOT, LLRB.RESUME};
+	for (int engine : engines) {
+	    for (int round = 0; round < 20; round++) {
+		int range = (round < 10) ? 50 : 5000;
+		LLRB<Integer> tree = new LLRB<Integer>(engine, false);
+		TreeSet<Integer> expected = new TreeSet<Integer>();
+		for (int i = 0; i < 3000; i++) {
+		    int key = random.nextInt(range);
+		    if (random.nextInt(3) > 0) {
+			tree.add(key);
+			expected.add(key);
+		    }
+		    else {
+			tree.remove(key);
+			expected.remove(key);
+		    }
+		    int probe = random.nextInt(range + 20) - 10;
+		    Assert.condition(same(tree.floor(probe), expected.floor(probe)), "floor(" + probe + ") disagrees.");
+		    Assert.condition(same(tree.ceiling(probe), expected.ceiling(probe)), "ceiling(" + probe + ") disagrees.");
+		    Assert.condition(same(tree.lower(probe), expected.lower(probe)), "lower(" + probe + ") disagrees.");
+		    Assert.condition(same(tree.higher(probe), expected.higher(probe)), "higher(" + probe + ") disagrees.");
+		    Integer min = expected.isEmpty() ? null : expected.first();
+		    Integer max = expected.isEmpty() ? null : expected.last();
+		    Assert.condition(same(tree.min(), min) && same(tree.max(), max), "min() or max() disagrees.");
+
+		    int lo = random.nextInt(range + 20) - 10;
+		    int hi = lo + random.nextInt(range / 5 + 2) - 1;
+		    Collection<Integer> window = (lo < hi) ? expected.subSet(lo, hi) : new ArrayList<Integer>();
+		    int mode = modes[random.nextInt(modes.length)];
+		    check(tree.range(lo, hi, mode), window, "range(" + lo + ", " + hi + ")");
+		}
+		check(tree.range(-10, range + 10), expected, "range over every value");
+	    }
+	}
+	LLRB<Integer> empty = new LLRB<Integer>();
+	Assert.condition(empty.min() == null && empty.max() == null && empty.floor(0) == null && empty.higher(0) == null, "empty tree has values.");
+	Assert.condition(!empty.range(0, 10).hasNext(), "empty tree has a range.");
+	System.out.println("LLRB navigation and ranges agree with TreeSet");
+    }
+
+    private static boolean same(Integer a, Integer b) {
+	return (a == null) ? b == null : a.equals(b);
+    }
+
+    /**
+     * Checks that an iterator returns exactly the values of expected, in
+     * order, and then stops
+     */
+    private static void check(Iterator<Integer> values, Collection<Integer> expected, String what) {
+	for (Integer value : expected) {
+	    Assert.condition(values.hasNext() && values.next().equals(value), what + ": values differ.");
+	}
+	Assert.condition(!values.hasNext(), what + ": too many values.");
+    }
+}
@@ -0,0 +1,239 @@
+//A binary search tree balanced by node ranks, with AVL insertion.
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * This class holds what rank-balanced trees share: nodes with a rank, a
+ * null child having rank -1, and insertion as in an AVL tree. The new
+ * leaf has rank 0; the parent of a child of equal rank is promoted if
+ * its other child is one rank below, and otherwise fixed by a single or
+ * double rotation, which ends the insertion. RAVLTree and WAVLTree
+ * differ only in how they delete, and so in the ranks they allow, which
+ * each checks with rankConsistency.
+ *
+ * @author, 2014 tony liu, michael shaw
+ * @see RAVLTree
+ * @see WAVLTree
+ */
+
+public abstract class RankBalancedTree<E extends Comparable<E>> extends AbstractStructure<E> implements OrderedStructure<E> {
+
+    protected Node<E> root;
+    protected int size;
+
+    /**
+     * Version number, used for the iterator
+     */
+    protected int version;
+
+    /**
+     * Internal Node class; rank bounds the height of the subtree rooted here
+     */
+    protected static class Node<E> implements TreeNode<E> {
+	Node<E> left;
+	Node<E> right;
+	E value;
+	int rank;
+
+	protected Node(E value) {
+	    this.value = value;
+	    this.rank = 0;
+	}
+
+	public E value() {
+	    return value;
+	}
+
+	public Node<E> left() {
+	    return left;
+	}
+
+	public Node<E> right() {
+	    return right;
+	}
+    }
+
+    protected RankBalancedTree() {
+	root = null;
+	size = 0;
+	version = 0;
+    }
+
+    protected int rank(Node<E> x) {
+	return (x == null) ? -1 : x.rank;
+    }
+
+    public boolean isEmpty() {
+	return root == null;
+    }
+
+    public int size() {
+	return size;
+    }
+
+    public void clear() {
+	root = null;
+	size = 0;
+	version++;
+    }
+
+    public boolean contains(E value) {
+	return get(value) != null;
+    }
+
+    public E get(E value) {
+	Node<E> x = root;
+	while (x != null) {
+	    int cmp = value.compareTo(x.value);
+	    if (cmp == 0) return x.value;
+	    else if (cmp < 0) x = x.left;
+	    else x = x.right;
+	}
+	return null;
+    }
+
+    /**
+     * Adds value to the tree
+     * @pre value is not null
+     * @post value is in the tree
+     */
+    public void add(E value) {
+	root = addRecursive(root, value);
+	version++;
+    }
+
+    private Node<E> addRecursive(Node<E> x, E value) {
+	if (x == null) {
+	    size++;
+	    return new Node<E>(value);
+	}
+	int compare = value.compareTo(x.value);
+	if (compare < 0) {
+	    x.left = addRecursive(x.left, value);
+	    if (x.left.rank == x.rank) x = fixLeft(x);
+	}
+	else if (compare > 0) {
+	    x.right = addRecursive(x.right, value);
+	    if (x.right.rank == x.rank) x = fixRight(x);
+	}
+	return x;
+    }
+
+    /**
+     * Fixes x, whose left child y has just reached x's rank. If x's right
+     * child is one rank below, x is promoted and the problem may move up;
+     * otherwise a rotation ends it. y was itself just promoted, or is the
+     * new leaf, so its left child is one rank below it.
+     * @return the root of the subtree
+     */
+    private Node<E> fixLeft(Node<E> x) {
+	if (x.rank - rank(x.right) == 1) {
+	    x.rank++;
+	    return x;
+	}
+	Node<E> y = x.left;
+	Node<E> z = y.right;
+	if (y.rank - rank(z) != 1) {
+	    //single rotation
+	    x.left = z;
+	    y.right = x;
+	    x.rank--;
+	    return y;
+	}
+	//double rotation
+	y.right = z.left;
+	x.left = z.right;
+	z.left = y;
+	z.right = x;
+	z.rank++;
+	y.rank--;
+	x.rank--;
+	return z;
+    }
+
+    /**
+     * Mirror image of fixLeft
+     */
+    private Node<E> fixRight(Node<E> x) {
+	if (x.rank - rank(x.left) == 1) {
+	    x.rank++;
+	    return x;
+	}
+	Node<E> y = x.right;
+	Node<E> z = y.left;
+	if (y.rank - rank(z) != 1) {
+	    x.right = z;
+	    y.left = x;
+	    x.rank--;
+	    return y;
+	}
+	y.left = z.right;
+	x.right = z.left;
+	z.right = y;
+	z.left = x;
+	z.rank++;
+	y.rank--;
+	x.rank--;
+	return z;
+    }
+
+    public int height() {
+	return heightRecursive(root);
+    }
+
+    protected int heightRecursive(Node<E> h) {
+	if (h == null) return -1;
+	return 1 + Math.max(heightRecursive(h.left), heightRecursive(h.right));
+    }
+
+    /**
+     * Checks the invariants of the tree, for testing: the ranks keep the
+     * rules of the tree, values are in strictly ascending order, and the
+     * size matches them.
+     * @return true if the tree is consistent
+     */
+    public boolean consistency() {
+	if (!rankConsistency(root)) return false;
+	int count = 0;
+	E previous = null;
+	for (E value : this) {
+	    if (previous != null && previous.compareTo(value) >= 0) return false;
+	    previous = value;
+	    count++;
+	}
+	return count == size;
+    }
+
+    /**
+     * Recursive helper for consistency()
+     * @return true if the ranks below h keep the rules of the tree
+     */
+    protected abstract boolean rankConsistency(Node<E> h);
+
+    /**
+     * An in-order iterator; the tree must not be modified while iterating
+     */
+    private class RankIterator extends TreeNodeIterator<E> {
+	public RankIterator() {
+	    reset();
+	}
+
+	protected TreeNode<E> root() {
+	    return root;
+	}
+
+	protected int version() {
+	    return version;
+	}
+    }
+
+    public Iterator<E> iterator() {
+	return new RankIterator();
+    }
+
+    public String toString() {
+	return TreeNodeIterator.toString(getClass().getName(), this);
+    }
+}
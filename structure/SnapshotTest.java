@@ -0,0 +1,99 @@
+//A program to test the snapshots of ConcurrentLLRB
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Takes snapshots of a ConcurrentLLRB while random adds and removes go on,
+ * each beside a java.util.TreeSet copy of the values at that moment, and
+ * checks that every snapshot still agrees with its copy at the end, even
+ * when iterated while the tree changed. The version must advance exactly
+ * when a write changes the tree. Trees seeded from a snapshot must change
+ * independently of the tree it came from, and snapshots refuse changes.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class SnapshotTest {
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	ConcurrentLLRB<Integer> tree = new ConcurrentLLRB<Integer>();
+	TreeSet<Integer> expected = new TreeSet<Integer>();
+	ArrayList<ConcurrentLLRB.Snapshot<Integer>> snapshots = new ArrayList<ConcurrentLLRB.Snapshot<Integer>>();
+	ArrayList<TreeSet<Integer>> copies = new ArrayList<TreeSet<Integer>>();
+	for (int i = 0; i < 50000; i++) {
+	    int key = random.nextInt(2000);
+	    long version = tree.version();
+	    boolean changed;
+	    if (random.nextInt(3) > 0) {
+		tree.add(key);
+		changed = expected.add(key);
+	    }
+	    else {
+		tree.remove(key);
+		changed = expected.remove(key);
+	    }
+	    Assert.condition(tree.version() == (changed ? version + 1 : version), "the version must count the changes.");
+	    if (i % 500 == 0) {
+		snapshots.add(tree.snapshot());
+		copies.add(new TreeSet<Integer>(expected));
+	    }
+	}
+	for (int i = 0; i < snapshots.size(); i++) check(snapshots.get(i), copies.get(i), "snapshot " + i);
+
+	//iterate a snapshot while the tree changes under it
+	ConcurrentLLRB.Snapshot<Integer> snapshot = tree.snapshot();
+	TreeSet<Integer> copy = new TreeSet<Integer>(expected);
+	Iterator<Integer> values = snapshot.iterator();
+	for (Integer value : copy) {
+	    Assert.condition(values.hasNext() && values.next().equals(value), "a snapshot changed while iterated.");
+	    tree.remove(value);
+	    tree.add(value + 1);
+	}
+	Assert.condition(!values.hasNext(), "a snapshot grew while iterated.");
+	check(snapshot, copy, "iterated snapshot");
+
+	//a tree seeded from a snapshot, and the tree it came from, change apart
+	ConcurrentLLRB<Integer> seeded = new ConcurrentLLRB<Integer>(snapshot);
+	TreeSet<Integer> seededExpected = new TreeSet<Integer>(copy);
+	TreeSet<Integer> treeExpected = new TreeSet<Integer>();
+	for (Integer value : tree) treeExpected.add(value);
+	for (int i = 0; i < 20000; i++) {
+	    int key = random.nextInt(2000);
+	    ConcurrentLLRB<Integer> target = random.nextBoolean() ? seeded : tree;
+	    TreeSet<Integer> model = (target == seeded) ? seededExpected : treeExpected;
+	    if (random.nextBoolean()) {
+		target.add(key);
+		model.add(key);
+	    }
+	    else {
+		target.remove(key);
+		model.remove(key);
+	    }
+	}
+	Assert.condition(seeded.consistency() && tree.consistency(), "a tree is not a valid LLRB.");
+	StructureTest.check(seeded, seededExpected, "seeded tree");
+	StructureTest.check(tree, treeExpected, "original tree");
+	check(snapshot, copy, "snapshot of both");
+
+	boolean refused = false;
+	try {
+	    snapshot.add(1);
+	} catch (Error e) {
+	    //Assert's errors are not public
+	    refused = true;
+	}
+	Assert.condition(refused, "snapshots must be read-only.");
+	System.out.println("ConcurrentLLRB snapshots agree with TreeSet");
+    }
+
+    private static void check(ConcurrentLLRB.Snapshot<Integer> snapshot, SortedSet<Integer> expected, String what) {
+	Assert.condition(snapshot.consistency(), what + ": snapshot is not a valid LLRB.");
+	StructureTest.check(snapshot, expected, what);
+	for (int key = 0; key < 2000; key += 7) {
+	    Assert.condition(snapshot.contains(key) == expected.contains(key), what + ": contains(" + key + ") disagrees.");
+	}
+    }
+}
@@ -0,0 +1,208 @@
+//A program to test LLRB split, join and the parallel set operations
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Compares split, join and union, intersect and difference against
+ * java.util.TreeSet on random data, checking the invariants of every
+ * tree produced. Sizes run past the parallel threshold, so the fork/join
+ * paths are covered too. splitAt and concat are then run through their
+ * edge cases, for each engine: keys outside the tree or on its ends,
+ * empty trees, trees of very different heights, and a tree cut into many
+ * pieces and put back together. Last, times splits of a large tree,
+ * whose pieces must know their sizes without counting them.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class SplitJoinTest {
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	for (int round = 0; round < 200; round++) {
+	    int range = (round < 185) ? 100 : 100000;
+	    int n = random.nextInt(range / 2 + 1);
+	    TreeSet<Integer> expected = new TreeSet<Integer>();
+	    LLRB<Integer> tree = randomTree(random, n, range, expected);
+
+	    int key = random.nextInt(range);
+	    LLRB<Integer> upper = tree.split(key);
+	    check(tree, expected.headSet(key, false), "split lower");
+	    check(upper, expected.tailSet(key, false), "split upper");
+
+	    LLRB<Integer> joined = LLRB.join(tree, key, upper);
+	    TreeSet<Integer> all = new TreeSet<Integer>(expected);
+	    all.add(key);
+	    check(joined, all, "join");
+
+	    LLRB<Integer>[] halves = joined.splitAt(key);
+	    check(halves[0], all.headSet(key, false), "splitAt lower");
+	    check(halves[1], all.tailSet(key, true), "splitAt upper");
+	    check(LLRB.concat(halves[0], halves[1]), all, "concat");
+
+	    TreeSet<Integer> a = new TreeSet<Integer>(), b = new TreeSet<Integer>();
+	    int m = random.nextInt(range / 2 + 1);
+	    TreeSet<Integer> expect;
+	    LLRB<Integer> x = randomTree(random, n, range, a);
+	    LLRB<Integer> y = randomTree(random, m, range, b);
+	    int op = random.nextInt(3);
+	    if (op == 0) {
+		expect = new TreeSet<Integer>(a);
+		expect.addAll(b);
+		check(LLRB.union(x, y), expect, "union");
+	    }
+	    else if (op == 1) {
+		expect = new TreeSet<Integer>(a);
+		expect.retainAll(b);
+		check(LLRB.intersect(x, y), expect, "intersect");
+	    }
+	    else {
+		expect = new TreeSet<Integer>(a);
+		expect.removeAll(b);
+		check(LLRB.difference(x, y), expect, "difference");
+	    }
+	    Assert.condition(x.isEmpty() && y.isEmpty(), "Set operations must empty their arguments.");
+	}
+	System.out.println("split, join and set operations agree with TreeSet");
+
+	int[] engines = {LLRB.RECURSIVE, LLRB.ITERATIVE, LLRB.TOP_DOWN};
+	for (int engine : engines) edges(engine, random);
+	System.out.println("splitAt and concat edge cases agree with TreeSet");
+
+	timeSize();
+    }
+
+    /**
+     * Builds a tree of n random values below range, adding them to expected
+     */
+    private static LLRB<Integer> randomTree(Random random, int n, int range, TreeSet<Integer> expected) {
+	LLRB<Integer> tree = new LLRB<Integer>();
+	for (int i = 0; i < n; i++) {
+	    int value = random.nextInt(range);
+	    tree.add(value);
+	    expected.add(value);
+	}
+	return tree;
+    }
+
+    /**
+     * splitAt and concat at the ends of trees and between trees of very
+     * different sizes; every piece must also take further adds
+     */
+    private static void edges(int engine, Random random) {
+	int[] sizes = {0, 1, 2, 3, 7, 100, 5000};
+	for (int n : sizes) {
+	    //splitAt below, on, inside and above the values 0, 2, ..., 2n-2
+	    int[] keys = {-1, 0, 1, n - 1, 2 * n - 2, 2 * n - 1, 2 * n + 5};
+	    for (int key : keys) {
+		TreeSet<Integer> all = new TreeSet<Integer>();
+		LLRB<Integer> tree = evens(engine, n, all);
+		LLRB<Integer>[] halves = tree.splitAt(key);
+		Assert.condition(tree.isEmpty(), "splitAt must empty the tree.");
+		check(halves[0], all.headSet(key, false), "splitAt(" + key + ") lower of " + n);
+		check(halves[1], all.tailSet(key, true), "splitAt(" + key + ") upper of " + n);
+		halves[0].add(key - 2 * n - 10);
+		halves[1].add(key + 2 * n + 10);
+		TreeSet<Integer> grown = new TreeSet<Integer>(all);
+		grown.add(key - 2 * n - 10);
+		grown.add(key + 2 * n + 10);
+		check(LLRB.concat(halves[0], halves[1]), grown, "concat after splitAt(" + key + ") of " + n);
+	    }
+	    //concat with trees of every other size, on either side
+	    for (int m : sizes) {
+		TreeSet<Integer> all = new TreeSet<Integer>();
+		LLRB<Integer> low = evens(engine, n, all);
+		LLRB<Integer> high = new LLRB<Integer>(engine, false);
+		for (int i = 0; i < m; i++) {
+		    high.add(2 * n + i);
+		    all.add(2 * n + i);
+		}
+		LLRB<Integer> joined = LLRB.concat(low, high);
+		Assert.condition(low.isEmpty() && high.isEmpty(), "concat must empty its arguments.");
+		check(joined, all, "concat of " + n + " and " + m);
+	    }
+	}
+
+	//cut a tree into pieces at random keys, then concat them in order
+	TreeSet<Integer> all = new TreeSet<Integer>();
+	LLRB<Integer> rest = evens(engine, 3000, all);
+	ArrayList<LLRB<Integer>> pieces = new ArrayList<LLRB<Integer>>();
+	TreeSet<Integer> cuts = new TreeSet<Integer>();
+	for (int i = 0; i < 40; i++) cuts.add(random.nextInt(6000));
+	for (int cut : cuts) {
+	    LLRB<Integer>[] halves = rest.splitAt(cut);
+	    pieces.add(halves[0]);
+	    rest = halves[1];
+	}
+	pieces.add(rest);
+	LLRB<Integer> whole = new LLRB<Integer>(engine, false);
+	for (LLRB<Integer> piece : pieces) {
+	    Assert.condition(piece.consistency(), "a piece is not a valid LLRB.");
+	    whole = LLRB.concat(whole, piece);
+	}
+	check(whole, all, "pieces put back together");
+
+	//ranges that overlap are refused
+	LLRB<Integer> a = evens(engine, 10, new TreeSet<Integer>());
+	LLRB<Integer> b = evens(engine, 10, new TreeSet<Integer>());
+	boolean refused = false;
+	try {
+	    LLRB.concat(a, b);
+	} catch (Error e) {
+	    //Assert's errors are not public
+	    refused = true;
+	}
+	Assert.condition(refused, "concat must refuse overlapping trees.");
+    }
+
+    /**
+     * Builds a tree of the values 0, 2, ..., 2n-2, adding them to expected
+     */
+    private static LLRB<Integer> evens(int engine, int n, TreeSet<Integer> expected) {
+	LLRB<Integer> tree = new LLRB<Integer>(engine, false);
+	for (int i = 0; i < n; i++) {
+	    tree.add(2 * i);
+	    expected.add(2 * i);
+	}
+	return tree;
+    }
+
+    /**
+     * Checks that tree holds exactly the values of expected, in order
+     */
+    private static void check(LLRB<Integer> tree, SortedSet<Integer> expected, String operation) {
+	Assert.condition(tree.consistency(), operation + ": tree is not a valid LLRB.");
+	StructureTest.check(tree, expected, operation);
+    }
+
+    /**
+     * Splits a large tree at random keys and joins it back: the sizes of
+     * the pieces must be exact at once, and the round trips, with a
+     * size() on each piece, must cost less than one walk of the tree
+     */
+    private static void timeSize() {
+	int n = 2000000;
+	Integer[] sorted = new Integer[n];
+	for (int i = 0; i < n; i++) sorted[i] = i;
+	LLRB<Integer> tree = LLRB.fromSorted(sorted);
+	Random random = new Random(2014);
+
+	long start = System.nanoTime();
+	for (int i = 0; i < 200; i++) {
+	    int key = random.nextInt(n);
+	    LLRB<Integer> upper = tree.split(key);
+	    Assert.condition(tree.size() == key && upper.size() == n - key - 1, "Split sizes are wrong.");
+	    tree = LLRB.join(tree, key, upper);
+	    Assert.condition(tree.size() == n, "Join size is wrong.");
+	}
+	long splits = System.nanoTime() - start;
+	start = System.nanoTime();
+	Assert.condition(tree.consistency(), "split and join broke the tree.");
+	long walk = System.nanoTime() - start;
+
+	Assert.condition(splits < walk, "200 splits took longer than a walk of the tree.");
+	System.out.println("200 splits and joins of " + n + ": " + splits / 1000 + " us; one walk " + walk / 1000 + " us");
+    }
+}
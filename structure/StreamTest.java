@@ -0,0 +1,94 @@
+//A program to test the spliterators and streams of LLRB and RedBlackSearchTree
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.*;
+import structure5.*;
+
+/**
+ * Compares the sequential and parallel streams of LLRB with
+ * java.util.TreeSet, and those of RedBlackSearchTree, which keeps
+ * duplicates, with a sorted list, on random data. Each spliterator is
+ * also split recursively by hand: the pieces, visited in order, must
+ * give back the values in order, and a spliterator must report
+ * DISTINCT only for LLRB. The pieces of an LLRB must know their exact
+ * sizes, and a refused split must stay refused.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class StreamTest {
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	for (int round = 0; round < 100; round++) {
+	    int n = random.nextInt((round < 90) ? 200 : 100000);
+	    int range = random.nextInt(2 * n + 1) + 1;
+	    LLRB<Integer> llrb = new LLRB<Integer>();
+	    RedBlackSearchTree<Integer> rb = new RedBlackSearchTree<Integer>();
+	    TreeSet<Integer> set = new TreeSet<Integer>();
+	    ArrayList<Integer> all = new ArrayList<Integer>();
+	    for (int i = 0; i < n; i++) {
+		int value = random.nextInt(range);
+		llrb.add(value);
+		rb.add(value);
+		set.add(value);
+		all.add(value);
+	    }
+	    Collections.sort(all);
+	    java.util.List<Integer> distinct = new ArrayList<Integer>(set);
+
+	    check(llrb.stream().collect(Collectors.toList()), distinct, "LLRB stream");
+	    check(llrb.parallelStream().collect(Collectors.toList()), distinct, "LLRB parallel stream");
+	    check(split(llrb.spliterator()), distinct, "LLRB splits");
+	    Assert.condition(llrb.spliterator().hasCharacteristics(Spliterator.DISTINCT), "LLRB values are distinct.");
+	    Assert.condition(llrb.spliterator().hasCharacteristics(Spliterator.SUBSIZED), "LLRB pieces know their sizes.");
+
+	    check(rb.stream().collect(Collectors.toList()), all, "RedBlackSearchTree stream");
+	    check(rb.parallelStream().collect(Collectors.toList()), all, "RedBlackSearchTree parallel stream");
+	    check(split(rb.spliterator()), all, "RedBlackSearchTree splits");
+	    Assert.condition(!rb.spliterator().hasCharacteristics(Spliterator.DISTINCT), "RedBlackSearchTree keeps duplicates.");
+	    Assert.condition(rb.stream().distinct().count() == set.size(), "distinct() must remove duplicates.");
+	}
+	System.out.println("spliterators and streams agree with TreeSet and a sorted list");
+    }
+
+    /**
+     * Splits spliterator as far as it goes, then runs the pieces in order
+     * @return the values of every piece
+     */
+    private static java.util.List<Integer> split(Spliterator<Integer> spliterator) {
+	final ArrayList<Integer> values = new ArrayList<Integer>();
+	collect(spliterator, values);
+	return values;
+    }
+
+    /**
+     * Splits spliterator as far as it goes; a SUBSIZED spliterator's
+     * pieces must add up to it, and each must hold what it reports
+     */
+    private static void collect(Spliterator<Integer> spliterator, final ArrayList<Integer> values) {
+	boolean exact = spliterator.hasCharacteristics(Spliterator.SUBSIZED);
+	long size = spliterator.estimateSize();
+	Spliterator<Integer> prefix = spliterator.trySplit();
+	if (prefix != null) {
+	    if (exact) Assert.condition(prefix.estimateSize() + spliterator.estimateSize() == size, "split sizes do not add up.");
+	    collect(prefix, values);
+	    collect(spliterator, values);
+	    return;
+	}
+	Assert.condition(spliterator.trySplit() == null, "a refused split must stay refused.");
+	int before = values.size();
+	spliterator.forEachRemaining(new Consumer<Integer>() {
+		public void accept(Integer value) {
+		    values.add(value);
+		}
+	    });
+	if (exact) Assert.condition(values.size() - before == size, "a piece holds other than its size.");
+    }
+
+    private static void check(java.util.List<Integer> actual, java.util.List<Integer> expected, String what) {
+	Assert.condition(actual.equals(expected), what + ": values differ.");
+    }
+}
@@ -0,0 +1,107 @@
+//A program to test every structure of the benchmark against java.util.TreeSet
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Runs each OrderedStructure the benchmark can construct through the
+ * benchmark's own workload, the keys of each distribution added then
+ * looked up, and then through random adds, removes and lookups,
+ * comparing every answer, the size and the order of iteration with a
+ * java.util.TreeSet. The structure package's trees keep duplicates, so
+ * they are compared with counts of each value instead. The other tests
+ * share check().
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class StructureTest {
+
+    public static void main(String args[]) {
+	for (String name : Benchmark.STRUCTS) {
+	    OrderedStructure<Integer> struct;
+	    try {
+		struct = Benchmark.create(name);
+	    } catch (IllegalArgumentException e) {
+		//IntLLRB and Frozen LLRB are measured in their own way
+		continue;
+	    }
+	    for (String dist : Benchmark.DISTS) {
+		struct.clear();
+		TreeSet<Integer> expected = new TreeSet<Integer>();
+		int[] keys = Benchmark.keys(5000, dist);
+		for (int key : keys) {
+		    struct.add(key);
+		    expected.add(key);
+		}
+		for (int key : Benchmark.lookups(keys, dist)) {
+		    Assert.condition(struct.contains(key), name + ": " + key + " is missing.");
+		}
+		check(struct, expected, name + ", " + dist);
+	    }
+	    random(name, Benchmark.create(name), new Random(2014));
+	}
+	System.out.println("every benchmark structure agrees with TreeSet");
+    }
+
+    /**
+     * Random adds, removes and lookups over a small range of keys, so
+     * that many are present when added and absent when removed
+     */
+    private static void random(String name, OrderedStructure<Integer> struct, Random random) {
+	struct.add(0);
+	struct.add(0);
+	boolean duplicates = struct.size() == 2;
+	struct.clear();
+
+	//the number of copies of each value held
+	TreeMap<Integer,Integer> counts = new TreeMap<Integer,Integer>();
+	for (int i = 0; i < 100000; i++) {
+	    int key = random.nextInt(3000);
+	    Integer count = counts.get(key);
+	    if (random.nextInt(3) > 0) {
+		struct.add(key);
+		if (count == null) counts.put(key, 1);
+		else if (duplicates) counts.put(key, count + 1);
+	    }
+	    else {
+		Integer removed = struct.remove(key);
+		Assert.condition((removed != null) == (count != null), name + ": remove(" + key + ") disagrees.");
+		Assert.condition(removed == null || removed == key, name + ": remove(" + key + ") returned " + removed);
+		if (count != null && count == 1) counts.remove(key);
+		else if (count != null) counts.put(key, count - 1);
+	    }
+	    int probe = random.nextInt(3000);
+	    Assert.condition(struct.contains(probe) == counts.containsKey(probe), name + ": contains(" + probe + ") disagrees.");
+	    if (i % 10000 == 0) check(struct, expand(counts), name + " after " + i + " operations");
+	}
+	check(struct, expand(counts), name);
+	struct.clear();
+	Assert.condition(struct.isEmpty() && !struct.iterator().hasNext(), name + ": clear() left values.");
+    }
+
+    /**
+     * @return the values of counts, each repeated by its count, in order
+     */
+    private static ArrayList<Integer> expand(TreeMap<Integer,Integer> counts) {
+	ArrayList<Integer> values = new ArrayList<Integer>();
+	for (java.util.Map.Entry<Integer,Integer> entry : counts.entrySet()) {
+	    for (int i = 0; i < entry.getValue(); i++) values.add(entry.getKey());
+	}
+	return values;
+    }
+
+    /**
+     * Checks that struct holds exactly the values of expected, in the
+     * order expected iterates them
+     */
+    public static <E> void check(Structure<E> struct, Collection<E> expected, String what) {
+	Assert.condition(struct.size() == expected.size(), what + ": size " + struct.size() + ", expected " + expected.size());
+	Iterator<E> e = expected.iterator();
+	for (E value : struct) {
+	    Assert.condition(e.hasNext() && value.equals(e.next()), what + ": values differ.");
+	}
+	Assert.condition(!e.hasNext(), what + ": values missing.");
+    }
+}
@@ -0,0 +1,91 @@
+//A program to test the top-down 2-3-4 engine of LLRB
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Compares the TOP_DOWN engine of LLRB against java.util.TreeSet on random
+ * and sorted adds and removes, checking the 2-3-4 invariants as it goes:
+ * a black root, no red node with a red child, red right links only in
+ * 4-nodes, and equal black height. The trees must keep some 4-nodes, stay
+ * within twice the height of a perfect tree, and do less work on the way
+ * back up an add than the RECURSIVE engine.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class TopDownTest {
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	for (int round = 0; round < 20; round++) {
+	    int range = (round < 10) ? 100 : 20000;
+	    LLRB<Integer> tree = new LLRB<Integer>(LLRB.TOP_DOWN, false);
+	    TreeSet<Integer> expected = new TreeSet<Integer>();
+	    for (int i = 0; i < 10000; i++) {
+		int key = random.nextInt(range);
+		if (random.nextInt(3) > 0) {
+		    tree.add(key);
+		    expected.add(key);
+		}
+		else {
+		    Integer removed = tree.remove(key);
+		    Assert.condition((removed != null) == expected.remove(key), "remove(" + key + ") disagrees.");
+		}
+		int probe = random.nextInt(range);
+		Assert.condition(tree.contains(probe) == expected.contains(probe), "contains(" + probe + ") disagrees.");
+		if (i % 1000 == 0) check(tree, expected, "round " + round);
+	    }
+	    check(tree, expected, "round " + round);
+	    if (range > 1000) Assert.condition(fourNodes(tree, tree.root()) > 0, "a random 2-3-4 tree should have 4-nodes.");
+	}
+
+	LLRB<Integer> tree = new LLRB<Integer>(LLRB.TOP_DOWN, false);
+	TreeSet<Integer> expected = new TreeSet<Integer>();
+	for (int i = 0; i < 100000; i++) {
+	    tree.add(i);
+	    expected.add(i);
+	}
+	check(tree, expected, "ascending adds");
+	for (int i = 0; i < 100000; i += 2) {
+	    tree.remove(i);
+	    expected.remove(i);
+	}
+	check(tree, expected, "ascending removes");
+	for (int i = 99999; i >= 0; i -= 4) {
+	    tree.remove(i);
+	    expected.remove(i);
+	}
+	check(tree, expected, "descending removes");
+
+	LLRB<Integer> topDown = new LLRB<Integer>(LLRB.TOP_DOWN, true);
+	LLRB<Integer> recursive = new LLRB<Integer>(LLRB.RECURSIVE, true);
+	for (int i = 0; i < 100000; i++) {
+	    int key = random.nextInt(1000000);
+	    topDown.add(key);
+	    recursive.add(key);
+	}
+	double down = topDown.metrics().mean(LLRBMetrics.ADD, LLRBMetrics.FIX_UP);
+	double up = recursive.metrics().mean(LLRBMetrics.ADD, LLRBMetrics.FIX_UP);
+	Assert.condition(down < up, "top-down adds should fix up less: " + down + " against " + up);
+	System.out.println("the top-down engine agrees with TreeSet");
+    }
+
+    /**
+     * @return the number of 4-nodes, black nodes with two red children,
+     * below h
+     */
+    private static int fourNodes(LLRB<Integer> tree, LLRB<Integer>.Node h) {
+	if (h == null) return 0;
+	int here = (!tree.isRed(h) && tree.isRed(h.left()) && tree.isRed(h.right())) ? 1 : 0;
+	return here + fourNodes(tree, h.left()) + fourNodes(tree, h.right());
+    }
+
+    private static void check(LLRB<Integer> tree, SortedSet<Integer> expected, String what) {
+	Assert.condition(tree.consistency(), what + ": tree is not a valid 2-3-4 LLRB.");
+	StructureTest.check(tree, expected, what);
+	int perfect = 32 - Integer.numberOfLeadingZeros(expected.size());
+	Assert.condition(tree.height() <= 2 * perfect, what + ": tree is too tall, " + tree.height());
+    }
+}
@@ -0,0 +1,29 @@
+//The node of a binary search tree, as seen by TreeNodeIterator.
+// (c) 2014, Tony Liu and Michael Shaw
+
+/**
+ * The accessors of a binary search tree node: its value and children.
+ * The trees whose nodes are objects with child links implement this on
+ * their node classes, and so share one in-order iterator.
+ *
+ * @author, 2014 tony liu, michael shaw
+ * @see TreeNodeIterator
+ */
+
+public interface TreeNode<E> {
+
+    /**
+     * @return the value stored in this node
+     */
+    public E value();
+
+    /**
+     * @return the left child of this node, or null
+     */
+    public TreeNode<E> left();
+
+    /**
+     * @return the right child of this node, or null
+     */
+    public TreeNode<E> right();
+}
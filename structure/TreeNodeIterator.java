@@ -0,0 +1,74 @@
+//An in-order iterator over the TreeNodes of a binary search tree.
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * An in-order iterator over a tree of TreeNodes, shared by the trees
+ * that implement TreeNode. The stack holds the nodes whose values are
+ * still to come and whose left subtrees are done; the next value is on
+ * top. A tree supplies its root and version number; the iterator fails
+ * fast if the version changes, so the tree must not be modified while
+ * iterating. reset() starts over from the tree as it is then.
+ *
+ * @author, 2014 tony liu, michael shaw
+ * @see TreeNode
+ */
+
+public abstract class TreeNodeIterator<E> extends AbstractIterator<E> {
+    private ArrayList<TreeNode<E>> stack = new ArrayList<TreeNode<E>>();
+    private int iterVersion;
+
+    /**
+     * @return the root of the tree, read at each reset
+     */
+    protected abstract TreeNode<E> root();
+
+    /**
+     * @return the version number of the tree, which every modification
+     * changes
+     */
+    protected abstract int version();
+
+    public void reset() {
+	iterVersion = version();
+	stack.clear();
+	goLeft(root());
+    }
+
+    protected void goLeft(TreeNode<E> x) {
+	while (x != null) {
+	    stack.add(x);
+	    x = x.left();
+	}
+    }
+
+    public boolean hasNext() {
+	return !stack.isEmpty();
+    }
+
+    public E get() {
+	if (stack.isEmpty()) throw new NoSuchElementException();
+	return stack.get(stack.size() - 1).value();
+    }
+
+    public E next() {
+	if (iterVersion != version()) throw new ConcurrentModificationException();
+	if (stack.isEmpty()) throw new NoSuchElementException();
+	TreeNode<E> x = stack.remove(stack.size() - 1);
+	goLeft(x.right());
+	return x.value();
+    }
+
+    /**
+     * Describes a structure by name and values, in the form of the
+     * structure package: &lt;name: v1 v2 ... vn&gt;
+     * @return the description of values
+     */
+    public static <E> String toString(String name, Iterable<E> values) {
+	StringBuilder sb = new StringBuilder("<" + name + ":");
+	for (E value : values) sb.append(" " + value);
+	return sb.append(">").toString();
+    }
+}
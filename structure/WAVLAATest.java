@@ -0,0 +1,82 @@
+//A program to test WAVLTree and AATree
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * Compares WAVLTree and AATree against java.util.TreeSet on random adds
+ * and removes, in phases that alternately grow and shrink the trees, and
+ * on sorted runs. The rank rules of the WAVL tree and the level rules of
+ * the AA tree are checked as it goes, and both heights must stay within
+ * 2 log n; a WAVL tree built by insertions alone is an AVL tree, and must
+ * stay within log_phi n.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+
+public class WAVLAATest {
+
+    private static final double PHI = (1 + Math.sqrt(5)) / 2;
+
+    public static void main(String args[]) {
+	Random random = new Random(2014);
+	WAVLTree<Integer> wavl = new WAVLTree<Integer>();
+	AATree<Integer> aa = new AATree<Integer>();
+	TreeSet<Integer> expected = new TreeSet<Integer>();
+	for (int phase = 0; phase < 20; phase++) {
+	    int range = (phase < 10) ? 300 : 30000;
+	    //alternately grow the trees and shrink them
+	    int adds = (phase % 2 == 0) ? 3 : 1;
+	    for (int i = 0; i < 20000; i++) {
+		int key = random.nextInt(range);
+		if (random.nextInt(4) < adds) {
+		    wavl.add(key);
+		    aa.add(key);
+		    expected.add(key);
+		}
+		else {
+		    boolean removed = expected.remove(key);
+		    Assert.condition((wavl.remove(key) != null) == removed, "WAVLTree remove(" + key + ") disagrees.");
+		    Assert.condition((aa.remove(key) != null) == removed, "AATree remove(" + key + ") disagrees.");
+		}
+		int probe = random.nextInt(range);
+		Assert.condition(wavl.contains(probe) == expected.contains(probe), "WAVLTree contains(" + probe + ") disagrees.");
+		Assert.condition(aa.contains(probe) == expected.contains(probe), "AATree contains(" + probe + ") disagrees.");
+		if (i % 2000 == 0) check(wavl, aa, expected, "phase " + phase);
+	    }
+	    check(wavl, aa, expected, "phase " + phase);
+	}
+
+	wavl.clear();
+	aa.clear();
+	expected.clear();
+	for (int i = 0; i < 100000; i++) {
+	    int key = (i % 2 == 0) ? i : -i;
+	    wavl.add(key);
+	    aa.add(key);
+	    expected.add(key);
+	}
+	check(wavl, aa, expected, "sorted adds");
+	double avl = Math.log(expected.size() + 2) / Math.log(PHI);
+	Assert.condition(wavl.height() <= avl, "a WAVL tree built by insertions should be an AVL tree.");
+	for (int i = 0; i < 100000; i += 3) {
+	    int key = (i % 2 == 0) ? i : -i;
+	    wavl.remove(key);
+	    aa.remove(key);
+	    expected.remove(key);
+	}
+	check(wavl, aa, expected, "sorted removes");
+	System.out.println("WAVLTree and AATree agree with TreeSet");
+    }
+
+    private static void check(WAVLTree<Integer> wavl, AATree<Integer> aa, SortedSet<Integer> expected, String what) {
+	Assert.condition(wavl.consistency(), what + ": not a valid WAVL tree.");
+	Assert.condition(aa.consistency(), what + ": not a valid AA tree.");
+	StructureTest.check(wavl, expected, what + ", WAVLTree");
+	StructureTest.check(aa, expected, what + ", AATree");
+	double bound = 2 * Math.log(expected.size() + 1) / Math.log(2);
+	Assert.condition(wavl.height() <= bound, what + ": WAVLTree height " + wavl.height() + " exceeds 2 log n.");
+	Assert.condition(aa.height() <= bound, what + ": AATree height " + aa.height() + " exceeds 2 log n.");
+    }
+}
@@ -0,0 +1,174 @@
+//A weak AVL (WAVL) tree, after Haeupler, Sen and Tarjan.
+// (c) 2014, Tony Liu and Michael Shaw
+
+import java.util.*;
+import structure5.*;
+
+/**
+ * This class implements a weak AVL (rank-balanced) tree. Every node has a
+ * rank, a null child has rank -1, and the rank difference of every child
+ * (its parent's rank less its own) is 1 or 2; leaves have rank 0.
+ * <P>
+ * add rebalances exactly as an AVL tree does, in RankBalancedTree, as
+ * RAVLTree does: promotions move up from the new leaf until a single or
+ * double rotation ends them. remove splices out the node or its
+ * successor, then fixes a child whose rank difference has become 3, or a
+ * leaf of rank 1, by demotions on the way back up, ending with at most
+ * one single or double rotation.
+ * <P>
+ * With insertions only, a WAVL tree is an AVL tree, of height at most
+ * log_phi n, about 1.44 log n; with deletions its height stays within
+ * 2 log n. Rebalancing takes O(1) amortized rotations and rank changes.
+ *
+ * @author, 2014 tony liu, michael shaw
+ * @see RankBalancedTree
+ * @see RAVLTree
+ * @see AATree
+ */
+
+public class WAVLTree<E extends Comparable<E>> extends RankBalancedTree<E> {
+
+    //default constructor
+    public WAVLTree() {
+	super();
+    }
+
+    /**
+     * Removes value from the tree
+     * @return the removed value, or null if it was not present
+     */
+    public E remove(E value) {
+	E result = get(value);
+	if (result == null) return null;
+	root = removeRecursive(root, value);
+	size--;
+	version++;
+	return result;
+    }
+
+    private Node<E> removeRecursive(Node<E> x, E value) {
+	int compare = value.compareTo(x.value);
+	if (compare < 0) {
+	    x.left = removeRecursive(x.left, value);
+	    return deleteFixLeft(x);
+	}
+	if (compare > 0) {
+	    x.right = removeRecursive(x.right, value);
+	    return deleteFixRight(x);
+	}
+	if (x.left == null) return x.right;
+	if (x.right == null) return x.left;
+	x.value = min(x.right).value;
+	x.right = removeMinRecursive(x.right);
+	return deleteFixRight(x);
+    }
+
+    private Node<E> removeMinRecursive(Node<E> x) {
+	if (x.left == null) return x.right;
+	x.left = removeMinRecursive(x.left);
+	return deleteFixLeft(x);
+    }
+
+    /**
+     * Fixes x after its left subtree lost a node: a leaf left with rank 1
+     * is demoted; a left child of rank difference 3 is fixed by demoting
+     * x (and its right child, if that has two children of difference 2),
+     * which may move the problem up, or else by a rotation, which ends it.
+     * @return the root of the subtree
+     */
+    private Node<E> deleteFixLeft(Node<E> x) {
+	if (x.left == null && x.right == null) {
+	    x.rank = 0;
+	    return x;
+	}
+	if (x.rank - rank(x.left) != 3) return x;
+	Node<E> s = x.right;
+	if (x.rank - s.rank == 2) {
+	    x.rank--;
+	    return x;
+	}
+	Node<E> t = s.right;
+	Node<E> u = s.left;
+	if (s.rank - rank(t) == 2 && s.rank - rank(u) == 2) {
+	    x.rank--;
+	    s.rank--;
+	    return x;
+	}
+	if (s.rank - rank(t) == 1) {
+	    //single rotation
+	    x.right = u;
+	    s.left = x;
+	    s.rank++;
+	    x.rank--;
+	    if (x.left == null && x.right == null) x.rank = 0;
+	    return s;
+	}
+	//double rotation
+	x.right = u.left;
+	s.left = u.right;
+	u.left = x;
+	u.right = s;
+	u.rank += 2;
+	s.rank--;
+	x.rank -= 2;
+	return u;
+    }
+
+    /**
+     * Mirror image of deleteFixLeft
+     */
+    private Node<E> deleteFixRight(Node<E> x) {
+	if (x.left == null && x.right == null) {
+	    x.rank = 0;
+	    return x;
+	}
+	if (x.rank - rank(x.right) != 3) return x;
+	Node<E> s = x.left;
+	if (x.rank - s.rank == 2) {
+	    x.rank--;
+	    return x;
+	}
+	Node<E> t = s.left;
+	Node<E> u = s.right;
+	if (s.rank - rank(t) == 2 && s.rank - rank(u) == 2) {
+	    x.rank--;
+	    s.rank--;
+	    return x;
+	}
+	if (s.rank - rank(t) == 1) {
+	    x.left = u;
+	    s.right = x;
+	    s.rank++;
+	    x.rank--;
+	    if (x.left == null && x.right == null) x.rank = 0;
+	    return s;
+	}
+	x.left = u.right;
+	s.right = u.left;
+	u.right = x;
+	u.left = s;
+	u.rank += 2;
+	s.rank--;
+	x.rank -= 2;
+	return u;
+    }
+
+    private Node<E> min(Node<E> x) {
+	while (x.left != null) x = x.left;
+	return x;
+    }
+
+    /**
+     * Recursive helper for consistency(): every rank difference is 1 or
+     * 2, and every leaf has rank 0
+     * @return true if the ranks below h keep the WAVL rules
+     */
+    protected boolean rankConsistency(Node<E> h) {
+	if (h == null) return true;
+	int left = h.rank - rank(h.left);
+	int right = h.rank - rank(h.right);
+	if (left < 1 || left > 2 || right < 1 || right > 2) return false;
+	if (h.left == null && h.right == null && h.rank != 0) return false;
+	return rankConsistency(h.left) && rankConsistency(h.right);
+    }
+}
@@ -104,7 +104,7 @@ public class BinarySearchTree<E extends Comparable<E>>
      */
     public void clear()
     {
-        root = new BinaryTree<E>();
+        root = EMPTY;
         count = 0;
     }
 
@@ -7,14 +7,15 @@ package structure5;
  * An interface that supports a Collection whose values are kept
  * in increasing order.  Values stored within ordered structures
  * should implement Comparable; ie. they should have an implemented
- * compareTo method.
+ * compareTo method, unless the structure is ordered by a Comparator.
  * 
  * @see java.lang.Comparable
  * @see java.lang.Comparable#compareTo
+ * @see java.util.Comparator
  * @version $Id: OrderedStructure.java 35 2007-08-09 20:38:38Z bailey $
  * @author, 2001 duane a. bailey
  */
-public interface OrderedStructure<K extends Comparable<K>>
+public interface OrderedStructure<K>
          extends Structure<K>
 {
 }
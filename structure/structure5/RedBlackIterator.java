@@ -49,7 +49,7 @@ class RedBlackIterator<E extends Comparable<E>> extends AbstractIterator<E>
         // stack is empty.  Push on nodes from root to
         // leftmost descendant
         RedBlackTree<E> current = root;
-        while (current != RedBlackTree.EMPTY) {
+        while (!current.isEmpty()) {
             todo.push(current);
             current = current.left();
         }
@@ -4,6 +4,9 @@ package structure5;
 import java.util.Iterator;
 import java.util.Comparator;
 import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class RedBlackSearchTree<E extends Comparable<E>> extends AbstractStructure<E> implements OrderedStructure<E>
 {
@@ -72,6 +75,28 @@ public class RedBlackSearchTree<E extends Comparable<E>> extends AbstractStructu
         return root.iterator();
     }
 
+    /**
+     * Returns a spliterator over the values of the tree, in order,
+     * that splits at subtree boundaries.  The tree keeps duplicate
+     * values, so the spliterator is not DISTINCT.
+     *
+     * @return An ORDERED, SORTED, SIZED spliterator.
+     */
+    public Spliterator<E> spliterator()
+    {
+        return new RedBlackSpliterator<E>(root, count);
+    }
+
+    public Stream<E> stream()
+    {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Stream<E> parallelStream()
+    {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
     public String treeString(){
         return root.treeString();
     }
@@ -0,0 +1,137 @@
+// Spliterator for RedBlack trees.
+// (c) 2014, Tony Liu and Michael Shaw
+package structure5;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A spliterator for traversing RedBlackSearchTrees constructed from
+ * RedBlackTrees, in order.  The values still to come are a stack of
+ * entries, each a node followed by a subtree still to be traversed;
+ * normally the node's right subtree.  trySplit hands all but the bottom
+ * entry to a new spliterator, or, for a single entry, splits its
+ * subtree at the root, so splits fall on subtree boundaries.  The
+ * tree must not be modified while the spliterator is in use.
+ *
+ * @author, 2014 tony liu, michael shaw
+ */
+class RedBlackSpliterator<E extends Comparable<E>> implements Spliterator<E>
+{
+    /**
+     * Nodes whose values are still to come, and the subtree that
+     * follows each; the next value is on top.
+     */
+    protected RedBlackTree<E>[] todo;
+    protected RedBlackTree<E>[] rest;
+    protected int top;
+
+    protected long estimate;
+
+    /**
+     * True until the first split; only then is the estimate exact.
+     */
+    protected boolean sized;
+
+    /**
+     * Construct a spliterator over a tree.
+     *
+     * @post Constructs a spliterator to traverse inorder
+     *
+     * @param root The root of the tree to be traversed.
+     * @param size The number of values in the tree.
+     */
+    public RedBlackSpliterator(RedBlackTree<E> root, int size)
+    {
+        // no path holds more than twice the black height in nodes
+        this(2 * root.blackHeight() + 2);
+        push(root);
+        estimate = size;
+        sized = true;
+    }
+
+    @SuppressWarnings({"unchecked","rawtypes"})
+    protected RedBlackSpliterator(int height)
+    {
+        todo = new RedBlackTree[height];
+        rest = new RedBlackTree[height];
+        top = 0;
+        sized = false;
+    }
+
+    /**
+     * Push the leftmost descendants of current, from current down.
+     */
+    protected void push(RedBlackTree<E> current)
+    {
+        while (!current.isEmpty()) {
+            todo[top] = current;
+            rest[top] = current.right();
+            top++;
+            current = current.left();
+        }
+    }
+
+    public boolean tryAdvance(Consumer<? super E> action)
+    {
+        if (top == 0) return false;
+        top--;
+        RedBlackTree<E> old = todo[top];
+        push(rest[top]);
+        action.accept(old.value());
+        return true;
+    }
+
+    public void forEachRemaining(Consumer<? super E> action)
+    {
+        while (top > 0) {
+            top--;
+            RedBlackTree<E> old = todo[top];
+            push(rest[top]);
+            action.accept(old.value());
+        }
+    }
+
+    public Spliterator<E> trySplit()
+    {
+        // a lone entry with nothing after it cannot be split
+        if (top == 0 || (top == 1 && rest[0].isEmpty())) return null;
+        RedBlackSpliterator<E> prefix = new RedBlackSpliterator<E>(todo.length);
+        if (top > 1) {
+            // entries 1..top-1 come before entry 0
+            System.arraycopy(todo, 1, prefix.todo, 0, top - 1);
+            System.arraycopy(rest, 1, prefix.rest, 0, top - 1);
+            prefix.top = top - 1;
+            top = 1;
+        } else {
+            // the node and the left of its subtree go first
+            RedBlackTree<E> r = rest[0];
+            prefix.todo[0] = todo[0];
+            prefix.rest[0] = r.left();
+            prefix.top = 1;
+            todo[0] = r;
+            rest[0] = r.right();
+        }
+        sized = false;
+        estimate >>>= 1;
+        prefix.estimate = estimate;
+        return prefix;
+    }
+
+    public long estimateSize()
+    {
+        return estimate;
+    }
+
+    public int characteristics()
+    {
+        // not DISTINCT: RedBlackTree.add keeps duplicate values
+        int c = ORDERED | SORTED | NONNULL;
+        return sized ? c | SIZED : c;
+    }
+
+    public Comparator<? super E> getComparator()
+    {
+        return null;
+    }
+}